@@ -3,81 +3,125 @@
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
+//AllHoldings is changed only by the trading thread, other threads read getSnapshot() (see HoldingsSnapshot)
+//the lots and partial closes are kept in a TradeLedger, getAllHoldings() builds SingleHoldings from it on demand
 public class AllHoldings {
-    private ArrayList<SingleHolding> holdings = new ArrayList<>();
+    private static final int PDI = Symbols.id("PDI");   // a PDI short held over the ex-date pays the dividend
+    private TradeLedger ledger = new TradeLedger();
     private double recentProfit = 0.0;
-    private ArrayList<SingleHolding> syntheticClosures = new ArrayList<>();
+    private int[] closedList = new int[16];   // ledger codes closed by the current closeHolding, reused
+    private long lastBookNanos = 0;   // clock time (epoch ns) of the most recent open/close, used by LatencyTracer
+    private TradeJournal journal = null;   // when set, every fill is journaled (see TradeJournal)
+    private PnLAnalytics analytics = new PnLAnalytics();
+    private RiskEngine risk = null;   // when set, every fill updates the pre-trade risk account
+    private volatile HoldingsSnapshot snapshot = HoldingsSnapshot.EMPTY;   // re-published after every open/close
+    private long version = 0;
 
     public void openHolding(String symbol, int numShares, double avgCost, LocalDate dateOpened) {
-        if (numShares != 0) holdings.add(new SingleHolding(symbol, numShares, avgCost, dateOpened));
+        openHolding(symbol, numShares, avgCost, dateOpened, "");
+    }
+
+    //reason is the strategy's reason code (G0, G3, P0...), used by PnLAnalytics
+    public void openHolding(String symbol, int numShares, double avgCost, LocalDate dateOpened, String reason) {
+        lastBookNanos = Tools.getClock().nanoTime();
+        if (numShares != 0) {
+            int symbolId = Symbols.id(symbol);
+            ledger.open(symbolId, numShares, avgCost, dateOpened, reason);
+            if (journal != null) journal.append(TradeJournal.OPEN, symbol, numShares, avgCost, dateOpened, 0.0, reason);
+            if (risk != null) risk.onFill(symbolId, numShares, avgCost);
+            publish();
+        }
     }
 
     public boolean closeHolding(String symbol, int sharesToClose, double closingPrice, LocalDate dateClosed) {
+        return closeHolding(symbol, sharesToClose, closingPrice, dateClosed, "");
+    }
+
+    //reason is the strategy's reason code (S0, SL, M0...), used by PnLAnalytics
+    public boolean closeHolding(String symbol, int sharesToClose, double closingPrice, LocalDate dateClosed, String reason) {
+        lastBookNanos = Tools.getClock().nanoTime();
+        if (journal != null) journal.append(TradeJournal.CLOSE, symbol, sharesToClose, closingPrice, dateClosed, 0.0, reason);
+        int symbolId = Symbols.id(symbol);
         int sharesRemaining = Math.abs(sharesToClose);
         int closeSign = Integer.signum(sharesToClose);
         double sessionProfit = 0.0;
         boolean closedAny = false;
-        ArrayList<SingleHolding> closedList = new ArrayList<>();
+        int numClosed = 0;
 
-        for (SingleHolding pos : holdings) {
+        int numLots = ledger.getNumLots();
+        for (int i = ledger.getFirstOpen(); i < numLots; i++) {
             if (sharesRemaining <= 0) break;
-            if (pos.getSymbol().equals(symbol) && pos.isOpen() && Integer.signum(pos.getNumShares()) == closeSign) {
-                int posSharesAbs = Math.abs(pos.getNumShares());
+            if (ledger.getSymbolId(i) == symbolId && ledger.isOpen(i) && Integer.signum(ledger.getNumShares(i)) == closeSign) {
+                int posSharesAbs = Math.abs(ledger.getNumShares(i));
+                if (numClosed == closedList.length) closedList = Arrays.copyOf(closedList, numClosed * 2);
                 if (posSharesAbs <= sharesRemaining) {
-                    pos.close(closingPrice, dateClosed);
-                    closedList.add(pos);
+                    ledger.close(i, closingPrice, dateClosed);
+                    closedList[numClosed++] = i;
                     sharesRemaining -= posSharesAbs;
                 } else {
-                    pos.reduceShares(sharesRemaining, closingPrice, dateClosed);
-                    SingleHolding clone = new SingleHolding(pos.getSymbol(), sharesRemaining * closeSign, pos.getAvgCost(), pos.getDateOpened());
-                    clone.close(closingPrice, dateClosed);
-                    clone.markSynthetic();
-                    syntheticClosures.add(clone);
-                    closedList.add(clone);
+                    //the rest of the lot stays open, the closed shares are a partial close
+                    int partial = ledger.reduce(i, sharesRemaining, closingPrice, dateClosed);
+                    if (journal != null) {
+                        journal.append(TradeJournal.REDUCE, symbol, ledger.getNumShares(i), closingPrice, dateClosed, ledger.getPartialProfit(i));
+                        journal.append(TradeJournal.CLONE, symbol, sharesRemaining * closeSign, ledger.getAvgCost(i), ledger.getDateOpened(i), ledger.getProfit(partial));
+                    }
+                    closedList[numClosed++] = partial;
                     sharesRemaining = 0;
                 }
                 closedAny = true;
             }
         }
 
-        if (symbol.equals("PDI") && sharesToClose < 0) {
+        if (symbolId == PDI && sharesToClose < 0) {
             double dividendPerShare = 0.2205;
             double totalAdjustment = dividendPerShare * Math.abs(sharesToClose);
             double remainingAdjustment = totalAdjustment;
 
-            for (SingleHolding pos : closedList) {
+            for (int k = 0; k < numClosed; k++) {
                 if (remainingAdjustment <= 0) break;
                 double maxApply = remainingAdjustment;
-                pos.applyDividendAdjustment(maxApply);
+                ledger.applyDividendAdjustment(closedList[k], maxApply);
+                if (journal != null) journal.append(TradeJournal.DIVIDEND, symbol, 0, dividendPerShare, dateClosed, maxApply);
+                if (risk != null) risk.onCash(-maxApply);
                 remainingAdjustment -= maxApply;
             }
         }
 
-        for (SingleHolding pos : closedList) {
-            sessionProfit += pos.getProfit();
+        for (int k = 0; k < numClosed; k++) {
+            int code = closedList[k];
+            sessionProfit += ledger.getProfit(code);
+            analytics.onClose(ledger.getOpenReason(code), reason, ledger.getProfit(code), ledger.getDateOpened(code), dateClosed);
         }
 
         recentProfit = sessionProfit;
+        if (risk != null) risk.onFill(symbolId, -(Math.abs(sharesToClose) - sharesRemaining) * closeSign, closingPrice);
+        publish();
         return closedAny;
     }
 
+    private void publish() {
+        snapshot = new HoldingsSnapshot(++version, lastBookNanos, ledger, recentProfit);
+    }
+
     public void printAllHoldings() {
-        for (SingleHolding p : holdings) {
-            System.out.println(p);
+        for (int i = 0; i < ledger.getNumLots(); i++) {
+            System.out.println(ledger.getHolding(i));
         }
-        for (SingleHolding s : syntheticClosures) {
-            System.out.println(s);
+        for (int j = 0; j < ledger.getNumPartials(); j++) {
+            System.out.println(ledger.getHolding(~j));
         }
     }
 
     public void results() {
         ArrayList<Double> profitList = new ArrayList<>();
-        for (SingleHolding h : holdings) {
-            if (!h.isOpen()) profitList.add(h.getProfit());
+        for (int i = 0; i < ledger.getNumLots(); i++) {
+            if (!ledger.isOpen(i)) profitList.add(ledger.getProfit(i));
         }
-        for (SingleHolding s : syntheticClosures) {
-            profitList.add(s.getProfit());
+        for (int j = 0; j < ledger.getNumPartials(); j++) {
+            profitList.add(ledger.getProfit(~j));
         }
         if (!profitList.isEmpty()) {
             System.out.printf("%.2f\t%.2f\n", 0.00, profitList.get(0));
@@ -90,36 +134,46 @@ public class AllHoldings {
     }
 
     public double totalProfit(String symbol) {
-        return holdings.stream().filter(h -> h.getSymbol().equals(symbol)).mapToDouble(SingleHolding::getProfit).sum()
-             + syntheticClosures.stream().filter(h -> h.getSymbol().equals(symbol)).mapToDouble(SingleHolding::getProfit).sum();
+        return totalProfit(Symbols.id(symbol));
+    }
+
+    //a running total, kept by the ledger
+    public double totalProfit(int symbolId) {
+        return ledger.totalProfit(symbolId);
     }
 
     public double totalPortfolioProfit() {
-        return holdings.stream().filter(h -> !h.isOpen()).mapToDouble(SingleHolding::getProfit).sum()
-             + syntheticClosures.stream().mapToDouble(SingleHolding::getProfit).sum();
+        return IntStream.range(0, ledger.getNumLots()).filter(i -> !ledger.isOpen(i)).mapToDouble(ledger::getProfit).sum()
+             + IntStream.range(0, ledger.getNumPartials()).mapToDouble(j -> ledger.getProfit(~j)).sum();
     }
 
     public double getProfit() { return recentProfit; }
-    public boolean hasHolding(String symbol) {
-        return holdings.stream().anyMatch(h -> h.getSymbol().equals(symbol) && h.isOpen());
+    public long getLastBookNanos() { return lastBookNanos; }
+    public TradeJournal getJournal() { return journal; }
+    public void setJournal(TradeJournal journal) { this.journal = journal; }
+    public PnLAnalytics getAnalytics() { return analytics; }
+    public RiskEngine getRiskEngine() { return risk; }
+    public void setRiskEngine(RiskEngine risk) { this.risk = risk; }
+    public HoldingsSnapshot getSnapshot() { return snapshot; }   // safe from any thread
+    public boolean hasHolding(String symbol) { return hasHolding(Symbols.id(symbol)); }
+    public boolean hasHolding(int symbolId) {
+        return snapshot.getPosition(symbolId) != null;
     }
-    public int getNumShares(String symbol) {
-        return holdings.stream().filter(h -> h.isOpen() && h.getSymbol().equals(symbol)).mapToInt(SingleHolding::getNumShares).sum();
+    public int getNumShares(String symbol) { return getNumShares(Symbols.id(symbol)); }
+    public int getNumShares(int symbolId) {
+        return snapshot.getNumShares(symbolId);
     }
-    public double getAvgCost(String symbol) {
-        int totalShares = 0;
-        double totalCost = 0.0;
-        for (SingleHolding h : holdings) {
-            if (h.isOpen() && h.getSymbol().equals(symbol)) {
-                totalShares += Math.abs(h.getNumShares());
-                totalCost += Math.abs(h.getNumShares()) * h.getAvgCost();
-            }
-        }
-        return (totalShares == 0) ? 0.0 : totalCost / totalShares;
+    public double getAvgCost(String symbol) { return getAvgCost(Symbols.id(symbol)); }
+    public double getAvgCost(int symbolId) {
+        return snapshot.getAvgCost(symbolId);
     }
+    public TradeLedger getLedger() { return ledger; }
+
+    //every lot, then every partial close, as SingleHoldings built from the ledger
     public ArrayList<SingleHolding> getAllHoldings() {
-        ArrayList<SingleHolding> all = new ArrayList<>(holdings);
-        all.addAll(syntheticClosures);
+        ArrayList<SingleHolding> all = new ArrayList<>(ledger.getNumLots() + ledger.getNumPartials());
+        for (int i = 0; i < ledger.getNumLots(); i++) all.add(ledger.getHolding(i));
+        for (int j = 0; j < ledger.getNumPartials(); j++) all.add(ledger.getHolding(~j));
         return all;
     }
 }
@@ -0,0 +1,155 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * AllocationTracker counts the bytes the Monkey's quote loop allocates, per quote and per stage,
+ * from the JVM's per-thread allocation counter (com.sun.management.ThreadMXBean).
+ *
+ * The stages follow the loop:
+ *   RECEIVE - the quote request and its response (the Vector of strings)
+ *   PARSE   - the response turned into a Quote, the duplicate check
+ *   STATS   - Prof_Plum's running statistics
+ *   DECIDE  - the ExecutionSimulator and the strategies, bookings included
+ *   LOG     - the transcript line and the event log
+ *
+ * Only the quote loop's own thread is counted:  with enable_Prefetch = YES the requests are made on
+ * the prefetcher's thread, and RECEIVE is then just the hand-over.  Like the LatencyTracer the
+ * counters are plain longs, so the tracking allocates nothing itself.
+ *
+ * With allocationBudgetBytesPerQuote > 0 the run is over budget when its quotes allocate more than
+ * that on average, and the Monkey then exits with an error (see isOverBudget).  The average is used,
+ * not the worst quote, since the first quotes of a run also pay for class loading.
+ *
+ * @version v1
+ */
+public class AllocationTracker
+{
+    public enum Stage { RECEIVE, PARSE, STATS, DECIDE, LOG }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final com.sun.management.ThreadMXBean bean;   // null when not tracking
+    private final long budget;                            // bytes per quote, 0 = none
+
+    private long last = 0;                                // the thread's counter when the last stage ended
+    private final long[] quoteBytes = new long[STAGES.length];
+
+    private final long[] dayBytes = new long[STAGES.length];
+    private final long[] runBytes = new long[STAGES.length];
+    private long dayQuotes = 0, runQuotes = 0;
+    private long dayMax = 0, runMax = 0;                  // the most one quote allocated
+    private long dayOver = 0, runOver = 0;                // quotes that allocated more than the budget
+
+
+
+    public AllocationTracker(boolean enable, long budgetBytesPerQuote) {
+        com.sun.management.ThreadMXBean b = null;
+        if (enable && ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            b = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (b.isThreadAllocatedMemorySupported()) b.setThreadAllocatedMemoryEnabled(true);
+            else b = null;
+        }
+        if (enable && b == null) System.out.println("AllocationTracker Warning 71: this JVM does not count allocations per thread");
+        this.bean = b;
+        this.budget = budgetBytesPerQuote;
+    }
+
+
+
+    public boolean isEnabled() {
+        return bean != null;
+    }
+
+
+
+    //call at the start of every trading day
+    public void startDay() {
+        Arrays.fill(dayBytes, 0L);
+        dayQuotes = 0;
+        dayMax = 0;
+        dayOver = 0;
+    }
+
+    //call before the quote is requested;  a quote that is never committed (a repeat, the close) is not counted
+    public void startQuote() {
+        if (bean == null) return;
+        Arrays.fill(quoteBytes, 0L);
+        last = bean.getCurrentThreadAllocatedBytes();
+    }
+
+    //stage s of the current quote has just ended
+    public void mark(Stage s) {
+        if (bean == null) return;
+        long now = bean.getCurrentThreadAllocatedBytes();
+        quoteBytes[s.ordinal()] += now - last;
+        last = now;
+    }
+
+    //the current quote is finished, count it
+    public void commit() {
+        if (bean == null) return;
+        long bytes = 0;
+        for (int s = 0; s < STAGES.length; s++) {
+            dayBytes[s] += quoteBytes[s];
+            runBytes[s] += quoteBytes[s];
+            bytes += quoteBytes[s];
+        }
+        dayQuotes++;
+        runQuotes++;
+        dayMax = Math.max(dayMax, bytes);
+        runMax = Math.max(runMax, bytes);
+        if (budget > 0 && bytes > budget) {
+            dayOver++;
+            runOver++;
+        }
+    }
+
+
+
+    //the average bytes per quote of the whole run
+    public double getBytesPerQuote() {
+        long total = 0;
+        for (long b : runBytes) total += b;
+        return runQuotes == 0 ? 0.0 : (double) total / runQuotes;
+    }
+
+    public boolean isOverBudget() {
+        return bean != null && budget > 0 && getBytesPerQuote() > budget;
+    }
+
+
+
+    /**
+     * Today's bytes per quote, one line per stage.
+     */
+    public String dailyReport(String theDate) {
+        return report("Allocation report for " + theDate, dayBytes, dayQuotes, dayMax, dayOver);
+    }
+
+    /**
+     * The same over the whole run, with the budget.
+     */
+    public String summary() {
+        String s = report("Allocation summary", runBytes, runQuotes, runMax, runOver);
+        if (budget > 0) {
+            s += String.format("budget %d bytes/quote\t%s%n", budget, isOverBudget() ? "EXCEEDED" : "met");
+        }
+        return s;
+    }
+
+    private String report(String title, long[] bytes, long quotes, long max, long over) {
+        if (bean == null) return title + ": not tracked\n";
+        long total = 0;
+        for (long b : bytes) total += b;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s, %d quotes, %.1f MB", title, quotes, total / 1e6));
+        if (budget > 0) sb.append(String.format(", %d over %d bytes", over, budget));
+        sb.append(String.format("%n%-10s %12s %8s%n", "stage", "bytes/quote", "share"));
+        for (Stage s : STAGES) {
+            sb.append(String.format("%-10s %12.0f %7.1f%%%n", s, quotes == 0 ? 0.0 : (double) bytes[s.ordinal()] / quotes,
+                total == 0 ? 0.0 : 100.0 * bytes[s.ordinal()] / total));
+        }
+        sb.append(String.format("%-10s %12.0f %8s  (max %d)%n", "quote", quotes == 0 ? 0.0 : (double) total / quotes, "", max));
+        return sb.toString();
+    }
+}
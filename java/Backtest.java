@@ -0,0 +1,299 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Backtest runs the Monkey's strategies over a QuoteTape in memory, with its own AllHoldings,
+ * RiskEngine and in-memory Prof_Plum, so many Backtests can run at once on different threads.
+ *
+ * The day and quote loop makes the same decisions as Monkey.main (the order Green, Scarlet,
+ * Peacock, Mustard, the same dayNum windows and Plum's reset between datasets), without the
+ * transcript, the event log or the console output.  Orders fill straight into AllHoldings, the
+ * ExecutionSimulator is not used.
+ *
+ * Thresholds come from config.txt, except for the ones in the params map given to run(), which
+ * win for that run only.  config.txt is read once, when the Backtest is made, since a sweep does
+ * thousands of runs.  The strategies' log files are not written during a run.
+ *
+ * @version v1
+ */
+public class Backtest
+{
+    /**
+     * What a run made.
+     */
+    public static final class Result {
+        private final double profit;
+        private final double realizedProfit;
+        private final int openShares;
+        private final double[] closeProfits;
+        private final int numQuotes;
+
+        Result(double profit, double realizedProfit, int openShares, double[] closeProfits, int numQuotes) {
+            this.profit = profit;
+            this.realizedProfit = realizedProfit;
+            this.openShares = openShares;
+            this.closeProfits = closeProfits;
+            this.numQuotes = numQuotes;
+        }
+
+        //realized profit plus the open position marked at the last price
+        public double getProfit() { return profit; }
+        public double getRealizedProfit() { return realizedProfit; }
+        public int getOpenShares() { return openShares; }
+        //the profit of every close, in the order they happened
+        public double[] getCloseProfits() { return closeProfits.clone(); }
+        public int getNumTrades() { return closeProfits.length; }
+        public int getNumQuotes() { return numQuotes; }
+
+        public int getNumWins() {
+            int n = 0;
+            for (double p : closeProfits) if (p > 0) n++;
+            return n;
+        }
+
+        //largest fall of the cumulative closed profit from its high
+        public double getMaxDrawdown() {
+            double equity = 0.0, peak = 0.0, maxDD = 0.0;
+            for (double p : closeProfits) {
+                equity += p;
+                peak = Math.max(peak, equity);
+                maxDD = Math.max(maxDD, peak - equity);
+            }
+            return maxDD;
+        }
+
+        public String toString() {
+            return String.format("profit %.2f\trealized %.2f\ttrades %d\twins %d\tmaxDD %.2f\topen %d",
+                profit, realizedProfit, getNumTrades(), getNumWins(), getMaxDrawdown(), openShares);
+        }
+    }
+
+
+
+    private final String symbol;
+    private final int numShares;
+    private final boolean vectorized;
+    private final Map<String, String> config = Tools.getAllConfig();
+
+
+
+    public Backtest(String symbol, int numShares) {
+        this(symbol, numShares, false);
+    }
+
+    /**
+     * vectorized = true trades each day from its DayColumns:  the kernels find the next quote on
+     * which the strategy in charge would act and only that quote goes through the strategy.  The
+     * result is the same as quote by quote, just faster.
+     */
+    public Backtest(String symbol, int numShares, boolean vectorized) {
+        this.symbol = symbol;
+        this.numShares = numShares;
+        this.vectorized = vectorized;
+    }
+
+
+
+    /**
+     * Trades days (in date order) with the thresholds in params over config.txt.
+     * params may be null.
+     */
+    public Result run(List<QuoteTape.Day> days, Map<String, String> params) {
+        HashMap<String, String> settings = new HashMap<>(config);
+        if (params != null) {
+            for (Map.Entry<String, String> e : params.entrySet()) settings.put(e.getKey().toUpperCase().trim(), e.getValue());
+        }
+        Tools.setConfigOverrides(settings);
+        Tools.setLogging(false);
+        try {
+            return new Run().trade(days);
+        } finally {
+            Tools.setConfigOverrides(null);
+            Tools.setLogging(true);
+        }
+    }
+
+
+
+    //one run's holdings, strategies and Plum, so one Backtest can run on many threads at once
+    private final class Run {
+        final int symbolId = Symbols.id(symbol);
+        final boolean enable_Green   = Tools.getConfig("enable_Green").trim().equalsIgnoreCase("YES");
+        final boolean enable_Scarlet = Tools.getConfig("enable_Scarlet").trim().equalsIgnoreCase("YES");
+        final boolean enable_Peacock = Tools.getConfig("enable_Peacock").trim().equalsIgnoreCase("YES");
+        final boolean enable_Mustard = Tools.getConfig("enable_Mustard").trim().equalsIgnoreCase("YES");
+        final boolean enable_Risk    = Tools.getConfig("enable_Risk").trim().equalsIgnoreCase("YES");
+        final double sl_lowerlimit = Double.parseDouble(Tools.getConfig("SCARLET_SL_LOWERLIMIT"));
+        final double sl_upperlimit = Double.parseDouble(Tools.getConfig("SCARLET_SL_UPPERLIMIT"));
+
+        final AllHoldings h = new AllHoldings();
+        final RiskEngine risk = enable_Risk ? new RiskEngine() : null;
+        final Prof_Plum plum = new Prof_Plum(false);
+        Mr_Green green;
+        Miss_Scarlet scarlet;
+        Mrs_Peacock peacock;
+        Col_Mustard mustard;
+
+        final ArrayList<Double> closeProfits = new ArrayList<>();
+        double lastPrice = 0.0;
+        int numQuotes = 0;
+
+
+
+        Result trade(List<QuoteTape.Day> days) {
+            h.setRiskEngine(risk);
+            String theDate = days.isEmpty() ? "" : days.get(0).getDate();
+            String theTime = "09:29:00";
+            String openTime = days.isEmpty() ? "09:29:01" : days.get(0).getMarketOpenTime();
+            String closeTime = days.isEmpty() ? "16:00:01" : days.get(0).getMarketCloseTime();
+            green = new Mr_Green(symbol, theDate, theTime, h, plum, openTime, closeTime);
+            scarlet = new Miss_Scarlet(symbol, theDate, theTime, h, plum, openTime, closeTime);
+            peacock = new Mrs_Peacock(symbol, theDate, theTime, h, plum, openTime, closeTime);
+            mustard = new Col_Mustard(symbol, theDate, theTime, h, plum, openTime, closeTime);
+            OrderRouter orders = new OrderRouter(h, null, risk);
+            green.setOrderRouter(orders);
+            scarlet.setOrderRouter(orders);
+            peacock.setOrderRouter(orders);
+            mustard.setOrderRouter(orders);
+
+            boolean alreadyDone = false;
+            for (QuoteTape.Day day : days) {
+                int dayNum = day.getDayNum();
+
+                //Plum's stats start again for every dataset that runs from dayNum = -7 to 4
+                if (dayNum < -7 || dayNum > 4) {
+                    if (!alreadyDone) {
+                        plum.clearFile();
+                        alreadyDone = true;
+                    }
+                    continue;
+                }
+
+                green.setMarketOpenTime(day.getMarketOpenTime());
+                scarlet.setMarketOpenTime(day.getMarketOpenTime());
+                mustard.setMarketOpenTime(day.getMarketOpenTime());
+                peacock.setMarketOpenTime(day.getMarketOpenTime());
+                green.setMarketCloseTime(day.getMarketCloseTime());
+                scarlet.setMarketCloseTime(day.getMarketCloseTime());
+                mustard.setMarketCloseTime(day.getMarketCloseTime());
+                peacock.setMarketCloseTime(day.getMarketCloseTime());
+
+                if (vectorized) tradeColumns(day);
+                else for (int i = 0; i < day.size(); i++) tradeQuote(day, i);
+                if (day.size() > 0) lastPrice = day.getQuote(day.size() - 1).getPrice();
+                numQuotes += day.size();
+                if (dayNum == 4) alreadyDone = false;
+            }
+
+            HoldingsSnapshot.Position open = h.getSnapshot().getPosition(symbolId);
+            double unrealized = open == null ? 0.0 : open.unrealizedProfit(lastPrice);
+            double[] profits = new double[closeProfits.size()];
+            for (int i = 0; i < profits.length; i++) profits[i] = closeProfits.get(i);
+            return new Result(h.totalProfit(symbolId) + unrealized, h.totalProfit(symbolId),
+                              h.getNumShares(symbolId), profits, numQuotes);
+        }
+
+
+
+        //quote i as Monkey.main handles it:  Plum's stats, then the strategy in charge of the position
+        void tradeQuote(QuoteTape.Day day, int i) {
+            Quote q = day.getQuote(i);
+            plum.updateStatistics(symbolId, day.getDayNum(), q.getPrice());
+            decide(day, i);
+        }
+
+        //the strategy in charge, by dayNum and position, acts on quote i
+        void decide(QuoteTape.Day day, int i) {
+            int dayNum = day.getDayNum();
+            Quote q = day.getQuote(i);
+            String theDate = day.getDate();
+            String theTime = day.getTime(i);
+
+            int sharesBefore = h.getNumShares(symbolId);
+            if (enable_Green && dayNum >= 0 && dayNum <= 4 && sharesBefore == 0) {
+                green.setTime(theTime);
+                green.setDate(theDate);
+                green.setQuote(q);
+                green.setDayNum(dayNum);
+                green.setNumShares(numShares);
+                green.is_buying();
+            }
+            else if (enable_Scarlet && dayNum >= -7 && dayNum <= -1 && sharesBefore > 0) {
+                scarlet.setTime(theTime);
+                scarlet.setDate(theDate);
+                scarlet.setQuote(q);
+                scarlet.setDayNum(dayNum);
+                scarlet.setNumShares(green.getNumShares());
+                scarlet.is_selling();
+            }
+            else if (enable_Peacock && dayNum >= -7 && dayNum <= -1 && sharesBefore == 0) {
+                peacock.setTime(theTime);
+                peacock.setDate(theDate);
+                peacock.setQuote(q);
+                peacock.setDayNum(dayNum);
+                peacock.setNumShares(-1 * numShares);
+                peacock.is_selling();
+            }
+            else if (enable_Mustard && dayNum >= 0 && dayNum <= 4 && sharesBefore < 0) {
+                mustard.setTime(theTime);
+                mustard.setDate(theDate);
+                mustard.setQuote(q);
+                mustard.setDayNum(dayNum);
+                mustard.setNumShares(-1 * numShares);
+                mustard.is_buying();
+            }
+
+            int sharesAfter = h.getNumShares(symbolId);
+            if (Math.abs(sharesAfter) < Math.abs(sharesBefore)) closeProfits.add(h.getProfit());
+        }
+
+
+
+        //the whole day from its columns:  only the quotes the kernels pick go through decide()
+        void tradeColumns(QuoteTape.Day day) {
+            DayColumns c = day.getColumns();
+            int n = c.size();
+            if (n == 0) return;
+            int dayNum = day.getDayNum();
+            long close = c.close, last15 = c.last15, last10 = c.last10;
+
+            //Plum as it was before the day, the kernels add the day's quotes to it
+            double startHigh = plum.getValue(symbolId, "high", dayNum);
+            double startLow  = plum.getValue(symbolId, "low", dayNum);
+            double h1 = plum.getValue(symbolId, "high", dayNum - 2), l1 = plum.getValue(symbolId, "low", dayNum - 2);
+            double h2 = plum.getValue(symbolId, "high", dayNum - 1), l2 = plum.getValue(symbolId, "low", dayNum - 1);
+            boolean hl = dayNum == 2 || dayNum == 3 || dayNum == 4;
+
+            int i = 0;
+            while (i < n) {
+                int shares = h.getNumShares(symbolId);
+                int next;
+                if (enable_Green && dayNum >= 0 && dayNum <= 4 && shares == 0) {
+                    next = Math.min(dayNum == 4 ? c.firstInWindow(i, last15, close) : n,     //G0
+                                    hl ? c.firstHLx3(i, 1.15, h1, l1, h2, l2, startHigh, startLow) : n);   //G3
+                }
+                else if (enable_Scarlet && dayNum >= -7 && dayNum <= -1 && shares > 0) {
+                    next = Math.min(dayNum == -1 ? c.firstInWindow(i, last15, close) : n,    //S0
+                                    dayNum >= -3 ? c.firstPercentIn(i, h.getAvgCost(symbolId), sl_lowerlimit, sl_upperlimit) : n);   //SL
+                }
+                else if (enable_Peacock && dayNum >= -7 && dayNum <= -1 && shares == 0) {
+                    next = dayNum == -1 ? c.firstInWindow(i, last10, close) : n;              //P0
+                }
+                else if (enable_Mustard && dayNum >= 0 && dayNum <= 4 && shares < 0) {
+                    next = Math.min(dayNum == 4 ? c.firstInWindow(i, last15, close) : n,     //M0
+                                    hl ? c.firstHLx3(i, 1.15, h1, l1, h2, l2, startHigh, startLow) : n);   //M3
+                }
+                else break;   //nobody acts on this position today
+                if (next >= n) break;
+
+                //Plum up to that quote, then the strategy decides on it (the risk engine may still say no)
+                plum.setCandle(symbolId, dayNum, c.price[0], c.plumHigh(next, startHigh), c.plumLow(next, startLow), c.price[next]);
+                decide(day, next);
+                i = next + 1;
+            }
+            plum.setCandle(symbolId, dayNum, c.price[0], c.plumHigh(n - 1, startHigh), c.plumLow(n - 1, startLow), c.price[n - 1]);
+        }
+    }
+}
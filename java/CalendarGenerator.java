@@ -0,0 +1,213 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * CalendarGenerator builds the trading calendar (what marketDates.txt holds) from the
+ * ex-dividend dates in ex_dates.txt, instead of by hand.
+ *
+ *   trading days   weekdays that are not NYSE holidays (see isHoliday) or calendarExtraHolidays
+ *   dayNum         -7..-1 for the 7 trading days before an ex-date, 0 on the ex-date, 1..4 after, else 99
+ *   action         SELL for -7..-1, BUY for 0..4, OBSERVE for 99
+ *   open/close     09:29:01 to 16:00:01, 13:00:01 on the NYSE early close days
+ *
+ * Every symbol in ex_dates.txt (SYMBOL|yyyy-MM-dd|...) gets its own calendar.  The result can be
+ * written as marketDates.txt text or as a binary CalendarIndex, e.g.
+ *
+ *   java CalendarGenerator ..\data\ex_dates.txt 2022-06-27 2023-09-22 ..\data\calendar.idx ..\data\marketDates_PDI.txt
+ *
+ * @version v1
+ */
+public class CalendarGenerator
+{
+    public static final String OPEN_TIME = "09:29:01";
+    public static final String CLOSE_TIME = "16:00:01";
+    public static final String EARLY_CLOSE_TIME = "13:00:01";
+    public static final int DAYS_BEFORE = 7;
+    public static final int DAYS_AFTER = 4;
+
+    private final HashSet<LocalDate> extraHolidays = new HashSet<>();
+
+
+
+    public CalendarGenerator() {
+        for (String d : Tools.getConfig("calendarExtraHolidays").split(",")) {
+            if (!d.trim().isEmpty()) extraHolidays.add(LocalDate.parse(d.trim()));
+        }
+    }
+
+
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("usage: java CalendarGenerator <ex_dates.txt> <fromDate> <toDate> <calendar.idx> [marketDates.txt]");
+            return;
+        }
+        long startTimer = System.nanoTime();
+        CalendarGenerator gen = new CalendarGenerator();
+        Map<String, ArrayList<LocalDate>> exDates = readExDates(args[0]);
+        Map<String, ArrayList<MarketDates.MarketDate>> calendars =
+            gen.generateAll(exDates, LocalDate.parse(args[1]), LocalDate.parse(args[2]));
+        CalendarIndex.write(args[3], calendars);
+        if (args.length > 4 && calendars.size() > 0) {
+            writeText(args[4], calendars.values().iterator().next());
+        }
+        System.out.printf("%d symbol(s), %d days each, written in %.3f ms\n",
+            calendars.size(), calendars.isEmpty() ? 0 : calendars.values().iterator().next().size(),
+            (System.nanoTime() - startTimer) / 1_000_000.0);
+    }
+
+
+
+    /**
+     * Reads ex_dates.txt, SYMBOL|yyyy-MM-dd|...  The dates come back sorted for each symbol.
+     */
+    public static Map<String, ArrayList<LocalDate>> readExDates(String filePath) throws FileNotFoundException {
+        LinkedHashMap<String, ArrayList<LocalDate>> exDates = new LinkedHashMap<>();
+        try (Scanner scanner = new Scanner(new File(filePath))) {
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine().trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.split("\\|");
+                if (parts.length < 2) continue;
+                exDates.computeIfAbsent(parts[0].trim(), k -> new ArrayList<>()).add(LocalDate.parse(parts[1].trim()));
+            }
+        }
+        for (ArrayList<LocalDate> list : exDates.values()) Collections.sort(list);
+        return exDates;
+    }
+
+
+
+    public Map<String, ArrayList<MarketDates.MarketDate>> generateAll(Map<String, ArrayList<LocalDate>> exDates, LocalDate from, LocalDate to) {
+        ArrayList<LocalDate> tradingDays = tradingDays(from.minusDays(30), to.plusDays(30));   //room for the windows at the ends
+        LinkedHashMap<String, ArrayList<MarketDates.MarketDate>> calendars = new LinkedHashMap<>();
+        for (Map.Entry<String, ArrayList<LocalDate>> e : exDates.entrySet()) {
+            calendars.put(e.getKey(), generate(tradingDays, e.getValue(), from, to));
+        }
+        return calendars;
+    }
+
+
+
+    /**
+     * One symbol's calendar over [from, to].  tradingDays must cover the range with room to spare.
+     */
+    public ArrayList<MarketDates.MarketDate> generate(ArrayList<LocalDate> tradingDays, ArrayList<LocalDate> exDates, LocalDate from, LocalDate to) {
+        int n = tradingDays.size();
+        int[] dayNum = new int[n];
+        Arrays.fill(dayNum, 99);
+
+        //one pass over both sorted lists, an ex-date that is not a trading day starts its window on the next trading day
+        int i = 0;
+        for (LocalDate ex : exDates) {
+            while (i < n && tradingDays.get(i).isBefore(ex)) i++;
+            if (i >= n) break;
+            for (int k = -DAYS_BEFORE; k <= DAYS_AFTER; k++) {
+                int j = i + k;
+                if (j >= 0 && j < n) dayNum[j] = k;
+            }
+        }
+
+        ArrayList<MarketDates.MarketDate> days = new ArrayList<>();
+        for (int j = 0; j < n; j++) {
+            LocalDate d = tradingDays.get(j);
+            if (d.isBefore(from) || d.isAfter(to)) continue;
+            String action = dayNum[j] == 99 ? "OBSERVE" : (dayNum[j] < 0 ? "SELL" : "BUY");
+            days.add(new MarketDates.MarketDate(d.toString(), dayNum[j], action, OPEN_TIME,
+                                                isEarlyClose(d) ? EARLY_CLOSE_TIME : CLOSE_TIME));
+        }
+        return days;
+    }
+
+
+
+    public ArrayList<LocalDate> tradingDays(LocalDate from, LocalDate to) {
+        ArrayList<LocalDate> days = new ArrayList<>();
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+            if (isTradingDay(d)) days.add(d);
+        }
+        return days;
+    }
+
+    public boolean isTradingDay(LocalDate d) {
+        DayOfWeek w = d.getDayOfWeek();
+        return w != DayOfWeek.SATURDAY && w != DayOfWeek.SUNDAY && !isHoliday(d) && !extraHolidays.contains(d);
+    }
+
+
+
+    /**
+     * NYSE full-day holidays.  A holiday on a Saturday is observed the Friday before, on a Sunday
+     * the Monday after, except New Year's Day on a Saturday, which is not observed at all.
+     */
+    public static boolean isHoliday(LocalDate d) {
+        int y = d.getYear();
+        return d.equals(observed(LocalDate.of(y, 1, 1)))                                        // New Year's Day
+            || d.equals(nthWeekday(y, Month.JANUARY, DayOfWeek.MONDAY, 3))                      // Martin Luther King Jr. Day
+            || d.equals(nthWeekday(y, Month.FEBRUARY, DayOfWeek.MONDAY, 3))                     // Washington's Birthday
+            || d.equals(easter(y).minusDays(2))                                                 // Good Friday
+            || d.equals(LocalDate.of(y, 5, 31).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)))   // Memorial Day
+            || (y >= 2022 && d.equals(observed(LocalDate.of(y, 6, 19))))                        // Juneteenth
+            || d.equals(observed(LocalDate.of(y, 7, 4)))                                        // Independence Day
+            || d.equals(nthWeekday(y, Month.SEPTEMBER, DayOfWeek.MONDAY, 1))                    // Labor Day
+            || d.equals(nthWeekday(y, Month.NOVEMBER, DayOfWeek.THURSDAY, 4))                   // Thanksgiving
+            || d.equals(observed(LocalDate.of(y, 12, 25)));                                     // Christmas
+    }
+
+    /**
+     * NYSE 1:00 pm closes: July 3rd, the day after Thanksgiving and December 24th, when they are trading days.
+     */
+    public static boolean isEarlyClose(LocalDate d) {
+        int y = d.getYear();
+        return (d.equals(LocalDate.of(y, 7, 3)) && !isHoliday(d))
+            || d.equals(nthWeekday(y, Month.NOVEMBER, DayOfWeek.THURSDAY, 4).plusDays(1))
+            || (d.equals(LocalDate.of(y, 12, 24)) && !isHoliday(d));
+    }
+
+    private static LocalDate observed(LocalDate holiday) {
+        switch (holiday.getDayOfWeek()) {
+            case SATURDAY: return holiday.getMonthValue() == 1 && holiday.getDayOfMonth() == 1 ? null : holiday.minusDays(1);
+            case SUNDAY:   return holiday.plusDays(1);
+            default:       return holiday;
+        }
+    }
+
+    private static LocalDate nthWeekday(int year, Month month, DayOfWeek day, int n) {
+        return LocalDate.of(year, month, 1).with(TemporalAdjusters.dayOfWeekInMonth(n, day));
+    }
+
+    //Gregorian Easter Sunday (anonymous Gregorian algorithm)
+    private static LocalDate easter(int y) {
+        int a = y % 19, b = y / 100, c = y % 100, d = b / 4, e = b % 4;
+        int f = (b + 8) / 25, g = (b - f + 1) / 3, h = (19 * a + b - d - g + 15) % 30;
+        int i = c / 4, k = c % 4, l = (32 + 2 * e + 2 * i - h - k) % 7;
+        int m = (a + 11 * h + 22 * l) / 451;
+        int month = (h + l - 7 * m + 114) / 31, day = ((h + l - 7 * m + 114) % 31) + 1;
+        return LocalDate.of(y, month, day);
+    }
+
+
+
+    //writes the calendar in the marketDates.txt layout
+    public static void writeText(String filePath, ArrayList<MarketDates.MarketDate> days) throws IOException {
+        try (PrintWriter out = new PrintWriter(filePath)) {
+            for (MarketDates.MarketDate md : days) {
+                out.printf("%s\t%d\t%s\t%s\t%s\n", md.getDate(), md.getDayNum(), md.getAction(),
+                           md.getMarketOpenTime(), md.getMarketCloseTime());
+            }
+        }
+    }
+}
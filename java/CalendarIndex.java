@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * CalendarIndex is the binary form of the trading calendars made by CalendarGenerator.
+ *
+ * The file is memory-mapped when it is opened, so loading costs nothing however many symbols
+ * it holds, and a day is found by a binary search within its symbol.
+ *
+ *   header    "MKCAL001", numSymbols, numDays                      16 bytes
+ *   symbols   symbol(8), first day, number of days                 16 bytes each
+ *   days      epochDay, dayNum, action, openSec, closeSec          16 bytes each, sorted by date within a symbol
+ *
+ * action is 0 = OBSERVE, 1 = SELL, 2 = BUY; openSec/closeSec are seconds after midnight.
+ *
+ * @version v1
+ */
+public class CalendarIndex
+{
+    private static final long MAGIC = 0x4D4B43414C303031L;   // "MKCAL001"
+    private static final int HEADER_SIZE = 16;
+    private static final int SYMBOL_SIZE = 16;
+    private static final int DAY_SIZE = 16;
+    private static final String[] ACTIONS = { "OBSERVE", "SELL", "BUY" };
+
+    private final ByteBuffer buf;
+    private final int numSymbols;
+    private final int numDays;
+    private final int daysStart;
+
+
+
+    public CalendarIndex(String filename) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (channel.size() < HEADER_SIZE || map.getLong(0) != MAGIC) {
+                throw new IOException(filename + " is not a calendar index");
+            }
+            buf = map;
+        }
+        numSymbols = buf.getInt(8);
+        numDays = buf.getInt(12);
+        daysStart = HEADER_SIZE + numSymbols * SYMBOL_SIZE;
+    }
+
+
+
+    public static void write(String filename, Map<String, ArrayList<MarketDates.MarketDate>> calendars) throws IOException {
+        int total = 0;
+        for (ArrayList<MarketDates.MarketDate> days : calendars.values()) total += days.size();
+
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + calendars.size() * SYMBOL_SIZE + total * DAY_SIZE);
+        out.putLong(MAGIC).putInt(calendars.size()).putInt(total);
+        int first = 0;
+        for (Map.Entry<String, ArrayList<MarketDates.MarketDate>> e : calendars.entrySet()) {
+            out.put(symbolBytes(e.getKey())).putInt(first).putInt(e.getValue().size());
+            first += e.getValue().size();
+        }
+        for (ArrayList<MarketDates.MarketDate> days : calendars.values()) {
+            for (MarketDates.MarketDate md : days) {
+                out.putInt((int) LocalDate.parse(md.getDate()).toEpochDay());
+                out.put((byte) md.getDayNum());
+                out.put((byte) actionCode(md.getAction()));
+                out.putShort((short) 0);
+                out.putInt((int) Tools.ConvertTimeToLong(md.getMarketOpenTime()));
+                out.putInt((int) Tools.ConvertTimeToLong(md.getMarketCloseTime()));
+            }
+        }
+        out.flip();
+
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw");
+             FileChannel channel = file.getChannel()) {
+            channel.truncate(0);
+            while (out.hasRemaining()) channel.write(out);
+        }
+    }
+
+
+
+    /**
+     * symbol's days in [startDate, endDate], as MarketDates would load them from marketDates.txt
+     */
+    public ArrayList<MarketDates.MarketDate> getMarketDates(String symbol, String startDate, String endDate) {
+        ArrayList<MarketDates.MarketDate> days = new ArrayList<>();
+        int s = findSymbol(symbol);
+        if (s < 0) return days;
+        int first = buf.getInt(HEADER_SIZE + s * SYMBOL_SIZE + 8);
+        int count = buf.getInt(HEADER_SIZE + s * SYMBOL_SIZE + 12);
+        int end = (int) LocalDate.parse(endDate).toEpochDay();
+        for (int i = search(first, count, (int) LocalDate.parse(startDate).toEpochDay()); i < first + count; i++) {
+            int p = daysStart + i * DAY_SIZE;
+            if (buf.getInt(p) > end) break;
+            days.add(new MarketDates.MarketDate(LocalDate.ofEpochDay(buf.getInt(p)).toString(), buf.get(p + 4),
+                ACTIONS[buf.get(p + 5)], secondsToTime(buf.getInt(p + 8)), secondsToTime(buf.getInt(p + 12))));
+        }
+        return days;
+    }
+
+    //99 when theDate is not in symbol's calendar
+    public int getDayNum(String symbol, String theDate) {
+        int s = findSymbol(symbol);
+        if (s < 0) return 99;
+        int first = buf.getInt(HEADER_SIZE + s * SYMBOL_SIZE + 8);
+        int count = buf.getInt(HEADER_SIZE + s * SYMBOL_SIZE + 12);
+        int day = (int) LocalDate.parse(theDate).toEpochDay();
+        int i = search(first, count, day);
+        if (i < first + count && buf.getInt(daysStart + i * DAY_SIZE) == day) return buf.get(daysStart + i * DAY_SIZE + 4);
+        return 99;
+    }
+
+    public int getNumSymbols() {
+        return numSymbols;
+    }
+
+    public int getNumDays() {
+        return numDays;
+    }
+
+
+
+    private int findSymbol(String symbol) {
+        byte[] want = symbolBytes(symbol);
+        for (int s = 0; s < numSymbols; s++) {
+            int p = HEADER_SIZE + s * SYMBOL_SIZE;
+            boolean same = true;
+            for (int b = 0; b < 8 && same; b++) same = buf.get(p + b) == want[b];
+            if (same) return s;
+        }
+        return -1;
+    }
+
+    //first day at or after epochDay
+    private int search(int first, int count, int epochDay) {
+        int lo = first, hi = first + count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (buf.getInt(daysStart + mid * DAY_SIZE) < epochDay) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static byte[] symbolBytes(String symbol) {
+        byte[] b = new byte[8];
+        byte[] s = symbol.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(s, 0, b, 0, Math.min(8, s.length));
+        return b;
+    }
+
+    private static int actionCode(String action) {
+        for (int i = 0; i < ACTIONS.length; i++) {
+            if (ACTIONS[i].equalsIgnoreCase(action)) return i;
+        }
+        return 0;
+    }
+
+    private static String secondsToTime(int sec) {
+        return String.format("%02d:%02d:%02d", sec / 3600, (sec / 60) % 60, sec % 60);
+    }
+}
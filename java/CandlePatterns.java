@@ -0,0 +1,303 @@
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CandlePatterns keeps the last few candles of every symbol on several timeframes and knows, after
+ * every tick, which candle patterns the newest candles make.  The newest candle is the one still
+ * forming, the way the strategies compare today's high and low so far with the last two days'.
+ *
+ * A pattern is a bit in a long, so the flags of a symbol-timeframe are one long, read in O(1):
+ *
+ *     if (patterns.matches(symbolId, 0, CandlePatterns.Pattern.INSIDE_BAR)) ...
+ *
+ * The candles are kept struct-of-arrays, a ring of DEPTH candles per symbol-timeframe, indexed by
+ * the symbol's id (see Symbols).  A tick updates the forming candle, or starts a new one when it
+ * falls in the next bucket, and works out the flags again from the ring:  a fixed amount of work
+ * whatever the number of symbols, so hundreds of symbols can be scanned at once (see scan()).
+ *
+ * A timeframe is fed one of two ways:
+ *
+ *   - update(symbolId, epochSec, price) buckets the tick by time, on every timeframe
+ *   - update(symbolId, timeframe, bucket, price) and set() are given the bucket, e.g. Prof_Plum's
+ *     dayNum, whose days are trading days and not 86400 seconds
+ *
+ * A bucket that is skipped is a missing candle (NaN), and every pattern needing it is then false.
+ * A bucket older than the newest one starts the series again, as a new dataset does.
+ *
+ *     java CandlePatterns [numSymbols]     scans a synthetic day of numSymbols symbols, see SyntheticTicks
+ *
+ * @version v1
+ */
+public class CandlePatterns
+{
+    public static final int DEPTH = 3;   // candles kept, the longest pattern
+
+    /**
+     * The library.  Candle 1 is the oldest, 3 the newest (forming) one.
+     */
+    public enum Pattern {
+        DESCENDING_3,        // three lower highs and lower lows in a row, Tools.HLx3
+        ASCENDING_3,         // three higher highs and higher lows in a row
+        HIGHER_HIGH,         // the newest high is above the one before
+        LOWER_LOW,           // the newest low is below the one before
+        INSIDE_BAR,          // the newest range is inside the one before
+        OUTSIDE_BAR,         // the newest range covers the one before, both ends
+        BULLISH_ENGULFING,   // a down candle, then an up candle whose body covers its body
+        BEARISH_ENGULFING;   // an up candle, then a down candle whose body covers its body
+
+        public final long bit = 1L << ordinal();
+    }
+
+
+
+    /**
+     * The flags of three candles (o1, h1, l1, c1 the oldest).  NaN for a candle that is missing.
+     */
+    public static long evaluate(double o1, double h1, double l1, double c1,
+                                double o2, double h2, double l2, double c2,
+                                double o3, double h3, double l3, double c3) {
+        long flags = 0;
+        if (h1 > h2 && h1 > h3 && h2 > h3 && l1 > l2 && l1 > l3 && l2 > l3) flags |= Pattern.DESCENDING_3.bit;
+        if (h1 < h2 && h2 < h3 && l1 < l2 && l2 < l3) flags |= Pattern.ASCENDING_3.bit;
+        if (h3 > h2) flags |= Pattern.HIGHER_HIGH.bit;
+        if (l3 < l2) flags |= Pattern.LOWER_LOW.bit;
+        if (h3 < h2 && l3 > l2) flags |= Pattern.INSIDE_BAR.bit;
+        if (h3 > h2 && l3 < l2) flags |= Pattern.OUTSIDE_BAR.bit;
+        if (c2 < o2 && c3 > o3 && o3 <= c2 && c3 >= o2) flags |= Pattern.BULLISH_ENGULFING.bit;
+        if (c2 > o2 && c3 < o3 && o3 >= c2 && c3 <= o2) flags |= Pattern.BEARISH_ENGULFING.bit;
+        return flags;
+    }
+
+
+
+    private final long[] seconds;        // per timeframe, the candle length
+    private final long offsetSec;        // local time, so daily candles start at midnight
+    private final int numTimeframes;
+    private int capacity = 0;            // symbols room is made for
+
+    //per symbol-timeframe (series = symbolId * numTimeframes + timeframe)
+    private long[] bucket = new long[0]; // bucket of the newest candle
+    private long[] end = new long[0];    // epoch second the newest candle ends at (time-bucketed only)
+    private int[] head = new int[0];     // ring slot of the newest candle
+    private int[] count = new int[0];    // candles in the ring, up to DEPTH
+    private long[] flags = new long[0];
+    //per candle (series * DEPTH + slot)
+    private double[] open = new double[0], high = new double[0], low = new double[0], close = new double[0];
+
+
+
+    /**
+     * @param timeframeSeconds   e.g. {60, 300, 86400} for 1 minute, 5 minute and daily candles
+     */
+    public CandlePatterns(long... timeframeSeconds) {
+        this.seconds = timeframeSeconds.clone();
+        this.numTimeframes = seconds.length;
+        this.offsetSec = ZonedDateTime.now(ZoneId.systemDefault()).getOffset().getTotalSeconds();
+        ensureCapacity(Math.max(16, Symbols.size()));
+    }
+
+
+
+    private void ensureCapacity(int symbols) {
+        if (symbols <= capacity) return;
+        int newCapacity = Math.max(symbols, capacity * 2);
+        int series = newCapacity * numTimeframes;
+        bucket = Arrays.copyOf(bucket, series);
+        end = Arrays.copyOf(end, series);
+        head = Arrays.copyOf(head, series);
+        count = Arrays.copyOf(count, series);
+        flags = Arrays.copyOf(flags, series);
+        open = Arrays.copyOf(open, series * DEPTH);
+        high = Arrays.copyOf(high, series * DEPTH);
+        low = Arrays.copyOf(low, series * DEPTH);
+        close = Arrays.copyOf(close, series * DEPTH);
+        capacity = newCapacity;
+    }
+
+
+
+    /**
+     * One tick of symbolId at epochSec, on every timeframe.
+     */
+    public void update(int symbolId, long epochSec, double price) {
+        if (symbolId < 0) return;
+        if (symbolId >= capacity) ensureCapacity(symbolId + 1);
+        for (int tf = 0; tf < numTimeframes; tf++) {
+            int s = symbolId * numTimeframes + tf;
+            if (count[s] == 0 || epochSec >= end[s] || epochSec < end[s] - seconds[tf]) {
+                //a new candle, the only time the division is done
+                long b = Math.floorDiv(epochSec + offsetSec, seconds[tf]);
+                roll(s, b);
+                end[s] = (b + 1) * seconds[tf] - offsetSec;
+            }
+            tick(s, price);
+        }
+    }
+
+    /**
+     * One tick of symbolId in bucket b of timeframe tf.
+     */
+    public void update(int symbolId, int tf, long b, double price) {
+        if (symbolId < 0) return;
+        if (symbolId >= capacity) ensureCapacity(symbolId + 1);
+        int s = symbolId * numTimeframes + tf;
+        if (count[s] == 0 || b != bucket[s]) roll(s, b);
+        tick(s, price);
+    }
+
+    /**
+     * Bucket b of timeframe tf is the candle o, h, l, c so far, e.g. a day worked out in one go.
+     */
+    public void set(int symbolId, int tf, long b, double o, double h, double l, double c) {
+        if (symbolId < 0) return;
+        if (symbolId >= capacity) ensureCapacity(symbolId + 1);
+        int s = symbolId * numTimeframes + tf;
+        if (count[s] == 0 || b != bucket[s]) roll(s, b);
+        int i = s * DEPTH + head[s];
+        open[i] = o;
+        high[i] = h;
+        low[i] = l;
+        close[i] = c;
+        flags[s] = flags(s);
+    }
+
+    //series s moves on to bucket b:  skipped buckets are missing candles, an older bucket starts it again
+    private void roll(int s, long b) {
+        if (count[s] == 0 || b < bucket[s]) {
+            count[s] = 0;
+        } else {
+            for (long gap = Math.min(b - bucket[s] - 1, DEPTH); gap > 0; gap--) {
+                push(s);
+                int i = s * DEPTH + head[s];
+                open[i] = high[i] = low[i] = close[i] = Double.NaN;
+            }
+        }
+        push(s);
+        int i = s * DEPTH + head[s];
+        open[i] = high[i] = low[i] = close[i] = Double.NaN;
+        bucket[s] = b;
+    }
+
+    private void push(int s) {
+        head[s] = head[s] == DEPTH - 1 ? 0 : head[s] + 1;
+        if (count[s] < DEPTH) count[s]++;
+    }
+
+    //the forming candle of series s takes price
+    private void tick(int s, double price) {
+        int i = s * DEPTH + head[s];
+        if (Double.isNaN(open[i])) {
+            open[i] = high[i] = low[i] = close[i] = price;
+        } else {
+            if (price > high[i]) high[i] = price;
+            if (price < low[i]) low[i] = price;
+            close[i] = price;
+        }
+        flags[s] = flags(s);
+    }
+
+    //the flags of series s from its ring, missing candles as NaN
+    private long flags(int s) {
+        int base = s * DEPTH;
+        int i3 = base + head[s];
+        int i2 = base + (head[s] + DEPTH - 1) % DEPTH;
+        int i1 = base + (head[s] + DEPTH - 2) % DEPTH;
+        int n = count[s];
+        double o2 = n >= 2 ? open[i2] : Double.NaN, h2 = n >= 2 ? high[i2] : Double.NaN;
+        double l2 = n >= 2 ? low[i2] : Double.NaN, c2 = n >= 2 ? close[i2] : Double.NaN;
+        double o1 = n >= 3 ? open[i1] : Double.NaN, h1 = n >= 3 ? high[i1] : Double.NaN;
+        double l1 = n >= 3 ? low[i1] : Double.NaN, c1 = n >= 3 ? close[i1] : Double.NaN;
+        return evaluate(o1, h1, l1, c1, o2, h2, l2, c2, open[i3], high[i3], low[i3], close[i3]);
+    }
+
+
+
+    public long getFlags(int symbolId, int timeframe) {
+        return symbolId >= 0 && symbolId < capacity ? flags[symbolId * numTimeframes + timeframe] : 0L;
+    }
+
+    public boolean matches(int symbolId, int timeframe, Pattern p) {
+        return (getFlags(symbolId, timeframe) & p.bit) != 0;
+    }
+
+    //whether the newest candle of symbolId on timeframe is bucket b
+    public boolean isNewest(int symbolId, int timeframe, long b) {
+        if (symbolId < 0 || symbolId >= capacity) return false;
+        int s = symbolId * numTimeframes + timeframe;
+        return count[s] > 0 && bucket[s] == b;
+    }
+
+    //the symbols whose newest candles on timeframe make pattern p
+    public List<Integer> scan(int timeframe, Pattern p) {
+        ArrayList<Integer> found = new ArrayList<>();
+        for (int id = 0; id < capacity; id++) {
+            if ((flags[id * numTimeframes + timeframe] & p.bit) != 0) found.add(id);
+        }
+        return found;
+    }
+
+    //forgets symbolId's candles, e.g. at the start of a new dataset
+    public void clear(int symbolId) {
+        if (symbolId < 0 || symbolId >= capacity) return;
+        for (int tf = 0; tf < numTimeframes; tf++) {
+            int s = symbolId * numTimeframes + tf;
+            count[s] = 0;
+            flags[s] = 0L;
+        }
+    }
+
+    //forgets every symbol's candles
+    public void clear() {
+        Arrays.fill(count, 0);
+        Arrays.fill(flags, 0L);
+    }
+
+
+
+    public static void main(String[] args) throws Exception {
+        int numSymbols = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        String[] symbols = new String[numSymbols];
+        for (int s = 0; s < numSymbols; s++) symbols[s] = String.format("SYN%03d", s);
+        int[] ids = new int[numSymbols];
+        for (int s = 0; s < numSymbols; s++) ids[s] = Symbols.id(symbols[s]);
+
+        MarketDates md = new MarketDates();
+        md.loadFromFile("../data/marketDates.txt", Tools.getConfig("walkForwardStartDate"), Tools.getConfig("walkForwardEndDate"));
+        List<MarketDates.MarketDate> dates = md.getMarketDates().subList(0, Math.min(3, md.getMarketDates().size()));
+        SyntheticTicks gen = new SyntheticTicks(symbols, dates);
+
+        long[] timeframes = {60, 300, 1800};
+        CandlePatterns patterns = null;
+        SyntheticTicks.Day day = gen.newDay();
+        long ticks = 0, nanos = 0;
+        for (int pass = 0; pass < 2; pass++) {   //the first pass warms up
+            patterns = new CandlePatterns(timeframes);
+            ticks = 0;
+            nanos = 0;
+            for (int d = 0; d < dates.size(); d++) {
+                for (int s = 0; s < numSymbols; s++) {
+                    gen.generate(s, d, day);
+                    long start = System.nanoTime();
+                    for (int i = 0; i < day.size; i++) patterns.update(ids[s], day.epochSec[i], day.price[i]);
+                    nanos += System.nanoTime() - start;
+                    ticks += day.size;
+                }
+            }
+        }
+        System.out.printf("CandlePatterns: %d symbols x %d days, %d ticks on %d timeframes in %.2f s, %.1f million ticks/s, %.0f ns a tick%n",
+            numSymbols, dates.size(), ticks, timeframes.length, nanos / 1e9, ticks / (nanos / 1e3), (double) nanos / ticks);
+
+        //how many symbols make each pattern at the close of the last day
+        StringBuilder sb = new StringBuilder("pattern");
+        for (long tf : timeframes) sb.append('\t').append(tf).append(" s");
+        System.out.println(sb);
+        for (Pattern p : Pattern.values()) {
+            sb = new StringBuilder(p.toString());
+            for (int tf = 0; tf < timeframes.length; tf++) sb.append('\t').append(patterns.scan(tf, p).size());
+            System.out.println(sb);
+        }
+    }
+}
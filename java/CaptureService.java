@@ -0,0 +1,434 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.locks.LockSupport;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * CaptureService is the Java replacement for capture/capture_v129.py.
+ *
+ * It subscribes to the same market data fields (31, 83, 84, 85, 86, 88, 89, 293) for the
+ * CONID_SYMBOL_MAP symbols, but instead of one MySQL INSERT per quote:
+ *
+ *   - the WebSocket thread decodes each message and drops the tick into a preallocated RingBuffer
+ *   - a writer thread drains the ring in batches into the day's TickStore file, and forces
+ *     everything written in the last captureCommitMs to disk at once (group commit)
+ *   - as soon as a batch is written the ticks are handed to any registered TickListener in the same process
+ *
+ * The high/low/open tracking and the "use the last known bid/ask/size when a field is missing"
+ * rules are the same as capture_v129.py, so the ticks match what went into MySQL.
+ *
+ *   java CaptureService                 wait for captureStartTime, then connect to the IBKR gateway at captureURL
+ *   java CaptureService --local 100000  feed 100000 ticks from LocalFeed instead (for testing)
+ *
+ * @version v1
+ */
+public class CaptureService
+{
+    public static final Map<String, String> CONID_SYMBOL_MAP = new LinkedHashMap<>();
+    static {
+        CONID_SYMBOL_MAP.put("73128548", "DIA");
+        CONID_SYMBOL_MAP.put("756733", "SPY");
+        CONID_SYMBOL_MAP.put("107976119", "PDI");
+        CONID_SYMBOL_MAP.put("416921", "TNX");
+        CONID_SYMBOL_MAP.put("13455763", "VIX");
+        CONID_SYMBOL_MAP.put("320227571", "QQQ");
+        CONID_SYMBOL_MAP.put("479624278", "BTC");
+        CONID_SYMBOL_MAP.put("15016062", "USD.CAD");
+    }
+
+    public static final String[] FIELDS = {"31", "83", "85", "84", "86", "88", "89", "293"};
+
+    private static final int RING_SIZE = 1 << 16;       // must be a power of 2
+    private static final int MAX_BATCH = 4096;
+
+    // per symbol state, same as symbol_tracker in capture_v129.py
+    private static class Tracker {
+        double high, low, open, close;
+        boolean openSet;
+        double lastPrice, lastBid, lastAsk;
+        int lastBidSize, lastAskSize;
+    }
+
+    private final HashMap<String, Tracker> trackers = new HashMap<>();
+    private final ArrayList<TickListener> listeners = new ArrayList<>();
+    private final TickStore store;
+    private final LocalTime startTime;
+    private final LocalTime endTime;
+    private final long commitIntervalNs;
+
+    // the feed thread hands the ticks to the writer through the ring, one preallocated Tick per slot
+    private final RingBuffer<TickStore.Tick> ring = new RingBuffer<>(RING_SIZE, TickStore.Tick::new, false);
+    private volatile boolean running = true;
+    private Thread writerThread;
+
+    private long ticksCommitted = 0;
+    private long commits = 0;
+
+
+
+    public CaptureService(TickStore store) {
+        this.store = store;
+        this.startTime = LocalTime.parse(Tools.getConfig("captureStartTime"));
+        this.endTime = LocalTime.parse(Tools.getConfig("captureEndTime"));
+        this.commitIntervalNs = Long.parseLong(Tools.getConfig("captureCommitMs")) * 1_000_000L;
+    }
+
+
+
+    public void addListener(TickListener listener) {
+        listeners.add(listener);
+    }
+
+
+
+    public void start() {
+        writerThread = new Thread(this::writerLoop, "capture-writer");
+        writerThread.start();
+    }
+
+
+
+    /**
+     * Waits until captureStartTime, as capture_v129.py does before it opens the stream:  a message
+     * from before then would stop the capture (see onMessage).
+     */
+    public void waitForStart() throws InterruptedException {
+        TradingClock clock = Tools.getClock();
+        LocalTime now;
+        while ((now = clock.now().toLocalTime()).isBefore(startTime)) {
+            System.out.println("Waiting for captureStartTime (" + startTime + ")... Current: " + now.withNano(0));
+            clock.sleep(10_000);
+        }
+    }
+
+
+
+    //stops after everything already in the ring has been committed
+    public void stop() {
+        running = false;
+        try {
+            if (writerThread != null) writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+
+    /**
+     * Decodes one market data message, same as on_message()/log_quote() in capture_v129.py.
+     * Called from the feed thread only (single producer).
+     *
+     * @return false once the message is past captureEndTime
+     */
+    public boolean onMessage(String message) {
+        Map<String, String> data = parseFlatJson(message);
+        String conid = data.get("conid");
+        if (conid == null) return true;
+        String symbol = CONID_SYMBOL_MAP.getOrDefault(conid, "UNKNOWN-" + conid);
+
+        long epochSec = convertTimestamp(data.get("83"));
+        LocalTime t = LocalTime.ofInstant(Instant.ofEpochSecond(epochSec), ZoneId.systemDefault());
+        if (!t.isBefore(endTime) || t.isBefore(startTime)) return false;
+
+        Tracker tr = trackers.get(symbol);
+        double bid = number(data.get("84"), 0.0);
+        double ask = number(data.get("86"), 0.0);
+        double rawLast = number(data.get("31"), Double.NaN);
+
+        double lastPrice;
+        if (!Double.isNaN(rawLast)) lastPrice = rawLast;
+        else if (bid > 0 && ask > 0) lastPrice = (bid + ask) / 2;
+        else lastPrice = (tr == null) ? 0.0 : tr.lastPrice;
+
+        int bidSize = (int) number(data.get("85"), 0);
+        int askSize = (int) number(data.get("88"), 0);
+        long volume = (long) number(data.get("89"), 0);
+
+        if (tr == null) {
+            tr = new Tracker();
+            tr.high = lastPrice;
+            tr.low = lastPrice;
+            trackers.put(symbol, tr);
+        }
+        double finalBid = (bid > 0) ? bid : tr.lastBid;
+        double finalAsk = (ask > 0) ? ask : tr.lastAsk;
+        int finalBidSize = (bidSize > 0) ? bidSize : tr.lastBidSize;
+        int finalAskSize = (askSize > 0) ? askSize : tr.lastAskSize;
+
+        tr.lastPrice = lastPrice;
+        if (finalBid > 0) tr.lastBid = finalBid;
+        if (finalAsk > 0) tr.lastAsk = finalAsk;
+        if (bidSize > 0) tr.lastBidSize = bidSize;
+        if (askSize > 0) tr.lastAskSize = askSize;
+        if (!tr.openSet) {
+            tr.open = lastPrice;
+            tr.openSet = true;
+        }
+        if (lastPrice > tr.high) tr.high = lastPrice;
+        if (lastPrice < tr.low) tr.low = lastPrice;
+
+        //claim a slot, wait if the writer has fallen a whole ring behind
+        long seq = ring.next(RingBuffer.BUSY_SPIN);
+        TickStore.Tick tick = ring.get(seq);
+        tick.epochSec = epochSec;
+        tick.symbol = symbol;
+        tick.price = lastPrice;
+        tick.bid = finalBid;
+        tick.ask = finalAsk;
+        tick.high = tr.high;
+        tick.low = tr.low;
+        tick.close = tr.close;
+        tick.open = tr.open;
+        tick.volume = volume;
+        tick.bidSize = finalBidSize;
+        tick.askSize = finalAskSize;
+        ring.publish(seq);
+        return true;
+    }
+
+
+
+    private void writerLoop() {
+        TickStore.Writer out = null;
+        LocalDate outDate = null;
+        boolean uncommitted = false;
+        long lastCommit = System.nanoTime();
+        long tail = 0;       // next sequence to write
+        try {
+            while (running || ring.getCursor() >= tail) {
+                long available = ring.getCursor() + 1 - tail;
+                if (available == 0) {
+                    if (uncommitted) {      //the feed has gone quiet, commit what we have
+                        out.commit();
+                        commits++;
+                        uncommitted = false;
+                        lastCommit = System.nanoTime();
+                    }
+                    LockSupport.parkNanos(200_000);
+                    continue;
+                }
+
+                long batchEnd = tail + Math.min(available, MAX_BATCH);
+                for (long seq = tail; seq < batchEnd; seq++) {
+                    TickStore.Tick tick = ring.get(seq);
+                    LocalDate d = LocalDate.ofInstant(Instant.ofEpochSecond(tick.epochSec), ZoneId.systemDefault());
+                    if (!d.equals(outDate)) {
+                        if (out != null) out.close();     //close() commits the old day
+                        uncommitted = false;
+                        out = store.openWriter(d);
+                        outDate = d;
+                    }
+                    out.write(tick);
+                }
+                out.flush();
+                uncommitted = true;
+                if (System.nanoTime() - lastCommit >= commitIntervalNs) {
+                    out.commit();    //one force() for everything since the last commit
+                    commits++;
+                    uncommitted = false;
+                    lastCommit = System.nanoTime();
+                }
+
+                for (long seq = tail; seq < batchEnd; seq++) {
+                    TickStore.Tick tick = ring.get(seq);
+                    for (TickListener l : listeners) l.onTick(tick);
+                }
+                ticksCommitted += batchEnd - tail;
+                ring.release(batchEnd - 1);     // hand the slots back to the producer
+                tail = batchEnd;
+            }
+            if (out != null) out.close();
+        } catch (IOException e) {
+            System.out.println("CaptureService Error 80: unable to write ticks, " + e.getMessage());
+            Tools.log("CaptureService Error 80: " + e.getMessage());
+        }
+    }
+
+
+
+    /**
+     * Connects to the gateway's WebSocket and subscribes every CONID_SYMBOL_MAP symbol.
+     * Returns when the feed closes or captureEndTime is reached.
+     */
+    public void runWebSocket(String url) throws Exception {
+        SSLContext ssl = SSLContext.getInstance("TLS");
+        ssl.init(null, new TrustManager[] { new X509TrustManager() {    // the gateway uses a self-signed certificate
+            public void checkClientTrusted(X509Certificate[] c, String a) { }
+            public void checkServerTrusted(X509Certificate[] c, String a) { }
+            public X509Certificate[] getAcceptedIssuers() { return new X509Certificate[0]; }
+        } }, new SecureRandom());
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        WebSocket.Listener listener = new WebSocket.Listener() {
+            private final StringBuilder partial = new StringBuilder();
+
+            public void onOpen(WebSocket ws) {
+                System.out.println("Opened WebSocket connection.");
+                for (String conid : CONID_SYMBOL_MAP.keySet()) {
+                    ws.sendText("smd+" + conid + "+{\"fields\":[\"" + String.join("\",\"", FIELDS) + "\"]}", true);
+                }
+                ws.request(1);
+            }
+
+            public CompletionStage<?> onText(WebSocket ws, CharSequence text, boolean last) {
+                partial.append(text);
+                if (last) {
+                    String message = partial.toString();
+                    partial.setLength(0);
+                    if (!onMessage(message)) {
+                        System.out.println("Outside configured trading hours. Stopping stream.");
+                        done.complete(null);
+                        return null;
+                    }
+                }
+                ws.request(1);
+                return null;
+            }
+
+            public CompletionStage<?> onClose(WebSocket ws, int code, String reason) {
+                System.out.println("## CLOSED ##");
+                done.complete(null);
+                return null;
+            }
+
+            public void onError(WebSocket ws, Throwable error) {
+                System.out.println("WebSocket Error: " + error);
+                Tools.log("WebSocket Error: " + error);
+                done.complete(null);
+            }
+        };
+
+        HttpClient client = HttpClient.newBuilder().sslContext(ssl).build();
+        client.newWebSocketBuilder().buildAsync(URI.create(url), listener).join();
+        done.join();
+    }
+
+
+
+    //"83" is used as the timestamp (epoch ms) like capture_v129.py, anything before 2000 means "now"
+    private static long convertTimestamp(String value) {
+        try {
+            long ms = (long) Double.parseDouble(value);
+            if (ms >= 946684800000L) return ms / 1000;
+        } catch (Exception e) {
+            // fall through to now
+        }
+        return Tools.getClock().currentTimeMillis() / 1000;
+    }
+
+
+
+    //numbers can arrive as "1,234" or "1.2M"
+    private static double number(String value, double dflt) {
+        if (value == null) return dflt;
+        try {
+            return Double.parseDouble(value.replace(",", "").replace("M", "000000"));
+        } catch (NumberFormatException e) {
+            return dflt;
+        }
+    }
+
+
+
+    //the feed sends flat JSON objects, e.g. {"conid":107976119,"31":"18.28","84":"18.27",...}
+    static Map<String, String> parseFlatJson(String json) {
+        Map<String, String> map = new HashMap<>();
+        int i = json.indexOf('{');
+        int n = json.length();
+        while (i >= 0 && i < n) {
+            int k1 = json.indexOf('"', i + 1);
+            if (k1 < 0) break;
+            int k2 = json.indexOf('"', k1 + 1);
+            if (k2 < 0) break;
+            int colon = json.indexOf(':', k2);
+            if (colon < 0) break;
+            String key = json.substring(k1 + 1, k2);
+
+            int v = colon + 1;
+            while (v < n && json.charAt(v) == ' ') v++;
+            int end;
+            String value;
+            if (v < n && json.charAt(v) == '"') {
+                end = json.indexOf('"', v + 1);
+                if (end < 0) break;
+                value = json.substring(v + 1, end);
+                end++;
+            } else if (v < n && (json.charAt(v) == '{' || json.charAt(v) == '[')) {
+                end = skipNested(json, v);     //nested values are not used, skip them
+                value = null;
+            } else {
+                end = v;
+                while (end < n && json.charAt(end) != ',' && json.charAt(end) != '}') end++;
+                value = json.substring(v, end).trim();
+            }
+            if (value != null) map.put(key, value);
+            i = json.indexOf(',', end);
+        }
+        return map;
+    }
+
+
+
+    private static int skipNested(String json, int start) {
+        int depth = 0;
+        for (int i = start; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '{' || c == '[') depth++;
+            else if (c == '}' || c == ']') {
+                if (--depth == 0) return i + 1;
+            }
+        }
+        return json.length();
+    }
+
+
+
+    public long getTicksCommitted() {
+        return ticksCommitted;
+    }
+
+    public long getCommits() {
+        return commits;
+    }
+
+
+
+    public static void main(String[] args) throws Exception {
+        TickStore store = new TickStore(Tools.getConfig("tickDirectory"));
+        CaptureService capture = new CaptureService(store);
+        capture.start();
+
+        long startTimer = System.nanoTime();
+        if (args.length >= 1 && args[0].equals("--local")) {
+            int numTicks = (args.length >= 2) ? Integer.parseInt(args[1]) : 100_000;
+            System.out.println("[INFO] Capturing " + numTicks + " ticks from the local stand-in feed to " + store.file(LocalDate.now()));
+            new LocalFeed(42).run(capture, numTicks);
+        } else {
+            capture.waitForStart();
+            System.out.println("[INFO] Writing quotes to " + store.file(LocalDate.now()));
+            capture.runWebSocket(Tools.getConfig("captureURL"));
+        }
+        capture.stop();
+
+        double secs = (System.nanoTime() - startTimer) / 1e9;
+        System.out.printf("%d ticks in %d commits, %.3f s (%.0f ticks/s)%n",
+            capture.getTicksCommitted(), capture.getCommits(), secs, capture.getTicksCommitted() / secs);
+    }
+}
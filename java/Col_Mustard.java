@@ -22,11 +22,13 @@ public class Col_Mustard {
     private Quote q;                   // Current quote data.
     private AllHoldings h;             // Portfolio of current holdings.
     private String symbol;             // Stock symbol (e.g., "AAPL").
+    private int symbolId;              // symbol's id in Symbols
     private String reasonCode;         // Code explaining why a closing decision was made.
     private int numShares;             // Number of shares to close.
     private Prof_Plum plum;            // Historical stats provider.
     private String marketOpenTime;
     private String marketCloseTime;
+    private OrderRouter orders;        // where the orders go (risk check, execution simulator)
     
 
     /**
@@ -40,9 +42,11 @@ public class Col_Mustard {
      */
     public Col_Mustard(String symbol, String date, String time, AllHoldings h, Prof_Plum plum, String marketOpenTime, String marketCloseTime) {
         this.symbol = symbol;
+        this.symbolId = Symbols.id(symbol);
         this.theDate = date;
         this.theTime = time;
         this.h = h;
+        this.orders = new OrderRouter(h, null, null);
         this.plum = plum;
         this.marketOpenTime = marketOpenTime;
         this.marketCloseTime = marketCloseTime;
@@ -79,6 +83,10 @@ public class Col_Mustard {
         return reasonCode;
     }
 
+    public void setOrderRouter(OrderRouter orders) {
+        this.orders = orders;
+    }
+
     public void setNumShares(int n) {
         this.numShares = n;
     }
@@ -106,9 +114,9 @@ public class Col_Mustard {
         double percent = 0.0;
         String msg = "";
         
-        if (h.getAvgCost(symbol) > 0.000001) {
-            profit = (q.getPrice() - h.getAvgCost(symbol)) * numShares;
-            percent = (q.getPrice() - h.getAvgCost(symbol)) / h.getAvgCost(symbol) * 100.0;
+        if (h.getAvgCost(symbolId) > 0.000001) {
+            profit = (q.getPrice() - h.getAvgCost(symbolId)) * numShares;
+            percent = (q.getPrice() - h.getAvgCost(symbolId)) / h.getAvgCost(symbolId) * 100.0;
         }
         else {
             profit = 0.00;
@@ -118,8 +126,10 @@ public class Col_Mustard {
         
 
         // "message\tdayNum\tprice\tprofit\tpercent\tspread\thigh\tlow\t");
-        msg = String.format("Mustard sees\t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", dayNum, q.getPrice(), h.getAvgCost(symbol), profit, percent, spreadPercent, q.getHigh(), q.getLow());
-        Tools.log("mustard.txt", q.getDT(), msg);
+        if (Tools.isLogging()) {
+            msg = String.format("Mustard sees\t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", dayNum, q.getPrice(), h.getAvgCost(symbolId), profit, percent, spreadPercent, q.getHigh(), q.getLow());
+            Tools.log("mustard.txt", q.getDT(), msg);
+        }
         
                 
         
@@ -130,34 +140,25 @@ public class Col_Mustard {
             (Tools.ConvertTimeToLong(theTime) >= Tools.ConvertTimeToLong(fifteen_minutes_earlier)) &&
             (Tools.ConvertTimeToLong(theTime) < Tools.ConvertTimeToLong(marketCloseTime))) {
                 reasonCode = "M0";
-                h.closeHolding(symbol, getNumShares(), q.getPrice(), LocalDate.parse(theDate));
+                if (!orders.close("Mustard", symbol, symbolId, getNumShares(), q, LocalDate.parse(theDate), reasonCode)) return false;
  
-                msg = String.format("Mustard buys, (%s) \t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", reasonCode,dayNum, q.getPrice(), h.getAvgCost(symbol), profit, percent, spreadPercent, q.getHigh(), q.getLow());
+                msg = String.format("Mustard buys, (%s) \t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", reasonCode,dayNum, q.getPrice(), h.getAvgCost(symbolId), profit, percent, spreadPercent, q.getHigh(), q.getLow());
                 Tools.log("mustard.txt", q.getDT(), msg);
             return true;
         }
 
         
 
-        double low2 = plum.getValue(symbol,"low"  ,dayNum-2);  //ROCKY
-        double low1 = plum.getValue(symbol,"low"  ,dayNum-1);
-        double low0 = plum.getValue(symbol,"low"  ,dayNum);
         // ------------------------
         // Case G3: 
         if (spreadPercent > 1.15) {
             if (dayNum == 2 || dayNum == 3 || dayNum == 4) {
-                double x1 = plum.getValue(symbol,"high" ,dayNum-2);
-                double y1 = plum.getValue(symbol,"low"  ,dayNum-2);
-                double x2 = plum.getValue(symbol,"high" ,dayNum-1);
-                double y2 = plum.getValue(symbol,"low"  ,dayNum-1);
-                double x3 = plum.getValue(symbol,"high" ,dayNum);
-                double y3 = plum.getValue(symbol,"low"  ,dayNum);
-                
-                boolean ok = Tools.HLx3(x1,x2,x3,y1,y2,y3);
+                //three lower highs and lower lows, days dayNum-2 to today
+                boolean ok = plum.hasPattern(symbolId, dayNum, CandlePatterns.Pattern.DESCENDING_3);
 
                 if (ok) {
                                 reasonCode = "M3";
-                                h.closeHolding(symbol, numShares, q.getPrice(), LocalDate.parse(theDate));
+                                if (!orders.close("Mustard", symbol, symbolId, numShares, q, LocalDate.parse(theDate), reasonCode)) return false;
                                 msg = String.format("%d - Mustard covers short @ %.2f, spreadPercent: %.2f", dayNum, q.getPrice(), spreadPercent);
                                 Tools.log("mustard.txt", q.getDT(), msg);
                                 
@@ -173,6 +174,7 @@ public class Col_Mustard {
     
     
      
+
     //empties the mustard.txt file, but does not delete the file.  mustard.txt just stores activity by mustard
     public void clearFile() {
         try (PrintWriter writer = new PrintWriter(new FileWriter("..\\logs\\mustard.txt"))) {
@@ -197,8 +199,8 @@ public class Col_Mustard {
     public String toString() {
         String str = String.format("Col_Mustard [%s %s]\t%.2f\t", theDate, theTime, q.getPrice());
 
-        if (h.hasHolding(symbol)) {
-            double profit = (q.getPrice() - h.getAvgCost(symbol)) * numShares - (0.2205 * numShares);
+        if (h.hasHolding(symbolId)) {
+            double profit = (q.getPrice() - h.getAvgCost(symbolId)) * numShares - (0.2205 * numShares);
             str += String.format("profit: %.2f", profit);
         }
 
@@ -0,0 +1,185 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * DailyBars is a coarse backtest for when there are no intraday quotes:  it turns every daily bar
+ * of data.csv (Date,Open,High,Low,Close,Adj Close,Volume, 12+ years of PDI) into four quotes and runs
+ * them through the Backtest, so the same strategy classes and AllHoldings trade them.
+ *
+ * Each day is walked open, high and low in the order set by barPathOrder, then close:
+ *
+ *   - OHLC:  the high comes first
+ *   - OLHC:  the low comes first
+ *   - AUTO:  whichever of the two is nearer the open comes first
+ *
+ * The open is quoted at 09:30:00, the close 5 minutes before the market close (inside the
+ * strategies' end of day windows), the high and low evenly in between.  A quote's high and low are
+ * the day's so far, never the whole bar, and bid/ask are barSpreadCents apart around the price.
+ *
+ * The dayNums come from ex_dates.txt over the bars' own dates, the way CalendarGenerator builds them.
+ * A decade runs in milliseconds, so ideas can be screened before a tick-level run.
+ *
+ *     java DailyBars [startingDate endingDate]
+ *
+ * @version v1
+ */
+public class DailyBars
+{
+    public static final String OPEN_TIME = "09:30:00";
+    private static final int CLOSE_MINUTES_EARLY = 5;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    /**
+     * One row of data.csv.
+     */
+    public static final class Bar {
+        final LocalDate date;
+        final double open, high, low, close;
+        final long volume;
+
+        Bar(LocalDate date, double open, double high, double low, double close, long volume) {
+            this.date = date;
+            this.open = open;
+            this.high = high;
+            this.low = low;
+            this.close = close;
+            this.volume = volume;
+        }
+
+        public String toString() {
+            return String.format("%s\t%.2f\t%.2f\t%.2f\t%.2f\t%d", date, open, high, low, close, volume);
+        }
+    }
+
+
+
+    private final String symbol;
+    private final List<Bar> bars;
+
+
+
+    public DailyBars(String symbol, List<Bar> bars) {
+        this.symbol = symbol;
+        this.bars = bars;
+    }
+
+
+
+    /**
+     * Reads a Yahoo style csv, skipping the header and any row with missing values ("null").
+     */
+    public static List<Bar> read(String filePath) throws FileNotFoundException {
+        ArrayList<Bar> bars = new ArrayList<>();
+        try (Scanner scanner = new Scanner(new File(filePath))) {
+            while (scanner.hasNextLine()) {
+                String[] f = scanner.nextLine().trim().split(",");
+                if (f.length < 7) continue;
+                try {
+                    bars.add(new Bar(LocalDate.parse(f[0]), Double.parseDouble(f[1]), Double.parseDouble(f[2]),
+                                     Double.parseDouble(f[3]), Double.parseDouble(f[4]), (long) Double.parseDouble(f[6])));
+                } catch (RuntimeException e) {
+                    //the header, or a day with no data
+                }
+            }
+        }
+        bars.sort((a, b) -> a.date.compareTo(b.date));
+        return bars;
+    }
+
+
+
+    /**
+     * The bars in [startingDate, endingDate] as a QuoteTape, with the dayNums of exDates (sorted).
+     */
+    public QuoteTape toTape(List<LocalDate> exDates, String order, double spreadCents, String startingDate, String endingDate) {
+        ArrayList<LocalDate> tradingDays = new ArrayList<>();
+        for (Bar b : bars) tradingDays.add(b.date);
+        LocalDate from = LocalDate.parse(startingDate), to = LocalDate.parse(endingDate);
+        ArrayList<MarketDates.MarketDate> calendar = new CalendarGenerator().generate(tradingDays, new ArrayList<>(exDates), from, to);
+
+        ArrayList<QuoteTape.Day> days = new ArrayList<>();
+        int i = 0;
+        for (MarketDates.MarketDate md : calendar) {
+            while (!bars.get(i).date.toString().equals(md.getDate())) i++;   //both in date order, every calendar day is a bar
+            ArrayList<Quote> quotes = new ArrayList<>(4);
+            ArrayList<String> times = new ArrayList<>(4);
+            if (md.getDayNum() >= -7 && md.getDayNum() <= 4) {
+                path(bars.get(i), order, spreadCents / 100.0, md.getMarketCloseTime(), quotes, times);
+            }
+            days.add(new QuoteTape.Day(md.getDate(), md.getDayNum(), md.getMarketOpenTime(), md.getMarketCloseTime(), quotes, times));
+        }
+        return new QuoteTape(symbol, days);
+    }
+
+
+
+    //open, the two extremes, close
+    private void path(Bar b, String order, double spread, String closeTime, List<Quote> quotes, List<String> times) {
+        boolean highFirst;
+        if (order.equalsIgnoreCase("OHLC")) highFirst = true;
+        else if (order.equalsIgnoreCase("OLHC")) highFirst = false;
+        else highFirst = b.high - b.open < b.open - b.low;
+
+        LocalTime open = LocalTime.parse(OPEN_TIME);
+        LocalTime close = LocalTime.parse(closeTime).minusMinutes(CLOSE_MINUTES_EARLY);
+        long span = ChronoUnit.SECONDS.between(open, close);
+        double[] prices = highFirst ? new double[] {b.open, b.high, b.low, b.close} : new double[] {b.open, b.low, b.high, b.close};
+        LocalTime[] at = {open, open.plusSeconds(span / 3), open.plusSeconds(2 * span / 3), close};
+
+        double high = 0.0, low = Double.MAX_VALUE;
+        for (int k = 0; k < 4; k++) {
+            double price = prices[k];
+            high = Math.max(high, price);
+            low = Math.min(low, price);
+            String time = at[k].format(TIME_FORMAT);
+            quotes.add(new Quote(b.date + " " + time, symbol, "STK", price, "BAR", b.volume * (k + 1) / 4,
+                                 price - spread / 2, price + spread / 2, 100, 100, high, low, b.open));
+            times.add(time);
+        }
+    }
+
+
+
+    public static void main(String[] args) throws Exception {
+        String symbol = Tools.getConfig("symbol");
+        List<Bar> bars;
+        try {
+            bars = read(Tools.getConfig("barFilename"));
+        } catch (FileNotFoundException e) {
+            bars = new ArrayList<>();
+        }
+        if (bars.isEmpty()) {
+            System.out.println("DailyBars Error 76: no bars in " + Tools.getConfig("barFilename"));
+            return;
+        }
+        String startingDate = args.length >= 2 ? args[0] : bars.get(0).date.toString();
+        String endingDate   = args.length >= 2 ? args[1] : bars.get(bars.size() - 1).date.toString();
+        List<LocalDate> exDates = CalendarGenerator.readExDates("../data/ex_dates.txt").getOrDefault(symbol, new ArrayList<>());
+        double spreadCents = Double.parseDouble(Tools.getConfig("barSpreadCents"));
+        String order = Tools.getConfig("barPathOrder");
+
+        DailyBars db = new DailyBars(symbol, bars);
+        Backtest backtest = new Backtest(symbol, 1000, Tools.getConfig("enable_VectorBacktest").trim().equalsIgnoreCase("YES"));
+        System.out.printf("DailyBars: %s, %d bars, %s to %s, %d ex-dates%n", symbol, bars.size(), startingDate, endingDate, exDates.size());
+
+        //the chosen order first, then the other two to show how much the path inside the bar matters
+        ArrayList<String> orders = new ArrayList<>(List.of(order.toUpperCase()));
+        for (String o : new String[] {"OHLC", "OLHC", "AUTO"}) if (!orders.contains(o)) orders.add(o);
+        for (String o : orders) {
+            long timer = System.nanoTime();
+            QuoteTape tape = db.toTape(exDates, o, spreadCents, startingDate, endingDate);
+            long built = System.nanoTime();
+            Backtest.Result r = backtest.run(tape.getDays(), null);
+            long done = System.nanoTime();
+            System.out.printf("%s\t%s\t%d quotes, tape %.1f ms, backtest %.1f ms%n", o, r, r.getNumQuotes(),
+                (built - timer) / 1e6, (done - built) / 1e6);
+        }
+    }
+}
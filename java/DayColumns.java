@@ -0,0 +1,110 @@
+/**
+ * DayColumns is one QuoteTape day laid out as primitive columns, for the vectorized Backtest.
+ *
+ * The columns that do not depend on the position are worked out for the whole day at once, when
+ * the day is first traded, and kept with the day (see QuoteTape.Day.getColumns):  the price, the
+ * quote's time as seconds, the end of day windows, its spread percent (high - low over low, the strategies' own formula)
+ * and the running high and low of the price so far that day, which is what Prof_Plum holds for the
+ * day's dayNum.
+ *
+ * The kernels then scan the columns for the first quote, from a given one on, where a strategy's
+ * condition holds.  They are plain loops over arrays with no objects, no strings and no maps, so
+ * they run at memory speed, where the strategies parse the close time and look Plum up on every
+ * quote.  Every comparison uses the same doubles, in the same expressions, as the strategies, so
+ * a kernel finds exactly the quote the strategy would act on.
+ *
+ * @version v1
+ */
+public final class DayColumns
+{
+    final int n;
+    final double[] price;
+    final long[] time;              // Tools.ConvertTimeToLong of the quote's time
+    final double[] spreadPercent;   // (high - low) / low * 100.0 of the quote's high and low
+    final double[] runHigh;         // the highest price of quotes 0..i
+    final double[] runLow;          // the lowest price of quotes 0..i
+    final long close;               // the market close, and 15 and 10 minutes before it
+    final long last15;
+    final long last10;
+
+
+
+    DayColumns(QuoteTape.Day day) {
+        n = day.size();
+        price = new double[n];
+        time = new long[n];
+        spreadPercent = new double[n];
+        runHigh = new double[n];
+        runLow = new double[n];
+        close = Tools.ConvertTimeToLong(day.getMarketCloseTime());
+        last15 = Tools.ConvertTimeToLong(Tools.subtractMinutesFromTime(day.getMarketCloseTime(), 15));
+        last10 = Tools.ConvertTimeToLong(Tools.subtractMinutesFromTime(day.getMarketCloseTime(), 10));
+
+        double high = Double.NEGATIVE_INFINITY, low = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            Quote q = day.getQuote(i);
+            price[i] = q.getPrice();
+            time[i] = Tools.ConvertTimeToLong(day.getTime(i));
+            spreadPercent[i] = (q.getHigh() - q.getLow()) / q.getLow() * 100.0;
+            if (price[i] > high) high = price[i];
+            if (price[i] < low) low = price[i];
+            runHigh[i] = high;
+            runLow[i] = low;
+        }
+    }
+
+
+
+    public int size() {
+        return n;
+    }
+
+    //Plum's high for the day after quote i, when it held startHigh before the day began
+    public double plumHigh(int i, double startHigh) {
+        return Math.max(startHigh, runHigh[i]);
+    }
+
+    public double plumLow(int i, double startLow) {
+        return Math.min(startLow, runLow[i]);
+    }
+
+
+
+    /**
+     * The first quote from on with lo <= time < hi, n if none.  The end of day windows (G0, S0, P0, M0).
+     */
+    public int firstInWindow(int from, long lo, long hi) {
+        for (int i = from; i < n; i++) {
+            if (time[i] >= lo & time[i] < hi) return i;
+        }
+        return n;
+    }
+
+    /**
+     * The first quote from on where G3 (and M3) hold:  spread percent over minSpread and Tools.HLx3
+     * of days 1 and 2's highs and lows with today's, today's being Plum's running high and low.
+     */
+    public int firstHLx3(int from, double minSpread, double h1, double l1, double h2, double l2, double startHigh, double startLow) {
+        //days 1 and 2 do not change during the day
+        if (!(h1 > h2 && l1 > l2)) return n;
+        for (int i = from; i < n; i++) {
+            double h3 = Math.max(startHigh, runHigh[i]);
+            double l3 = Math.min(startLow, runLow[i]);
+            if (spreadPercent[i] > minSpread & h1 > h3 & h2 > h3 & l1 > l3 & l2 > l3) return i;
+        }
+        return n;
+    }
+
+    /**
+     * The first quote from on where the move from avgCost, in percent, is within [lower, upper].  SL.
+     * Like the strategies, the move is 0 when there is no average cost.
+     */
+    public int firstPercentIn(int from, double avgCost, double lower, double upper) {
+        if (!(avgCost > 0.000001)) return (0.0 >= lower && 0.0 <= upper) ? Math.min(from, n) : n;
+        for (int i = from; i < n; i++) {
+            double percent = (price[i] - avgCost) / avgCost * 100.0;
+            if (percent >= lower & percent <= upper) return i;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,59 @@
+import java.io.IOException;
+
+/**
+ * EventDiff compares two event logs (EventLog) and reports the first event where the runs part
+ * ways, together with the day and the last quote before it.
+ *
+ *   java EventDiff ..\logs\events.bin ..\logs\events_replay.bin
+ *
+ * @version v1
+ */
+public class EventDiff
+{
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("usage: java EventDiff <eventLog1> <eventLog2>");
+            return;
+        }
+        System.out.print(diff(args[0], args[1]));
+    }
+
+
+
+    /**
+     * @return a report of the first diverging event, or that the logs are the same
+     */
+    public static String diff(String file1, String file2) throws IOException {
+        long startTimer = System.nanoTime();
+        EventLog.Event e1 = new EventLog.Event();
+        EventLog.Event e2 = new EventLog.Event();
+        String day = "";
+        String lastQuote = "";
+        long n = 0;
+        StringBuilder sb = new StringBuilder();
+
+        try (EventLog.Reader r1 = new EventLog.Reader(file1);
+             EventLog.Reader r2 = new EventLog.Reader(file2)) {
+            while (true) {
+                boolean more1 = r1.next(e1);
+                boolean more2 = r2.next(e2);
+                if (!more1 && !more2) {
+                    sb.append(String.format("The runs are the same: %d events compared in %.3f s\n", n, (System.nanoTime() - startTimer) / 1e9));
+                    return sb.toString();
+                }
+                n++;
+                if (more1 && more2 && e1.sameAs(e2)) {
+                    if (e1.type == EventLog.DAY) day = e1.date + " (dayNum " + e1.dayNum + ")";
+                    else if (e1.type == EventLog.QUOTE) lastQuote = e1.toString();
+                    continue;
+                }
+
+                sb.append(String.format("The runs part ways at event %d, on %s\n", n, day));
+                sb.append("  last common quote: ").append(lastQuote).append('\n');
+                sb.append("  ").append(file1).append(":\t").append(more1 ? e1.toString() : "(end of log)").append('\n');
+                sb.append("  ").append(file2).append(":\t").append(more2 ? e2.toString() : "(end of log)").append('\n');
+                return sb.toString();
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Vector;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * EventLog is the record of one Monkey run: every quote the Monkey was given and every
+ * decision it made, in the order they happened.  Replaying the quotes (EventReplayer) re-drives
+ * the Monkey through exactly the same run, and two logs can be compared with EventDiff.
+ *
+ * The file is gzipped binary.  After the header ("MKEVENT1", startingDate, endingDate, version)
+ * every event starts with a one byte type:
+ *
+ *   D  DAY       date, dayNum
+ *   Q  QUOTE     requested time, MMEngine response (-1 for a null response, else field count and fields)
+ *   X  DECISION  myDT, actor, reasonCode, price, shares ordered, change in position, position, total profit
+ *
+ * @version v1
+ */
+public class EventLog
+{
+    public static final byte DAY = 'D';
+    public static final byte QUOTE = 'Q';
+    public static final byte DECISION = 'X';
+    private static final long MAGIC = 0x4D4B4556454E5431L;   // "MKEVENT1"
+    private static final int BUFFER_SIZE = 1 << 16;
+
+
+
+    /**
+     * One event.  Only the fields of its type are meaningful.  The object is mutable so a
+     * reader can re-use a single instance.
+     */
+    public static class Event {
+        public byte type;
+        public String date = "";            // DAY
+        public int dayNum;                  // DAY
+        public String time = "";            // QUOTE, the time that was asked for
+        public String[] response = null;    // QUOTE
+        public String dt = "";              // DECISION
+        public String actor = "";           // DECISION, e.g. Green
+        public String reason = "";          // DECISION, the strategy's reason code
+        public double price;                // DECISION
+        public int shares;                  // DECISION, shares ordered
+        public int delta;                   // DECISION, change in the position
+        public int position;                // DECISION, position afterwards
+        public double totalProfit;          // DECISION
+
+        public Vector<String> getResponse() {
+            if (response == null) return null;
+            Vector<String> v = new Vector<>(response.length);
+            for (String s : response) v.add(s);
+            return v;
+        }
+
+        //same event, prices and profits are compared to the cent
+        public boolean sameAs(Event e) {
+            if (type != e.type) return false;
+            switch (type) {
+                case DAY:
+                    return date.equals(e.date) && dayNum == e.dayNum;
+                case QUOTE:
+                    return time.equals(e.time) && Arrays.equals(response, e.response);
+                default:
+                    return dt.equals(e.dt) && actor.equals(e.actor) && reason.equals(e.reason)
+                        && Math.round(price * 100) == Math.round(e.price * 100)
+                        && shares == e.shares && delta == e.delta && position == e.position
+                        && Math.round(totalProfit * 100) == Math.round(e.totalProfit * 100);
+            }
+        }
+
+        public String toString() {
+            switch (type) {
+                case DAY:
+                    return String.format("DAY\t%s\t%d", date, dayNum);
+                case QUOTE:
+                    return "QUOTE\t" + time + "\t" + (response == null ? "null" : String.join("\t", response));
+                default:
+                    return String.format("DECISION\t%s\t%s\t%s\t%.2f\tshares: %d\tdelta: %d\tposition: %d\ttotal profit: %.2f",
+                        dt, actor, reason, price, shares, delta, position, totalProfit);
+            }
+        }
+    }
+
+
+
+    /**
+     * Writes a new event log, replacing any existing file.
+     */
+    public static class Writer implements AutoCloseable {
+        private final DataOutputStream out;
+        private long numEvents = 0;
+
+        public Writer(String filename, String startingDate, String endingDate, String version) throws IOException {
+            File f = new File(filename);
+            if (f.getParentFile() != null) f.getParentFile().mkdirs();
+            out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(f), BUFFER_SIZE), BUFFER_SIZE));
+            out.writeLong(MAGIC);
+            out.writeUTF(startingDate);
+            out.writeUTF(endingDate);
+            out.writeUTF(version);
+        }
+
+        public void day(String date, int dayNum) throws IOException {
+            out.writeByte(DAY);
+            out.writeUTF(date);
+            out.writeInt(dayNum);
+            numEvents++;
+        }
+
+        public void quote(String time, Vector<String> response) throws IOException {
+            out.writeByte(QUOTE);
+            out.writeUTF(time == null ? "" : time);
+            if (response == null) {
+                out.writeShort(-1);
+            } else {
+                out.writeShort(response.size());
+                for (String s : response) out.writeUTF(s == null ? "" : s);
+            }
+            numEvents++;
+        }
+
+        public void decision(String dt, String actor, String reason, double price,
+                             int shares, int delta, int position, double totalProfit) throws IOException {
+            out.writeByte(DECISION);
+            out.writeUTF(dt == null ? "" : dt);
+            out.writeUTF(actor == null ? "" : actor);
+            out.writeUTF(reason == null ? "" : reason);
+            out.writeDouble(price);
+            out.writeInt(shares);
+            out.writeInt(delta);
+            out.writeInt(position);
+            out.writeDouble(totalProfit);
+            numEvents++;
+        }
+
+        public long getNumEvents() {
+            return numEvents;
+        }
+
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+
+
+    /**
+     * Reads an event log from the start.  A log cut short (e.g. the Monkey was stopped) simply ends early.
+     */
+    public static class Reader implements AutoCloseable {
+        private final DataInputStream in;
+        private final String startingDate;
+        private final String endingDate;
+        private final String version;
+        private long numEvents = 0;
+
+        public Reader(String filename) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(filename), BUFFER_SIZE), BUFFER_SIZE));
+            if (in.readLong() != MAGIC) {
+                in.close();
+                throw new IOException(filename + " is not a Monkey event log");
+            }
+            startingDate = in.readUTF();
+            endingDate = in.readUTF();
+            version = in.readUTF();
+        }
+
+        //reads the next event into e, false at the end of the log
+        public boolean next(Event e) throws IOException {
+            try {
+                e.type = in.readByte();
+                switch (e.type) {
+                    case DAY:
+                        e.date = in.readUTF();
+                        e.dayNum = in.readInt();
+                        break;
+                    case QUOTE:
+                        e.time = in.readUTF();
+                        int n = in.readShort();
+                        if (n < 0) {
+                            e.response = null;
+                        } else {
+                            e.response = new String[n];
+                            for (int i = 0; i < n; i++) e.response[i] = in.readUTF();
+                        }
+                        break;
+                    case DECISION:
+                        e.dt = in.readUTF();
+                        e.actor = in.readUTF();
+                        e.reason = in.readUTF();
+                        e.price = in.readDouble();
+                        e.shares = in.readInt();
+                        e.delta = in.readInt();
+                        e.position = in.readInt();
+                        e.totalProfit = in.readDouble();
+                        break;
+                    default:
+                        throw new IOException("unknown event type " + e.type + " after event " + numEvents);
+                }
+            } catch (EOFException eof) {
+                return false;
+            }
+            numEvents++;
+            return true;
+        }
+
+        public String getStartingDate() {
+            return startingDate;
+        }
+
+        public String getEndingDate() {
+            return endingDate;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public long getNumEvents() {
+            return numEvents;
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import java.io.IOException;
+import java.util.Vector;
+
+/**
+ * EventReplayer is a QuoteSource that hands the Monkey the quotes of a recorded run (EventLog),
+ * in the order they were recorded.  Nothing goes to the MMEngine and, with the VirtualClock, no
+ * time is spent waiting, so a replay runs as fast as the strategies can decide.
+ *
+ * The quotes only depend on the dates being run, not on what the strategies did, so a changed
+ * strategy is given exactly the same quotes as the recorded one.  A request that does not
+ * match the recorded one (e.g. marketDates.txt has changed) is counted, and the recorded
+ * quote is still returned.
+ *
+ * @version v1
+ */
+public class EventReplayer implements QuoteSource
+{
+    private final String filename;
+    private final EventLog.Reader in;
+    private final EventLog.Event e = new EventLog.Event();
+    private boolean atEnd = false;
+    private long numQuotes = 0;
+    private long numMismatches = 0;
+
+    public EventReplayer(String filename) throws IOException {
+        this.filename = filename;
+        this.in = new EventLog.Reader(filename);
+    }
+
+
+
+    public Vector<String> getQuote(String symbol, String theDate, String theTime) {
+        if (atEnd) return null;
+        try {
+            while (in.next(e)) {
+                if (e.type != EventLog.QUOTE) continue;
+                numQuotes++;
+                if (!e.time.equals(theTime == null ? "" : theTime)) {
+                    if (numMismatches == 0) {
+                        System.out.println("EventReplayer Warning 80: quote " + numQuotes + " was recorded for " + e.time + " but " + theDate + " " + theTime + " was asked for");
+                    }
+                    numMismatches++;
+                }
+                return e.getResponse();
+            }
+        } catch (IOException ex) {
+            System.out.println("EventReplayer Error 81: unable to read " + filename + ", " + ex.getMessage());
+        }
+        atEnd = true;
+        return null;
+    }
+
+
+
+    public String getStartingDate() {
+        return in.getStartingDate();
+    }
+
+    public String getEndingDate() {
+        return in.getEndingDate();
+    }
+
+    public String getVersion() {
+        return in.getVersion();
+    }
+
+    //true once the log has no more quotes, every request after that is answered with null
+    public boolean isAtEnd() {
+        return atEnd;
+    }
+
+    public long getNumQuotes() {
+        return numQuotes;
+    }
+
+    public long getNumMismatches() {
+        return numMismatches;
+    }
+
+    public void close() {
+        try {
+            in.close();
+        } catch (IOException ex) {
+            System.out.println("EventReplayer Error 82: unable to close " + filename);
+        }
+    }
+
+    public String toString() {
+        return String.format("Replayed %d quotes from %s (recorded by Monkey %s), %d request(s) did not match the recording",
+            numQuotes, filename, getVersion(), numMismatches);
+    }
+}
@@ -0,0 +1,237 @@
+import java.time.LocalDate;
+
+/**
+ * ExecutionSimulator fills simulated orders against the quoted bid/ask instead of the last price.
+ *
+ * In simulator mode the strategies normally book 1000 shares at q.getPrice() on the spot.  When
+ * enable_ExecSimulator = YES the strategies hand their orders to this class instead, and:
+ *
+ *   - a buy fills at the ask, a sell fills at the bid, plus slippage (EXEC_SLIPPAGE_CENTS, EXEC_SLIPPAGE_BPS)
+ *   - an order only becomes live EXEC_LATENCY_MS after the quote that triggered it
+ *   - each quote can only fill up to the displayed size (bidSize/askSize x EXEC_SIZE_MULTIPLIER),
+ *     anything left over waits for later quotes (partial fills)
+ *   - EXEC_ORDER_TYPE = LIMIT turns the orders into limit orders at the trigger price, these only
+ *     fill while the bid/ask is at or better than the limit
+ *
+ * Every fill is booked into AllHoldings with openHolding()/closeHolding(), so the rest of the
+ * program (profits, results, transcripts) sees what we would really have received.
+ *
+ * Pending orders are kept in preallocated arrays, and onQuote() returns at once when nothing is
+ * pending, so replaying millions of quotes costs next to nothing.
+ *
+ * @version v1
+ */
+public class ExecutionSimulator
+{
+    public static final int MARKET = 0;
+    public static final int LIMIT  = 1;
+
+    private static final int MAX_ORDERS = 16;
+
+    private final AllHoldings h;
+    private final long latencyMs;
+    private final double slippageCents;
+    private final double slippageBps;
+    private final int sizeMultiplier;
+    private final int orderType;
+
+    // pending orders, stored as parallel arrays
+    private final String[] symbol     = new String[MAX_ORDERS];
+    private final int[]    symbolId   = new int[MAX_ORDERS];        // Symbols id of symbol[i]
+    private final int[] remaining     = new int[MAX_ORDERS];      // signed: + buy, - sell
+    private final boolean[] opening   = new boolean[MAX_ORDERS];  // true = openHolding(), false = closeHolding()
+    private final int[] type          = new int[MAX_ORDERS];
+    private final double[] limitPrice = new double[MAX_ORDERS];
+    private final long[] liveAtMs     = new long[MAX_ORDERS];     // quote time (ms since midnight) when the order is live
+    private final LocalDate[] date    = new LocalDate[MAX_ORDERS];
+    private final String[] reason     = new String[MAX_ORDERS];   // strategy reason code, passed on to AllHoldings
+    private int numOrders = 0;
+
+    private long sharesFilled = 0;
+    private int fills = 0;
+    private double slippagePaid = 0.0;    // total cost versus filling at the last price
+    private double lastFillPrice = 0.0;
+
+
+    public ExecutionSimulator(AllHoldings h) {
+        this.h = h;
+        this.latencyMs = Long.parseLong(Tools.getConfig("EXEC_LATENCY_MS"));
+        this.slippageCents = Double.parseDouble(Tools.getConfig("EXEC_SLIPPAGE_CENTS"));
+        this.slippageBps = Double.parseDouble(Tools.getConfig("EXEC_SLIPPAGE_BPS"));
+        this.sizeMultiplier = Integer.parseInt(Tools.getConfig("EXEC_SIZE_MULTIPLIER"));
+        this.orderType = Tools.getConfig("EXEC_ORDER_TYPE").equalsIgnoreCase("LIMIT") ? LIMIT : MARKET;
+    }
+
+
+
+    //called by a strategy instead of h.openHolding()
+    public void submitOpen(String sym, int shares, Quote q, LocalDate theDate, String reasonCode) {
+        submit(sym, shares, true, q, theDate, reasonCode);
+    }
+
+
+
+    //called by a strategy instead of h.closeHolding()
+    //NB: closeHolding() takes the sign of the position being closed, the order itself goes the other way
+    public void submitClose(String sym, int positionShares, Quote q, LocalDate theDate, String reasonCode) {
+        submit(sym, positionShares, false, q, theDate, reasonCode);
+    }
+
+
+
+    private void submit(String sym, int shares, boolean isOpening, Quote q, LocalDate theDate, String reasonCode) {
+        if (shares == 0) return;
+        if (numOrders == MAX_ORDERS) {
+            System.out.println("ExecutionSimulator Error 30: too many pending orders, order for " + sym + " ignored.");
+            return;
+        }
+
+        int i = numOrders++;
+        symbol[i] = sym;
+        symbolId[i] = Symbols.id(sym);
+        remaining[i] = shares;
+        opening[i] = isOpening;
+        type[i] = orderType;
+        limitPrice[i] = q.getPrice();
+        liveAtMs[i] = quoteMillis(q) + latencyMs;
+        date[i] = theDate;
+        reason[i] = reasonCode;
+
+        if (latencyMs == 0) onQuote(q);   //no latency, the triggering quote can fill it
+    }
+
+
+
+    /**
+     * Offers the quote to every pending order for its symbol.
+     */
+    public void onQuote(Quote q) {
+        if (numOrders == 0) return;
+
+        long nowMs = quoteMillis(q);
+        for (int i = 0; i < numOrders; i++) {
+            if (symbolId[i] != q.getSymbolId() || nowMs < liveAtMs[i]) continue;
+            fill(i, q);
+        }
+
+        //compact away the finished orders
+        int j = 0;
+        for (int i = 0; i < numOrders; i++) {
+            if (remaining[i] != 0) {
+                copy(i, j++);
+            }
+        }
+        for (int i = j; i < numOrders; i++) {
+            symbol[i] = null;
+            date[i] = null;
+            reason[i] = null;
+        }
+        numOrders = j;
+    }
+
+
+
+    private void fill(int i, Quote q) {
+        //which way does the order trade?  opening 1000 buys, closing 1000 sells, opening -1000 sells, closing -1000 buys
+        boolean buying = opening[i] ? remaining[i] > 0 : remaining[i] < 0;
+
+        double touch = buying ? q.getAsk() : q.getBid();
+        int displayed = (buying ? q.getAskSize() : q.getBidSize()) * sizeMultiplier;
+        if (touch <= 0.0 || displayed <= 0) return;
+
+        double slip = slippageCents / 100.0 + touch * slippageBps / 10000.0;
+        double price = buying ? touch + slip : touch - slip;
+
+        if (type[i] == LIMIT) {
+            if (buying && touch > limitPrice[i]) return;
+            if (!buying && touch < limitPrice[i]) return;
+            price = buying ? Math.min(price, limitPrice[i]) : Math.max(price, limitPrice[i]);
+        }
+
+        int qty = Math.min(Math.abs(remaining[i]), displayed);
+        int signedQty = Integer.signum(remaining[i]) * qty;
+
+        if (opening[i]) h.openHolding(symbol[i], signedQty, price, date[i], reason[i]);
+        else            h.closeHolding(symbol[i], signedQty, price, date[i], reason[i]);
+
+        remaining[i] -= signedQty;
+        sharesFilled += qty;
+        fills++;
+        lastFillPrice = price;
+        slippagePaid += Math.abs(price - q.getPrice()) * qty;
+
+        String msg = String.format("Exec\t%s\t%s\t%d\t%.4f\tlast %.2f bid %.2f ask %.2f\tleft %d",
+            opening[i] ? "OPEN" : "CLOSE", symbol[i], signedQty, price, q.getPrice(), q.getBid(), q.getAsk(), remaining[i]);
+        Tools.log("execution.txt", q.getDT(), msg);
+    }
+
+
+
+    private void copy(int from, int to) {
+        if (from == to) return;
+        symbol[to] = symbol[from];
+        symbolId[to] = symbolId[from];
+        remaining[to] = remaining[from];
+        opening[to] = opening[from];
+        type[to] = type[from];
+        limitPrice[to] = limitPrice[from];
+        liveAtMs[to] = liveAtMs[from];
+        date[to] = date[from];
+        reason[to] = reason[from];
+    }
+
+
+
+    //time of day of the quote in ms, taken straight from the characters of myDT (2023-08-28 09:30:24)
+    private static long quoteMillis(Quote q) {
+        String dt = q.getDT();
+        if (dt == null || dt.length() < 19) return 0;
+        int hh = (dt.charAt(11) - '0') * 10 + (dt.charAt(12) - '0');
+        int mm = (dt.charAt(14) - '0') * 10 + (dt.charAt(15) - '0');
+        int ss = (dt.charAt(17) - '0') * 10 + (dt.charAt(18) - '0');
+        return (hh * 3600L + mm * 60L + ss) * 1000L;
+    }
+
+
+
+    public boolean hasPending(String sym) {
+        return hasPending(Symbols.id(sym));
+    }
+
+    public boolean hasPending(int symId) {
+        for (int i = 0; i < numOrders; i++) {
+            if (symbolId[i] == symId) return true;
+        }
+        return false;
+    }
+
+
+
+    //price of the most recent fill, Monkey puts it in the transcript
+    public double getLastFillPrice() {
+        return lastFillPrice;
+    }
+
+
+
+    //at the end of the day, whatever has not filled is cancelled, returns how many orders were cancelled
+    public int cancelAll(String dateTime) {
+        int cancelled = numOrders;
+        for (int i = 0; i < numOrders; i++) {
+            String msg = String.format("Exec\tCANCEL\t%s\t%d\tunfilled at end of day", symbol[i], remaining[i]);
+            Tools.log("execution.txt", dateTime, msg);
+            symbol[i] = null;
+            date[i] = null;
+            reason[i] = null;
+        }
+        numOrders = 0;
+        return cancelled;
+    }
+
+
+
+    public String toString() {
+        return String.format("ExecutionSimulator: %d fills, %d shares, slippage vs last price %.2f, latency %d ms",
+            fills, sharesFilled, slippagePaid, latencyMs);
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * HoldingsMonitor is a background thread that writes the Monkey's positions and profit to
+ * logs\monitor.txt every monitorIntervalMs (config.txt), e.g. for a dashboard to tail.
+ *
+ * It only reads AllHoldings.getSnapshot(), so it never blocks or slows the trading thread, and
+ * it only writes when the holdings have changed.
+ *
+ * @version v1
+ */
+public class HoldingsMonitor implements Runnable
+{
+    private final AllHoldings h;
+    private final long intervalMs;
+    private volatile boolean running = true;
+    private Thread thread = null;
+
+    public HoldingsMonitor(AllHoldings h, long intervalMs) {
+        this.h = h;
+        this.intervalMs = intervalMs;
+    }
+
+
+
+    public void start() {
+        thread = new Thread(this, "HoldingsMonitor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) thread.interrupt();
+    }
+
+
+
+    public void run() {
+        long lastVersion = -1;
+        while (running) {
+            HoldingsSnapshot s = h.getSnapshot();
+            if (s.getVersion() != lastVersion) {
+                lastVersion = s.getVersion();
+                Tools.log("monitor.txt", Tools.getClock().now().toString(), s.toString());
+            }
+            try {
+                Thread.sleep(intervalMs);    //real time on purpose, the monitor watches the live session
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * HoldingsSnapshot is an immutable picture of AllHoldings, taken after every open or close.
+ *
+ * AllHoldings is only ever changed by the trading thread.  Each change publishes a new snapshot
+ * through a volatile reference (copy-on-write), so any other thread, e.g. a dashboard, a risk
+ * check or the HoldingsMonitor, can read positions and profits at any rate without locks and
+ * without ever seeing a half-finished trade.  Fills are rare compared to quotes, so the copy
+ * costs the trading thread next to nothing.
+ *
+ * @version v1
+ */
+public final class HoldingsSnapshot
+{
+    /**
+     * The open position in one symbol, summed over its open lots.
+     */
+    public static final class Position {
+        private final String symbol;
+        private final int numShares;
+        private final double avgCost;
+
+        Position(String symbol, int numShares, double avgCost) {
+            this.symbol = symbol;
+            this.numShares = numShares;
+            this.avgCost = avgCost;
+        }
+
+        public String getSymbol() { return symbol; }
+        public int getNumShares() { return numShares; }
+        public double getAvgCost() { return avgCost; }
+
+        //profit if the position were closed at price (short positions gain as the price falls)
+        public double unrealizedProfit(double price) {
+            return (price - avgCost) * numShares;
+        }
+
+        public String toString() {
+            return String.format("%s\t%d\t%.2f", symbol, numShares, avgCost);
+        }
+    }
+
+
+
+    /**
+     * One open lot as it was when the snapshot was taken.
+     */
+    public static final class Lot {
+        private final String symbol;
+        private final int numShares;
+        private final double avgCost;
+        private final LocalDate dateOpened;
+        private final LocalDate dateClosed;
+        private final double profit;
+        private final boolean open;
+
+        Lot(SingleHolding h) {
+            symbol = h.getSymbol();
+            numShares = h.getNumShares();
+            avgCost = h.getAvgCost();
+            dateOpened = h.getDateOpened();
+            dateClosed = h.getDateClosed();
+            profit = h.getProfit();
+            open = h.isOpen();
+        }
+
+        public String getSymbol() { return symbol; }
+        public int getNumShares() { return numShares; }
+        public double getAvgCost() { return avgCost; }
+        public LocalDate getDateOpened() { return dateOpened; }
+        public LocalDate getDateClosed() { return dateClosed; }
+        public double getProfit() { return profit; }
+        public boolean isOpen() { return open; }
+    }
+
+
+
+    static final HoldingsSnapshot EMPTY = new HoldingsSnapshot(0, 0, new TradeLedger(), 0.0);
+
+    private final long version;
+    private final long bookNanos;
+    private final Map<String, Position> positions;
+    private final Position[] byId;                  // indexed by Symbols id
+    private final List<Lot> lots;                   // open lots only, the closed history stays in the TradeLedger
+    private final double realizedProfit;
+    private final double recentProfit;
+
+
+
+    HoldingsSnapshot(long version, long bookNanos, TradeLedger ledger, double recentProfit) {
+        this.version = version;
+        this.bookNanos = bookNanos;
+        this.recentProfit = recentProfit;
+
+        //shares and avgCost are summed in the same order as AllHoldings always has, per symbol id
+        int numIds = Symbols.size();
+        int[] netShares = new int[numIds];
+        int[] absShares = new int[numIds];
+        double[] cost = new double[numIds];
+        boolean[] isOpen = new boolean[numIds];
+        //only the rows from the ledger's first open lot on are read, so a publish costs the open lots, not the history
+        ArrayList<Lot> all = new ArrayList<>();
+        for (int i = ledger.getFirstOpen(); i < ledger.getNumLots(); i++) {
+            if (!ledger.isOpen(i)) continue;
+            all.add(new Lot(ledger.getHolding(i)));
+            int id = ledger.getSymbolId(i);
+            int shares = ledger.getNumShares(i);
+            isOpen[id] = true;
+            netShares[id] += shares;
+            absShares[id] += Math.abs(shares);
+            cost[id] += Math.abs(shares) * ledger.getAvgCost(i);
+        }
+
+        TreeMap<String, Position> map = new TreeMap<>();
+        this.byId = new Position[numIds];
+        for (int id = 0; id < numIds; id++) {
+            if (!isOpen[id]) continue;
+            double avgCost = (absShares[id] == 0) ? 0.0 : cost[id] / absShares[id];
+            byId[id] = new Position(Symbols.name(id), netShares[id], avgCost);
+            map.put(Symbols.name(id), byId[id]);
+        }
+        this.positions = Collections.unmodifiableMap(map);
+        this.lots = Collections.unmodifiableList(all);
+        this.realizedProfit = ledger.getRealizedProfit();
+    }
+
+
+
+    //incremented by every open and close
+    public long getVersion() {
+        return version;
+    }
+
+    //clock time (epoch ns) of the open/close that produced this snapshot
+    public long getBookNanos() {
+        return bookNanos;
+    }
+
+    //null when there is no open position in symbol
+    public Position getPosition(String symbol) {
+        return getPosition(Symbols.id(symbol));
+    }
+
+    public Position getPosition(int symbolId) {
+        return (symbolId >= 0 && symbolId < byId.length) ? byId[symbolId] : null;
+    }
+
+    public Map<String, Position> getPositions() {
+        return positions;
+    }
+
+    public int getNumShares(int symbolId) {
+        Position p = getPosition(symbolId);
+        return p == null ? 0 : p.getNumShares();
+    }
+
+    public double getAvgCost(int symbolId) {
+        Position p = getPosition(symbolId);
+        return p == null ? 0.0 : p.getAvgCost();
+    }
+
+    public List<Lot> getOpenLots() {
+        return lots;
+    }
+
+    //profit of every closed lot, all symbols
+    public double getRealizedProfit() {
+        return realizedProfit;
+    }
+
+    //profit of the most recent close
+    public double getRecentProfit() {
+        return recentProfit;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("v%d\topen lots: %d\trealized: %.2f", version, lots.size(), realizedProfit));
+        for (Position p : positions.values()) sb.append('\t').append(p);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,189 @@
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * LatencyTracer keeps nanosecond timestamps for every quote the Monkey processes.
+ *
+ * Four stamps are taken for each quote:
+ *   RECEIVE - the MMEngine response has arrived
+ *   PARSE   - the response has been turned into a Quote
+ *   DECIDE  - the strategies (Green, Scarlet, Peacock, Mustard) start evaluating the quote
+ *   BOOK    - AllHoldings.openHolding()/closeHolding() ran  (0 if no trade happened)
+ *
+ * All stamps are epoch nanoseconds from Tools.getClock(), so they can be lined up against the
+ * exchange timestamp found in Quote.getDT() (which only has second resolution).  In simulator
+ * mode the clock is virtual, so only the simulated delays show up.
+ *
+ * The buffers are allocated once (see latencyBufferSize in config.txt) and are re-used every
+ * trading day, so tracing does not create garbage inside the quote loop.
+ *
+ * @version v1
+ */
+public class LatencyTracer
+{
+    private static final DateTimeFormatter DT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final int capacity;
+    private final long[] exchangeNs;
+    private final long[] receiveNs;
+    private final long[] parseNs;
+    private final long[] decideNs;
+    private final long[] bookNs;
+    private final long[] scratch;        // used to sort one column when building the daily report
+
+    private int count = 0;               // number of committed quotes today
+    private int dropped = 0;             // quotes that did not fit into the buffer today
+
+
+    public LatencyTracer(int capacity) {
+        this.capacity = capacity;
+        this.exchangeNs = new long[capacity + 1];   // the extra slot is the "current" quote once the buffer is full
+        this.receiveNs  = new long[capacity + 1];
+        this.parseNs    = new long[capacity + 1];
+        this.decideNs   = new long[capacity + 1];
+        this.bookNs     = new long[capacity + 1];
+        this.scratch    = new long[capacity];
+    }
+
+
+
+    //current time in epoch nanoseconds
+    public long now() {
+        return Tools.getClock().nanoTime();
+    }
+
+
+
+    //call at the start of every trading day
+    public void startDay() {
+        count = 0;
+        dropped = 0;
+    }
+
+
+
+    private int slot() {
+        return Math.min(count, capacity);
+    }
+
+
+
+    public void markReceive() {
+        int i = slot();
+        receiveNs[i] = now();
+        parseNs[i] = 0;
+        decideNs[i] = 0;
+        bookNs[i] = 0;
+        exchangeNs[i] = 0;
+    }
+
+
+
+    //myDT looks like 2023-08-28 09:30:24 (occasionally 2023-08-28.09:30:24)
+    public void markParse(Quote q) {
+        int i = slot();
+        parseNs[i] = now();
+        exchangeNs[i] = toEpochNanos(q.getDT());
+        //a quote can not arrive before it happened (in simulator mode the clock jumps forward to the quote)
+        if (receiveNs[i] < exchangeNs[i]) receiveNs[i] = exchangeNs[i];
+    }
+
+
+
+    public void markDecide() {
+        decideNs[slot()] = now();
+    }
+
+
+
+    //bookNanos is AllHoldings.getLastBookNanos(), only kept if the booking happened on this quote
+    public void markBook(long bookNanos) {
+        int i = slot();
+        if (bookNanos != 0 && bookNanos >= receiveNs[i]) bookNs[i] = bookNanos;
+    }
+
+
+
+    //the current quote is finished, keep it
+    public void commit() {
+        if (count < capacity) count++;
+        else dropped++;
+    }
+
+
+
+    /**
+     * Returns the latency columns for the quote just stamped (call before commit()).
+     * Columns: exchangeNs  receiveNs  parseNs  decideNs  bookNs  tickToDecideMs
+     */
+    public String columns() {
+        int i = slot();
+        double tickToDecideMs = (exchangeNs[i] == 0) ? 0.0 : (decideNs[i] - exchangeNs[i]) / 1_000_000.0;
+        return exchangeNs[i] + "\t" + receiveNs[i] + "\t" + parseNs[i] + "\t" + decideNs[i] + "\t" + bookNs[i]
+             + "\t" + String.format("%.3f", tickToDecideMs);
+    }
+
+
+
+    public static String header() {
+        return "exchangeNs\treceiveNs\tparseNs\tdecideNs\tbookNs\ttickToDecideMs";
+    }
+
+
+
+    /**
+     * Summary of today's latency distribution, one line per stage (times in microseconds).
+     */
+    public String dailyReport(String theDate) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Latency report for %s, %d quotes (%d not traced)%n", theDate, count, dropped));
+        sb.append(String.format("%-16s %8s %10s %10s %10s %10s %10s%n", "stage", "n", "min", "p50", "p90", "p99", "max"));
+        sb.append(stageLine("receive->parse", receiveNs, parseNs));
+        sb.append(stageLine("parse->decide", parseNs, decideNs));
+        sb.append(stageLine("decide->book", decideNs, bookNs));
+        sb.append(stageLine("tick->decide", exchangeNs, decideNs));
+        sb.append(stageLine("tick->book", exchangeNs, bookNs));
+        return sb.toString();
+    }
+
+
+
+    private String stageLine(String name, long[] from, long[] to) {
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (from[i] != 0 && to[i] != 0) scratch[n++] = to[i] - from[i];
+        }
+        if (n == 0) return String.format("%-16s %8d%n", name, 0);
+
+        Arrays.sort(scratch, 0, n);
+        return String.format("%-16s %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n", name, n,
+            scratch[0] / 1000.0, pct(n, 0.50) / 1000.0, pct(n, 0.90) / 1000.0, pct(n, 0.99) / 1000.0, scratch[n - 1] / 1000.0);
+    }
+
+
+
+    private long pct(int n, double p) {
+        int idx = (int) Math.ceil(p * n) - 1;
+        return scratch[Math.max(0, Math.min(n - 1, idx))];
+    }
+
+
+
+    private static long toEpochNanos(String myDT) {
+        if (myDT == null || myDT.length() < 19) return 0;
+        try {
+            LocalDateTime dt = LocalDateTime.parse(myDT.replace('.', ' ').substring(0, 19), DT_FORMAT);
+            return dt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() * 1_000_000L;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+
+
+    public int getCount() {
+        return count;
+    }
+}
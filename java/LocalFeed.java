@@ -0,0 +1,63 @@
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Random;
+
+/**
+ * LocalFeed is a stand-in for the IBKR WebSocket feed, used to test the CaptureService
+ * without a gateway.
+ *
+ * It produces market data messages in the same JSON form as the gateway, for every symbol in
+ * CaptureService.CONID_SYMBOL_MAP, with prices taking a random walk.  Like the real feed, some
+ * messages leave out the bid, ask or sizes so the "last known value" rules get exercised.
+ * The same seed always produces the same messages.
+ *
+ * @version v1
+ */
+public class LocalFeed
+{
+    private final Random rnd;
+
+    public LocalFeed(long seed) {
+        this.rnd = new Random(seed);
+    }
+
+
+
+    /**
+     * Sends numTicks messages to capture, spread evenly over today's session from 09:30:00.
+     */
+    public void run(CaptureService capture, int numTicks) {
+        String[] conids = CaptureService.CONID_SYMBOL_MAP.keySet().toArray(new String[0]);
+        double[] price = new double[conids.length];
+        for (int i = 0; i < conids.length; i++) price[i] = 20.0 + 10.0 * rnd.nextDouble();
+
+        long openMs = LocalDate.now().atTime(LocalTime.of(9, 30)).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long sessionMs = 6L * 3600 * 1000 + 29L * 60 * 1000;    // stay inside captureEndTime
+        long stepMs = Math.max(1, sessionMs / Math.max(1, numTicks));
+
+        StringBuilder sb = new StringBuilder(256);
+        for (int n = 0; n < numTicks; n++) {
+            int i = rnd.nextInt(conids.length);
+            price[i] = Math.max(0.01, price[i] + (rnd.nextInt(3) - 1) * 0.01);
+
+            sb.setLength(0);
+            sb.append("{\"conid\":").append(conids[i]);
+            sb.append(",\"83\":\"").append(openMs + n * stepMs).append('"');
+            sb.append(",\"31\":\"").append(String.format("%.2f", price[i])).append('"');
+            if (rnd.nextInt(4) != 0) {
+                sb.append(",\"84\":\"").append(String.format("%.2f", price[i] - 0.01)).append('"');
+                sb.append(",\"85\":\"").append(1 + rnd.nextInt(50)).append('"');
+            }
+            if (rnd.nextInt(4) != 0) {
+                sb.append(",\"86\":\"").append(String.format("%.2f", price[i] + 0.01)).append('"');
+                sb.append(",\"88\":\"").append(1 + rnd.nextInt(50)).append('"');
+            }
+            sb.append(",\"89\":\"").append(1000 + n).append('"');
+            sb.append(",\"293\":\"").append(n).append('"');
+            sb.append('}');
+
+            if (!capture.onMessage(sb.toString())) break;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+import java.util.Vector;
+
+/**
+ * Quotes from MMEngine's REST API, e.g.
+ *
+ *   simulator:  http://localhost/MMEngine/api/v2/quote?symbol=PDI&theDate=2022-08-22&theTime=09:30:00
+ *   real:       http://localhost/MMEngine/api/v2/quote?symbol=PDI&theDate=today
+ *
+ * @version v1
+ */
+public class MMEngineQuoteSource implements QuoteSource
+{
+    private static final int READ_TIMEOUT_MS = 5000;   //a stuck request returns null instead of hanging its thread
+
+    private final String baseURI;
+
+    public MMEngineQuoteSource(String baseURI) {
+        this.baseURI = baseURI;
+    }
+
+    public Vector<String> getQuote(String symbol, String theDate, String theTime) {
+        String uri = baseURI + "?symbol=" + symbol + "&theDate=" + theDate + "&theTime=" + theTime;
+        return Tools.VectorURIPost(uri, READ_TIMEOUT_MS);  //this is where the URI POST goes to the REST API at MMEngine occurs...
+    }
+}
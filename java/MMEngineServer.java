@@ -0,0 +1,274 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MMEngineServer is a stand-in for the PHP MMEngine, so the whole Monkey loop, HTTP included, can
+ * run and be benchmarked on any machine with the tick files and nothing else.
+ *
+ * It answers the same REST call,
+ *
+ *     GET /MMEngine/api/v2/quote?symbol=PDI&theDate=2022-08-22&theTime=09:30:00
+ *
+ * with the first tick after theTime from the TickStore (tickDirectory, see TickStoreQuoteSource), as the same JSON,
+ *
+ *     {"status":"ok","quote":{"dt":"2022-08-22 09:30:04","symbol":"PDI", ... ,"open":"18.07"}}
+ *
+ * or {"quote":{"dt":"null"}} when the day has no more ticks.  theDate=today with no theTime gives
+ * the latest tick of today.
+ *
+ * To test the Monkey against a less friendly server it can also:
+ *
+ *   - wait localMMEngineLatencyMs, plus up to localMMEngineJitterMs, before answering
+ *   - fail a request with HTTP 500, localMMEngineErrorRate of the time
+ *   - answer with the symbol's previous quote again, localMMEngineDuplicateRate of the time
+ *
+ * The faults are drawn from localMMEngineSeed, so a Monkey run (one request at a time) sees the
+ * same faults every time.
+ *
+ *     java MMEngineServer                  serves until stopped
+ *     java MMEngineServer bench [date]     walks a day's quote chain over HTTP, reports throughput and latency
+ *
+ * The Monkey starts one itself when enable_LocalMMEngine = YES.
+ *
+ * @version v1
+ */
+public class MMEngineServer
+{
+    public static final String PATH = "/MMEngine/api/v2/quote";
+    private static final byte[] NO_QUOTE = "{\"status\":\"ok\",\"quote\":{\"dt\":\"null\"}}".getBytes(StandardCharsets.UTF_8);
+
+    private final TickStoreQuoteSource ticks;
+    private final int port;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double errorRate;
+    private final double duplicateRate;
+    private final Random faults;
+    private HttpServer server = null;
+
+    private final Map<String, byte[]> lastAnswer = new ConcurrentHashMap<>();   // by symbol, for duplicates
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong quotes = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+
+
+
+    /**
+     * Reads the localMMEngine* settings from config.txt.
+     */
+    public MMEngineServer(TickStore store) {
+        this(store, Integer.parseInt(Tools.getConfig("localMMEnginePort")),
+             Long.parseLong(Tools.getConfig("localMMEngineLatencyMs")), Long.parseLong(Tools.getConfig("localMMEngineJitterMs")),
+             Double.parseDouble(Tools.getConfig("localMMEngineErrorRate")), Double.parseDouble(Tools.getConfig("localMMEngineDuplicateRate")),
+             Long.parseLong(Tools.getConfig("localMMEngineSeed")));
+    }
+
+    public MMEngineServer(TickStore store, int port, long latencyMs, long jitterMs, double errorRate, double duplicateRate, long seed) {
+        this.ticks = new TickStoreQuoteSource(store);
+        this.port = port;
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.errorRate = errorRate;
+        this.duplicateRate = duplicateRate;
+        this.faults = new Random(seed);
+    }
+
+
+
+    public void start(int numThreads) throws IOException {
+        //the headers and the body go out in separate writes, without this each answer waits ~40 ms for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext(PATH, this::handle);
+        server.setExecutor(Executors.newFixedThreadPool(numThreads, r -> {
+            Thread t = new Thread(r, "MMEngineServer");
+            t.setDaemon(true);
+            return t;
+        }));
+        server.start();
+    }
+
+    public void stop() {
+        if (server != null) server.stop(0);
+        server = null;
+    }
+
+    //the base URI for MMEngineQuoteSource
+    public String getURI() {
+        return "http://localhost:" + port + PATH;
+    }
+
+
+
+    private void handle(HttpExchange ex) throws IOException {
+        requests.incrementAndGet();
+        try {
+            Map<String, String> params = query(ex.getRequestURI().getRawQuery());
+            String symbol = params.getOrDefault("symbol", "");
+
+            //the faults, all drawn in the same order for every request
+            double errorDraw, duplicateDraw;
+            long wait;
+            synchronized (faults) {
+                errorDraw = faults.nextDouble();
+                duplicateDraw = faults.nextDouble();
+                wait = latencyMs + (jitterMs > 0 ? (long) (faults.nextDouble() * jitterMs) : 0);
+            }
+            if (wait > 0) Thread.sleep(wait);
+            if (errorDraw < errorRate) {
+                errors.incrementAndGet();
+                reply(ex, 500, "{\"status\":\"error\"}".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            byte[] previous = lastAnswer.get(symbol);
+            if (previous != null && duplicateDraw < duplicateRate) {
+                duplicates.incrementAndGet();
+                reply(ex, 200, previous);
+                return;
+            }
+
+            byte[] answer = answer(symbol, params.getOrDefault("theDate", ""), params.get("theTime"));
+            if (answer != NO_QUOTE) lastAnswer.put(symbol, answer);
+            reply(ex, 200, answer);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reply(ex, 500, "{\"status\":\"error\"}".getBytes(StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            reply(ex, 400, ("{\"status\":\"error\",\"message\":\"" + escape(String.valueOf(e.getMessage())) + "\"}").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void reply(HttpExchange ex, int status, byte[] body) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> query(String raw) {
+        HashMap<String, String> params = new HashMap<>();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                           URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    //s as the inside of a JSON string, an error message can echo the request back
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.toString();
+    }
+
+
+
+    //the first tick of symbol after theDate theTime (the latest one when theTime is null), as JSON
+    byte[] answer(String symbol, String theDate, String theTime) {
+        TickStore.Tick t = ticks.tickAfter(symbol, theDate, theTime);
+        if (t == null) return NO_QUOTE;
+        quotes.incrementAndGet();
+        return json(t).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String json(TickStore.Tick t) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"status\":\"ok\",\"quote\":{");
+        sb.append("\"dt\":\"").append(t.getDT()).append("\",");
+        sb.append("\"symbol\":\"").append(t.symbol).append("\",");
+        sb.append("\"type\":\"STK\",");
+        sb.append("\"price\":\"").append(t.price).append("\",");
+        sb.append("\"source\":\"").append(t.epochSec).append("\",");
+        sb.append("\"volume\":\"").append(t.volume).append("\",");
+        sb.append("\"bid\":\"").append(t.bid).append("\",");
+        sb.append("\"ask\":\"").append(t.ask).append("\",");
+        sb.append("\"bidSize\":\"").append(t.bidSize).append("\",");
+        sb.append("\"askSize\":\"").append(t.askSize).append("\",");
+        sb.append("\"high\":\"").append(t.high).append("\",");
+        sb.append("\"low\":\"").append(t.low).append("\",");
+        sb.append("\"close\":\"").append(t.close).append("\",");
+        sb.append("\"open\":\"").append(t.open).append("\"}}");
+        return sb.toString();
+    }
+
+
+
+    public String toString() {
+        return String.format("MMEngineServer: %d requests, %d quotes, %d errors and %d duplicates injected",
+            requests.get(), quotes.get(), errors.get(), duplicates.get());
+    }
+
+
+
+    /**
+     * Walks symbol's chain of requests for date over HTTP, the way the Monkey does, and reports the
+     * requests per second and the latency distribution seen by the client.
+     */
+    public static String bench(String baseURI, String symbol, String date, String stopTime) {
+        QuoteSource source = new MMEngineQuoteSource(baseURI);
+        long[] nanos = new long[1 << 16];
+        int n = 0;
+        long l_stopTime = Tools.ConvertTimeToLong(stopTime);
+        String theTime = "09:29:01";
+        long start = System.nanoTime();
+        while (true) {
+            long t0 = System.nanoTime();
+            Vector<String> resp = source.getQuote(symbol, date, theTime);
+            if (n == nanos.length) nanos = Arrays.copyOf(nanos, n * 2);
+            nanos[n++] = System.nanoTime() - t0;
+
+            String prevTime = theTime;
+            theTime = Tools.getValidQuoteTime(resp);
+            if (theTime == null) theTime = Tools.addMinutesToTime(prevTime, 5);
+            if (Tools.ConvertTimeToLong(theTime) < Tools.ConvertTimeToLong(prevTime)) break;   //past midnight
+            if (Tools.ConvertTimeToLong(theTime) >= l_stopTime) break;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Arrays.sort(nanos, 0, n);
+        return String.format("%d requests in %.2f s, %.0f requests/s, latency us: p50 %.0f  p90 %.0f  p99 %.0f  p99.9 %.0f  max %.0f",
+            n, seconds, n / seconds, nanos[n / 2] / 1e3, nanos[(int) (n * 0.9)] / 1e3, nanos[(int) (n * 0.99)] / 1e3,
+            nanos[(int) (n * 0.999)] / 1e3, nanos[n - 1] / 1e3);
+    }
+
+
+
+    public static void main(String[] args) throws Exception {
+        MMEngineServer server = new MMEngineServer(new TickStore(Tools.getConfig("tickDirectory")));
+        server.start(Integer.parseInt(Tools.getConfig("localMMEngineThreads")));
+        System.out.println("MMEngineServer: serving " + Tools.getConfig("tickDirectory") + " at " + server.getURI());
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("bench")) {
+            String date = args.length > 1 ? args[1] : Tools.getConfig("walkForwardStartDate");
+            String symbol = Tools.getConfig("symbol");
+            bench(server.getURI(), symbol, date, "16:00:01");   //warm up
+            System.out.println(bench(server.getURI(), symbol, date, "16:00:01"));
+            System.out.println(server);
+            server.stop();
+        }
+    }
+}
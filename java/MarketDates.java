@@ -97,6 +97,14 @@ public class MarketDates {
         }
     }
 
+    /**
+     * Loads symbol's market dates within a specified date range from a binary CalendarIndex
+     * (made by CalendarGenerator) instead of marketDates.txt.
+     */
+    public void loadFromIndex(CalendarIndex index, String symbol, String startDate, String endDate) {
+        marketDates.addAll(index.getMarketDates(symbol, startDate, endDate));
+    }
+
     public ArrayList<MarketDate> getMarketDates() {
         return marketDates;
     }
@@ -22,11 +22,13 @@ public class Miss_Scarlet {
     private Quote q;                   // Current quote data.
     private AllHoldings h;             // Portfolio of current holdings.
     private String symbol;             // Stock symbol (e.g., "AAPL").
+    private int symbolId;              // symbol's id in Symbols
     private String reasonCode;         // Code explaining why a sell decision was made.
     private int numShares;             // Number of shares to sell.
     private Prof_Plum plum;            // Historical stats provider (not used directly here).
         private String marketOpenTime;
     private String marketCloseTime;
+    private OrderRouter orders;        // where the orders go (risk check, execution simulator)
 
     // Thresholds loaded from configuration (Tools.getConfig reads them as strings).
     private double sl_lowerlimit = Double.parseDouble(Tools.getConfig("SCARLET_SL_LOWERLIMIT"));
@@ -46,9 +48,11 @@ public class Miss_Scarlet {
      */
     public Miss_Scarlet(String symbol, String date, String time, AllHoldings h, Prof_Plum plum, String marketOpenTime, String marketCloseTime) {
         this.symbol = symbol;
+        this.symbolId = Symbols.id(symbol);
         this.theDate = date;
         this.theTime = time;
         this.h = h;
+        this.orders = new OrderRouter(h, null, null);
         this.plum = plum;
         this.marketOpenTime = marketOpenTime;
         this.marketCloseTime = marketCloseTime;
@@ -92,6 +96,10 @@ public class Miss_Scarlet {
         return reasonCode;
     }
 
+    public void setOrderRouter(OrderRouter orders) {
+        this.orders = orders;
+    }
+
     /**
      * Decides whether to sell shares under four main cases:
      * 
@@ -110,9 +118,9 @@ public class Miss_Scarlet {
         double percent = 0.0;
         double spreadPercent = (q.getHigh() - q.getLow()) / q.getLow() * 100.0;
         String msg="";
-        if (h.getAvgCost(symbol) > 0.000001) {
-            profit = (q.getPrice() - h.getAvgCost(symbol)) * numShares;
-            percent = (q.getPrice() - h.getAvgCost(symbol)) / h.getAvgCost(symbol) * 100.0;
+        if (h.getAvgCost(symbolId) > 0.000001) {
+            profit = (q.getPrice() - h.getAvgCost(symbolId)) * numShares;
+            percent = (q.getPrice() - h.getAvgCost(symbolId)) / h.getAvgCost(symbolId) * 100.0;
         }
         else {
             profit = 0.00;
@@ -124,8 +132,10 @@ public class Miss_Scarlet {
 
         
 
-        msg = String.format("Scarlet sees\t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", dayNum, q.getPrice(), h.getAvgCost(symbol), profit, percent, spreadPercent, q.getHigh(), q.getLow());
-        Tools.log("scarlet.txt", q.getDT(), msg);
+        if (Tools.isLogging()) {
+            msg = String.format("Scarlet sees\t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", dayNum, q.getPrice(), h.getAvgCost(symbolId), profit, percent, spreadPercent, q.getHigh(), q.getLow());
+            Tools.log("scarlet.txt", q.getDT(), msg);
+        }
         
         
         
@@ -137,7 +147,7 @@ public class Miss_Scarlet {
             (Tools.ConvertTimeToLong(theTime) >= Tools.ConvertTimeToLong(fifteen_minutes_earlier)) &&
             (Tools.ConvertTimeToLong(theTime) < Tools.ConvertTimeToLong(marketCloseTime))) {
                 reasonCode = "S0";
-                h.closeHolding(symbol, getNumShares(), q.getPrice(), LocalDate.parse(theDate));
+                if (!orders.close("Scarlet", symbol, symbolId, getNumShares(), q, LocalDate.parse(theDate), reasonCode)) return false;
             
                 return true;
         }
@@ -149,9 +159,9 @@ public class Miss_Scarlet {
         if (dayNum == -1 || dayNum == -2 || dayNum == -3) {
             if (percent >= sl_lowerlimit && percent <= sl_upperlimit) {
                 reasonCode = "SL";
-                h.closeHolding(symbol, getNumShares(), q.getPrice(), LocalDate.parse(theDate));
+                if (!orders.close("Scarlet", symbol, symbolId, getNumShares(), q, LocalDate.parse(theDate), reasonCode)) return false;
                             
-                msg = String.format("Scarlet sells, (%s) \t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", reasonCode,dayNum, q.getPrice(), h.getAvgCost(symbol), profit, percent, spreadPercent, q.getHigh(), q.getLow());
+                msg = String.format("Scarlet sells, (%s) \t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", reasonCode,dayNum, q.getPrice(), h.getAvgCost(symbolId), profit, percent, spreadPercent, q.getHigh(), q.getLow());
                 Tools.log("scarlet.txt", q.getDT(), msg);
 
                 return true;
@@ -168,6 +178,7 @@ public class Miss_Scarlet {
     
 
     
+
    //empties the scarlet.txt file, but does not delete the file.  scarlet.txt just stores activity by scarlet
     public void clearFile() {
         try (PrintWriter writer = new PrintWriter(new FileWriter("..\\logs\\scarlet.txt"))) {
@@ -191,8 +202,8 @@ public class Miss_Scarlet {
     public String toString() {
         String str = String.format("Miss_Scarlet [%s %s]\t%.2f\t", theDate, theTime, q.getPrice());
 
-        if (h.hasHolding(symbol)) {
-            double profit = (q.getPrice() - h.getAvgCost(symbol)) * numShares;
+        if (h.hasHolding(symbolId)) {
+            double profit = (q.getPrice() - h.getAvgCost(symbolId)) * numShares;
             str += String.format("profit: %.2f", profit);
         }
 
@@ -49,10 +49,18 @@ public class Monkey {
     private static final boolean enable_Mustard  = Tools.getConfig("enable_Mustard").trim().equalsIgnoreCase("YES");
     private static final boolean enable_White    = Tools.getConfig("enable_White").trim().equalsIgnoreCase("YES");
     private static final boolean enable_Plum     = Tools.getConfig("enable_Plum").trim().equalsIgnoreCase("YES");
+    private static final boolean enable_ExecSimulator = Tools.getConfig("enable_ExecSimulator").trim().equalsIgnoreCase("YES");
+    private static final boolean enable_QuoteCache = Tools.getConfig("enable_QuoteCache").trim().equalsIgnoreCase("YES");
+    private static final boolean enable_Prefetch = Tools.getConfig("enable_Prefetch").trim().equalsIgnoreCase("YES");
+    private static final boolean enable_Risk     = Tools.getConfig("enable_Risk").trim().equalsIgnoreCase("YES");
+    private static final boolean enable_SyntheticQuotes = Tools.getConfig("enable_SyntheticQuotes").trim().equalsIgnoreCase("YES");
+    private static final boolean enable_LocalMMEngine = Tools.getConfig("enable_LocalMMEngine").trim().equalsIgnoreCase("YES");
+    private static final String  eventLogMode    = Tools.getConfig("eventLogMode").trim().toUpperCase();   //OFF, RECORD or REPLAY
 
     public static void main(String[] args) throws InterruptedException {
         int numShares = 1000;
         String symbol = "PDI";        
+        int symbolId = Symbols.id(symbol);   //the quote loop looks positions and stats up by id
         boolean alreadyDone = false;
         boolean is_simulator = true;    //properly set below
         long l_theTime;
@@ -89,17 +97,30 @@ public class Monkey {
         String theDT;
         String dataDirectory = "../data/";  // where config.txt and marketDates.txt are located
         String logDirectory = "../logs/";  // where config.txt and marketDates.txt are located
-        String transcriptDirectory = "../logs/transcripts/";  // where config.txt and marketDates.txt are located
-        String transcriptFileName;
+        String transcriptDirectory = Tools.getConfig("logsDirectory") + "\\transcripts";  // where the daily transcripts are written
         String unixTimeStamp = "";
         String prevUnixTimeStamp = "1";
         String msg = "";
-        String transcriptFile;
         String prevTime = "";
         Path filePath;
         
         
         
+        //a replay re-runs the recorded dates, with the recorded quotes (see EventLog)
+        EventReplayer replayer = null;
+        if (eventLogMode.equals("REPLAY")) {
+            try {
+                replayer = new EventReplayer(Tools.getConfig("eventLogFilename"));
+                startingDate = replayer.getStartingDate();
+                endingDate = replayer.getEndingDate();
+            } catch (IOException e) {
+                System.out.println("Monkey Error 97: unable to replay " + Tools.getConfig("eventLogFilename") + ", " + e.getMessage());
+                return;
+            }
+        }
+        
+        
+        
         //Open the transcript log file...and state which mode the monkey is in....
         LocalDate today = LocalDate.now();
         LocalDate sDate = LocalDate.parse(startingDate);
@@ -110,7 +131,7 @@ public class Monkey {
         
         
         //decide on which mode the monkey is in, either  simulator or realtime mode (realmode test is:  startDate and endingDate must be on today's date, and startDate must be in marketDates.txt
-        if (sDate.equals(today)) {
+        if (sDate.equals(today) && replayer == null) {
             is_simulator = false;
             msg = "Monkey\tmain()\t\t\t\t" + "Monkey "+ "SYSTEM" +  version + " starting up in real mode on " + startingDate;
         }
@@ -120,20 +141,86 @@ public class Monkey {
             msg = "Monkey\tmain()\t\t\t\t" + "Monkey "+ version + " starting up in simulator mode. Day(s) " + startingDate + " to " + endingDate;
         } 
         
+        //simulator mode runs on virtual time, driven by the quote timestamps, so it never really sleeps
+        if (is_simulator) Tools.setClock(new VirtualClock(sDate.atTime(9, 29, 1)));
+        else              Tools.setClock(new WallClock());
+        TradingClock clock = Tools.getClock();
+        
        
         
   
         String theDate = startingDate;
         String theTime = "09:29:00";
         String theQuote = "";
+        
+        
+        
+        // Load market date ranges
+        MarketDates md = new MarketDates();
+        if (Tools.getConfig("useCalendarIndex").equalsIgnoreCase("YES")) {
+            //generated from ex_dates.txt, see CalendarGenerator
+            try {
+                md.loadFromIndex(new CalendarIndex(Tools.getConfig("calendarIndexFilename")), symbol, startingDate, endingDate);
+            } catch (IOException e) {
+                System.out.println("Monkey Error 92: calendar index not available, " + e.getMessage());
+                return;
+            }
+        }
+        else md.loadFromFile(dataDirectory + "marketDates.txt", startingDate, endingDate);
+        RingBuffer.WaitStrategy ringWait;
+        try {
+            ringWait = RingBuffer.waitStrategy(Tools.getConfig("ringWaitStrategy"));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Monkey Error 89: ringWaitStrategy, " + e.getMessage());
+            return;
+        }
+        
+        
+        
+        //where the quotes come from, and where this run is recorded
+        String quoteAPI = Tools.getConfig("quoteAPI");
+        MMEngineServer localEngine = null;
+        if (is_simulator && replayer == null && enable_LocalMMEngine && !enable_SyntheticQuotes) {
+            //the MMEngine stand-in, serving the tick files, see MMEngineServer
+            localEngine = new MMEngineServer(new TickStore(Tools.getConfig("tickDirectory")));
+            try {
+                localEngine.start(Integer.parseInt(Tools.getConfig("localMMEngineThreads")));
+                quoteAPI = localEngine.getURI();
+            } catch (IOException e) {
+                System.out.println("Monkey Error 91: unable to start the local MMEngine, " + e.getMessage());
+                return;
+            }
+        }
+        QuoteSource source = replayer != null ? replayer : new MMEngineQuoteSource(quoteAPI);
+        if (is_simulator && replayer == null && enable_SyntheticQuotes) {
+            //made-up quotes (see SyntheticTicks), no MMEngine needed
+            source = new SyntheticTicks(Tools.getConfig("synthSymbols").split("\\s*,\\s*"), md.getMarketDates()).source();
+        }
+        QuoteCache cache = null;
+        if (is_simulator && replayer == null && enable_QuoteCache && !enable_SyntheticQuotes) {
+            cache = new QuoteCache(source);   //historical quotes never change, so re-runs can skip the MMEngine
+            source = cache;
+        }
+        QuotePrefetcher prefetch = null;
+        if (is_simulator && replayer == null && enable_Prefetch) {
+            prefetch = new QuotePrefetcher(source, Integer.parseInt(Tools.getConfig("prefetchDepth")),
+                                           ringWait);   //fetches ahead while the strategies decide
+            source = prefetch;
+        }
+        EventLog.Writer recorder = null;
+        String recordFilename = replayer != null ? Tools.getConfig("eventReplayFilename") : Tools.getConfig("eventLogFilename");
+        if (replayer != null || eventLogMode.equals("RECORD")) {
+            try {
+                recorder = new EventLog.Writer(recordFilename, startingDate, endingDate, version);
+            } catch (IOException e) {
+                System.out.println("Monkey Error 96: unable to record to " + recordFilename + ", " + e.getMessage());
+            }
+        }
 
  
 
         long startTimer = System.nanoTime(); // Start timer for total runtime
 
-        // Load market date ranges
-        MarketDates md = new MarketDates();
-        md.loadFromFile(dataDirectory + "marketDates.txt", startingDate, endingDate);
         ArrayList<MarketDates.MarketDate> marketDates = md.getMarketDates();
         String startTime = md.getMarketOpenTime(theDate);
         String endTime = md.getMarketCloseTime(theDate);
@@ -147,6 +234,36 @@ public class Monkey {
         
         // Initialize holdings and strategy objects
         AllHoldings h = new AllHoldings();
+        RiskEngine risk = enable_Risk ? new RiskEngine() : null;   //set before the journal is replayed, so recovered positions count
+        h.setRiskEngine(risk);
+        LatencyTracer tracer = new LatencyTracer(Integer.parseInt(Tools.getConfig("latencyBufferSize")));
+        AllocationTracker alloc = new AllocationTracker(Tools.getConfig("enable_AllocationTracking").trim().equalsIgnoreCase("YES"),
+                                                        Tools.getConfigLong("allocationBudgetBytesPerQuote", 0));
+        TranscriptWriter transcript = new TranscriptWriter(transcriptDirectory,
+            "ROUTINE\tTYPE\tSYMBOL\tDAYNUM\tPRICE\tMESSAGE\tmyDT\tmySymbol\tmyType\tmyPrice\tmyComment\tmyVolume\tmyBid\tmyAsk\tmyBidSize\tmyAskSize\tmyHigh\tmyLow\tmyClose\tmyOpen\t" + LatencyTracer.header());   //header row
+        
+        //every fill is journaled, in real mode a restart recovers the positions from the journal (simulator mode starts its own journal fresh)
+        TradeJournal journal = null;
+        try {
+            long journalTimer = System.nanoTime();
+            String journalFilename = is_simulator ? Tools.getConfig("simulatorJournalFilename") : Tools.getConfig("journalFilename");
+            journal = new TradeJournal(journalFilename, is_simulator);
+            int numRecords = journal.replayInto(h);
+            h.setJournal(journal);
+            if (!is_simulator) {
+                System.out.printf("Trade journal: %d records replayed in %.3f ms, %s shares: %d\n",
+                    numRecords, (System.nanoTime() - journalTimer) / 1_000_000.0, symbol, h.getNumShares(symbol));
+            }
+        } catch (IOException e) {
+            System.out.println("Monkey Error 98: trade journal not available, " + e.getMessage());
+        }
+        //other threads watch the holdings through snapshots, never the live lists
+        HoldingsMonitor monitor = null;
+        long monitorIntervalMs = Tools.getConfigLong("monitorIntervalMs", 0);
+        if (monitorIntervalMs > 0) {
+            monitor = new HoldingsMonitor(h, monitorIntervalMs);
+            monitor.start();
+        }
         Prof_Plum plum = new Prof_Plum();
         plum.clearFile();  // Clear daily stats
         plum.getFromFile();
@@ -160,6 +277,17 @@ public class Monkey {
         scarlet.clearFile();
         peacock.clearFile();
         mustard.clearFile();
+        
+        //in simulator mode, orders can be filled against the bid/ask (see ExecutionSimulator)
+        ExecutionSimulator exec = null;
+        if (is_simulator && enable_ExecSimulator) exec = new ExecutionSimulator(h);
+        
+        //the strategies all send their orders through one router, risk check first
+        OrderRouter orders = new OrderRouter(h, exec, risk);
+        green.setOrderRouter(orders);
+        scarlet.setOrderRouter(orders);
+        peacock.setOrderRouter(orders);
+        mustard.setOrderRouter(orders);
         Tools.log("green.txt"   , theDate + " " + theTime,      "message\tdayNum\tprice\tavgcost\tprofit\tpercent\tspread\thigh\tlow\t");
         Tools.log("mustard.txt" , theDate + " " + theTime,      "message\tdayNum\tprice\tavgcost\tprofit\tpercent\tspread\thigh\tlow\t");
         Tools.log("scarlet.txt" ,   theDate + " " + theTime,    "message\tdayNum\tprice\tspreadPercent\tgap\tprevDayHigh\thigh\tlow\t");
@@ -174,9 +302,7 @@ public class Monkey {
         { //for each date in the dayrange [startingDate, endingDate]
             
             
-            int dayNum = Tools.getDayNum(a_day.getDate());
-            transcriptFileName = "transcript_"+ a_day.getDate() + ".txt";
-            transcriptFile = "transcripts\\" + transcriptFileName;
+            int dayNum = a_day.getDayNum();
             
             
             
@@ -184,16 +310,14 @@ public class Monkey {
             theDate = a_day.getDate();
             theTime = "09:29:01";
             theDT = theDate + " " + theTime;
+            clock.advanceTo(theDT);
             
             
             
-            //Does the transcript file exist?
-            File logTranscriptFile = new File(transcriptFile);
-            if (!logTranscriptFile.exists()) {
-                //set up header row 0 for the transcript file
-                Tools.log(transcriptFile, theDT, "ROUTINE\tTYPE\tSYMBOL\tDAYNUM\tPRICE\tMESSAGE\tmyDT\tmySymbol\tmyType\tmyPrice\tmyComment\tmyVolume\tmyBid\tmyAsk\tmyBidSize\tmyAskSize\tmyHigh\tmyLow\tmyClose\tmyOpen");   //header row
-            }
-           Tools.log(transcriptFile, theDT, msg);
+            //roll the transcript over to the new day (the previous day gets compressed)
+            transcript.startDay(theDate);
+            transcript.write(theDT, msg);
+            recorder = record(recorder, r -> r.day(a_day.getDate(), dayNum));
             
           
            
@@ -204,7 +328,7 @@ public class Monkey {
                     plum.clearFile();  
                     alreadyDone= true;   
                     msg = String.format("Monkey\tmain()\t\t\t\tPlum's stats file is emptied at %s",theDT);
-                    Tools.log(transcriptFile, theDT, msg);
+                    transcript.write(theDT, msg);
                 }
                 continue;  
             }
@@ -231,6 +355,7 @@ public class Monkey {
             //stopTime is the time when the market closes
             String stopTime = md.getMarketCloseTime(theDate);
             long l_stopTime = Tools.ConvertTimeToLong(stopTime);
+            if (prefetch != null) prefetch.setStopTime(stopTime);
             
 
             int delay = Integer.parseInt(Tools.getConfig("loopDelay"));
@@ -238,6 +363,8 @@ public class Monkey {
             
             //output to the terminal window
             System.out.printf("%2d [%s %s]  %s shares: %d\n", dayNum, theDate, theTime, symbol, h.getNumShares(symbol));
+            tracer.startDay();
+            alloc.startDay();
             
             
             //for the current date, visit every quote available....
@@ -255,8 +382,12 @@ public class Monkey {
                 
                 
                 //http://localhost/MMEngine/api/v2/quote?symbol=PDI&theDate=2023-09-19&theTime=09:40:00
-                String uri = "http://localhost/MMEngine/api/v2/quote?symbol=" + symbol + "&theDate=" + theDate + "&theTime=" + theTime;   
-                Vector<String> resp = Tools.VectorURIPost(uri);  //this is where the URI POST goes to the REST API at MMEngine occurs...
+                alloc.startQuote();
+                Vector<String> resp = source.getQuote(symbol, theDate, theTime);
+                tracer.markReceive();
+                alloc.mark(AllocationTracker.Stage.RECEIVE);
+                final String requestedTime = theTime;
+                recorder = record(recorder, r -> r.quote(requestedTime, resp));
                 
                 
                 
@@ -266,25 +397,42 @@ public class Monkey {
                 theTime = Tools.getValidQuoteTime(resp);   //this parser method, scrapes the time, i.e. 09:31:00 from array element 0 of the resp array
                 
                 if (theTime == null) theTime = Tools.addMinutesToTime(prevTime, 5);
+                boolean goodQuote = theTime != null && resp != null && !(resp.size() == 1 && resp.get(0).trim().equalsIgnoreCase("null"));
+                
+                
+                //in the simulator a day with no more quotes ends once theTime reaches the close or runs past midnight
+                //(as in QuoteTape.readDay), and a replay ends with its log, a log cut short simply ends early
+                if (!goodQuote && is_simulator) {
+                    boolean replayOver = replayer != null && replayer.isAtEnd();
+                    if (replayOver || Tools.ConvertTimeToLong(theTime) >= l_stopTime
+                                   || Tools.ConvertTimeToLong(theTime) < Tools.ConvertTimeToLong(prevTime)) {
+                        endDay(transcript, theDate + " " + prevTime, stopTime, exec, tracer, alloc, theDate, dayNum);
+                        if (dayNum == 4) alreadyDone = false;
+                        if (replayOver) break nextDayLabel;
+                        continue nextDayLabel;
+                    }
+                }
                 
                     
                 //check if the quote received from the API is a good quote...
-                if (theTime != null && resp != null && !(resp.size() == 1 && resp.get(0).trim().equalsIgnoreCase("null"))) 
+                if (goodQuote) 
                 { //good quote
                     
                     
                     //concatenate all the strings in the resp vector into one single string, with no separator, called theQuote
                     theQuote = String.join("\t", resp);
                     Quote q = new Quote(theQuote);
+                    clock.advanceTo(q.getDT());
+                    tracer.markParse(q);
                     
                     
                     if (prevDT.equals(q.getDT())) {
                         //delay for 5 seconds...
                         try {
                             int delayInSeconds = 5000;
-                            Thread.sleep(delayInSeconds);   //delay is set in the config.txt file
+                            clock.sleep(delayInSeconds);   //delay is set in the config.txt file
                             msg = String.format("Monkey\tDelay\t\t\t\tMonkey having to wait for a new real-time quote. Wait time is %d ms.",delayInSeconds);
-                            Tools.log(transcriptFile, q.getDT(), msg);
+                            transcript.write(q.getDT(), msg);
                         } catch (InterruptedException e) {
                             System.out.println("Monkey Error 99: unable to delay.");
                         }
@@ -295,53 +443,57 @@ public class Monkey {
                         prevDT = q.getDT();
                     else
                         prevDT = "";
+                    alloc.mark(AllocationTracker.Stage.PARSE);
                     
                     
                     
                     //end of day loop (ie. getting quotes from the day) STOPPING condition
                     l_theTime = Tools.ConvertTimeToLong(theTime);
                     if (l_theTime >= l_stopTime) {
-                        msg = String.format("Monkey\tmain()\t\t\t\tend of day loop ends at %s",stopTime);
-                        Tools.log(transcriptFile, q.getDT(), msg);
-                        
-                         //Check if the current date set i.e. [-7,4] is over ...
-                        if (dayNum == 4) 
-                        {
-                            System.out.println("---------------------------------------------------------------------------------------------");
-                            alreadyDone = false;
-                        }
-                       continue nextDayLabel;
+                        endDay(transcript, q.getDT(), stopTime, exec, tracer, alloc, theDate, dayNum);
+                        if (dayNum == 4) alreadyDone = false;
+                        continue nextDayLabel;
                     }
                     
                     
                     
                     //update the on-going collected stats
-                    plum.updateStatistics(symbol, dayNum, q.getPrice());
-                    msg = String.format("Monkey\tPlum\t\t\t\tStats obtained from Plum %s",plum);
-                    Tools.log(transcriptFile, q.getDT(), msg);
+                    plum.updateStatistics(symbolId, dayNum, q.getPrice());
+                    if (verbose > 1) {
+                        msg = String.format("Monkey\tPlum\t\t\t\tStats obtained from Plum %s",plum);
+                        transcript.write(q.getDT(), msg);
+                    }
+                    alloc.mark(AllocationTracker.Stage.STATS);
                     
                     
                     // Delay to reduce server load and avoid HTTPS errors
                     try {
-                        Thread.sleep(delay);   //delay is set in the config.txt file
+                        clock.sleep(delay);   //delay is set in the config.txt file
                     } catch (InterruptedException e) {
                         delay=2;                //if loopdelay variable not in config file, default to 2 ms.
                     }
 
                     
                     
-                    //log to transcript
-                    msg = String.format("Monkey\tQUOTE\t%s\t%d\t%.2f\t%s\t%s",symbol,dayNum,q.getPrice(),uri,theQuote);
-                    Tools.log(transcriptFile, q.getDT(), msg);
                     
-                   
                     
                     
+                           
+                    tracer.markDecide();
+                    int sharesBefore = h.getNumShares(symbolId);
+                    String actor = null;
+                    String reasonCode = "";
+                    int sharesOrdered = 0;
+                    if (exec != null) exec.onQuote(q);   //working orders get the first look at the quote
                     
+                    //while an order is still working in the ExecutionSimulator nobody trades until it has filled
+                    boolean canTrade = exec == null || !exec.hasPending(symbolId);
+                    
+                    //with the ExecutionSimulator a strategy only places an order here, the fill is logged further down
+                    boolean ordering = exec != null;
                     
-                           
                     // ----------- Long Buy (Mr_Green) -----------
-                    if (enable_Green && dayNum >= 0 && dayNum <= 4 && h.getNumShares(symbol) == 0) 
+                    if (canTrade && enable_Green && dayNum >= 0 && dayNum <= 4 && h.getNumShares(symbolId) == 0) 
                     { //green
                         green.setTime(theTime);
                         green.setDate(theDate);
@@ -352,13 +504,16 @@ public class Monkey {
                         boolean green_buying = green.is_buying();
                         if (verbose > 2) System.out.println(dayNum + " " + green);
                         if (green_buying) { 
+                            actor = "Green";
+                            reasonCode = green.getReasonCode();
+                            sharesOrdered = numShares;
                             
-                            str = String.format("Green buys %d shares @ %.2f",numShares,q.getPrice());
-                            msg = String.format("Green\tOPEN\t%s\t%d\t%.2f\t%s%s\t%s",symbol,dayNum,q.getPrice(),str,"","");
-                            Tools.log(transcriptDirectory + transcriptFileName, q.getDT(), msg);
+                            str = String.format("Green %s %d shares @ %.2f",ordering ? "orders to buy" : "buys",numShares,q.getPrice());
+                            msg = String.format("Green\t%s\t%s\t%d\t%.2f\t%s%s\t%s",ordering ? "ORDER" : "OPEN",symbol,dayNum,q.getPrice(),str,"","");
+                            transcript.write(q.getDT(), msg);
                             if (verbose > 0) {
-                                msg = String.format("\t(%3d) [%s %s] Mr Green just bought %4d shares of %s @%.2f Long  (%s)\n",
-                                    dayNum, theDate, theTime, numShares, symbol, q.getPrice(), green.getReasonCode());
+                                msg = String.format("\t(%3d) [%s %s] Mr Green %s %4d shares of %s @%.2f Long  (%s)\n",
+                                    dayNum, theDate, theTime, ordering ? "ordered" : "just bought", numShares, symbol, q.getPrice(), green.getReasonCode());
                                 System.out.printf(msg);
                             }
                         }
@@ -366,7 +521,7 @@ public class Monkey {
                     } //green
 
                     // ----------- Long Sell (Miss_Scarlet) -----------
-                    else if (enable_Scarlet && dayNum >= -7 && dayNum <= -1 && h.getNumShares(symbol) > 0) 
+                    else if (canTrade && enable_Scarlet && dayNum >= -7 && dayNum <= -1 && h.getNumShares(symbolId) > 0) 
                     { //scarlet
                         scarlet.setTime(theTime);
                         scarlet.setDate(theDate);
@@ -377,22 +532,25 @@ public class Monkey {
                         boolean scarlet_selling = scarlet.is_selling();
                         if (verbose > 2) System.out.println(dayNum + " " + scarlet);
                         if (scarlet_selling) { 
+                            actor = "Scarlet";
+                            reasonCode = scarlet.getReasonCode();
+                            sharesOrdered = numShares;
                             
-                            str = String.format("Scarlet sells %d shares @ %.2f",numShares,q.getPrice());
-                            msg = String.format("Scarlet\tCLOSE\t%s\t%d\t%.2f\t%s%s\t%s",symbol,dayNum,q.getPrice(),str,"","");
-                            Tools.log(transcriptDirectory + transcriptFileName, q.getDT(), msg);
+                            str = String.format("Scarlet %s %d shares @ %.2f",ordering ? "orders to sell" : "sells",numShares,q.getPrice());
+                            msg = String.format("Scarlet\t%s\t%s\t%d\t%.2f\t%s%s\t%s",ordering ? "ORDER" : "CLOSE",symbol,dayNum,q.getPrice(),str,"","");
+                            transcript.write(q.getDT(), msg);
                             if (verbose > 0) {
-                                msg = String.format("\t(%3d) [%s %s] Miss Scarlet just sold %4d shares of %s @%.2f Long  (%s)\n",
-                                    dayNum, theDate, theTime, numShares, symbol, q.getPrice(), scarlet.getReasonCode());
+                                msg = String.format("\t(%3d) [%s %s] Miss Scarlet %s %4d shares of %s @%.2f Long  (%s)\n",
+                                    dayNum, theDate, theTime, ordering ? "ordered the sale of" : "just sold", numShares, symbol, q.getPrice(), scarlet.getReasonCode());
                                 System.out.printf(msg);
                                 System.out.printf("Profit: %.2f\tTotal Profit: %.2f\t%s Shares: %d\n",
-                                    h.getProfit(), h.totalProfit(symbol), symbol, h.getNumShares(symbol));
+                                    h.getProfit(), h.totalProfit(symbolId), symbol, h.getNumShares(symbolId));
                             }
                         }
                     } //scarlet
 
                     // ----------- Short Sell (Mrs_Peacock) -----------
-                    else if (enable_Peacock && dayNum >= -7 && dayNum <= -1 && h.getNumShares(symbol) == 0) 
+                    else if (canTrade && enable_Peacock && dayNum >= -7 && dayNum <= -1 && h.getNumShares(symbolId) == 0) 
                     { //peacock
                         peacock.setTime(theTime);
                         peacock.setDate(theDate);
@@ -403,20 +561,23 @@ public class Monkey {
                         boolean peacock_selling = peacock.is_selling();
                         if (verbose > 2) System.out.println(dayNum + " " + peacock);
                         if (peacock_selling) { 
+                            actor = "Peacock";
+                            reasonCode = peacock.getReasonCode();
+                            sharesOrdered = -1 * numShares;
                             
-                            str = String.format("Peacock sells %d shares @ %.2f",numShares,q.getPrice());
-                            msg = String.format("Peacock\tOPEN\t%s\t%d\t%.2f\t%s%s\t%s",symbol,dayNum,q.getPrice(),str,"","");
-                            Tools.log(transcriptDirectory + transcriptFileName, q.getDT(), msg);
+                            str = String.format("Peacock %s %d shares @ %.2f",ordering ? "orders to sell" : "sells",numShares,q.getPrice());
+                            msg = String.format("Peacock\t%s\t%s\t%d\t%.2f\t%s%s\t%s",ordering ? "ORDER" : "OPEN",symbol,dayNum,q.getPrice(),str,"","");
+                            transcript.write(q.getDT(), msg);
                             if (verbose > 0) {
-                                msg = String.format("\t(%3d) [%s %s] Mrs Peacock just sold short %4d shares of %s @%.2f Short  (%s)\n",
-                                    dayNum, theDate, theTime, numShares, symbol, q.getPrice(), peacock.getReasonCode());
+                                msg = String.format("\t(%3d) [%s %s] Mrs Peacock %s %4d shares of %s @%.2f Short  (%s)\n",
+                                    dayNum, theDate, theTime, ordering ? "ordered the short sale of" : "just sold short", numShares, symbol, q.getPrice(), peacock.getReasonCode());
                                 System.out.printf(msg);
                             }
                         }
                     } //peacock
 
                     // ----------- Short Cover (Col_Mustard) -----------
-                    else if (enable_Mustard && dayNum >= 0 && dayNum <= 4 && h.getNumShares(symbol) < 0) 
+                    else if (canTrade && enable_Mustard && dayNum >= 0 && dayNum <= 4 && h.getNumShares(symbolId) < 0) 
                     { //mustard
                         mustard.setTime(theTime);
                         mustard.setDate(theDate);
@@ -427,20 +588,49 @@ public class Monkey {
                         boolean mustard_buying = mustard.is_buying();
                         if (verbose > 2) System.out.println(dayNum + " " + mustard);
                         if (mustard_buying) { 
+                            actor = "Mustard";
+                            reasonCode = mustard.getReasonCode();
+                            sharesOrdered = -1 * numShares;
                             
-                            str = String.format("Mustard buys %d shares @ %.2f",numShares,q.getPrice());
-                            msg = String.format("Mustard\tOPEN\t%s\t%d\t%.2f\t%s%s\t%s",symbol,dayNum,q.getPrice(),str,"","");
-                            Tools.log(transcriptDirectory + transcriptFileName, q.getDT(), msg);
+                            str = String.format("Mustard %s %d shares @ %.2f",ordering ? "orders to buy" : "buys",numShares,q.getPrice());
+                            msg = String.format("Mustard\t%s\t%s\t%d\t%.2f\t%s%s\t%s",ordering ? "ORDER" : "OPEN",symbol,dayNum,q.getPrice(),str,"","");
+                            transcript.write(q.getDT(), msg);
                             if (verbose > 0) {
-                                msg = String.format("\t(%3d) [%s %s] Col Mustard just bought %4d shares of %s @%.2f Short (%s)\n",
-                                    dayNum, theDate, theTime, numShares, symbol, q.getPrice(), mustard.getReasonCode());
+                                msg = String.format("\t(%3d) [%s %s] Col Mustard %s %4d shares of %s @%.2f Short (%s)\n",
+                                    dayNum, theDate, theTime, ordering ? "ordered" : "just bought", numShares, symbol, q.getPrice(), mustard.getReasonCode());
                                 System.out.printf(msg);
                                 System.out.printf("Profit: %.2f\tTotal Profit: %.2f\t%s Shares: %d\n",
-                                    h.getProfit(), h.totalProfit(symbol), symbol, h.getNumShares(symbol));
+                                    h.getProfit(), h.totalProfit(symbolId), symbol, h.getNumShares(symbolId));
                             }
                         }
                  
                     } //mustard
+                    
+                    
+                    //log to transcript, the quote is followed by its latency columns (see LatencyTracer)
+                    alloc.mark(AllocationTracker.Stage.DECIDE);
+                    tracer.markBook(h.getLastBookNanos());
+                    int sharesAfter = h.getNumShares(symbolId);
+                    if (ordering && sharesAfter != sharesBefore) {
+                        //what the ExecutionSimulator really filled on this quote, this can be less than the order
+                        str = String.format("filled %d shares @ %.4f, position %d",sharesAfter - sharesBefore,exec.getLastFillPrice(),sharesAfter);
+                        msg = String.format("Exec\tFILL\t%s\t%d\t%.2f\t%s\t",symbol,dayNum,q.getPrice(),str);
+                        transcript.write(q.getDT(), msg);
+                        if (verbose > 0) System.out.printf("\t(%3d) [%s %s] %s %s\n", dayNum, theDate, theTime, symbol, str);
+                    }
+                    if (recorder != null && (actor != null || sharesAfter != sharesBefore)) {
+                        final String who = actor == null ? "Fill" : actor;
+                        final String why = reasonCode;
+                        final int ordered = sharesOrdered;
+                        recorder = record(recorder, r -> r.decision(q.getDT(), who, why, q.getPrice(), ordered,
+                            sharesAfter - sharesBefore, sharesAfter, h.totalProfit(symbolId)));
+                    }
+                    msg = String.format("Monkey\tQUOTE\t%s\t%d\t%.2f\t\t%s\t%s",symbol,dayNum,q.getPrice(),theQuote,tracer.columns());
+                    transcript.write(q.getDT(), msg);
+                    if (!is_simulator) transcript.flush();   //in real mode the transcript can be watched as it grows
+                    tracer.commit();
+                    alloc.mark(AllocationTracker.Stage.LOG);
+                    alloc.commit();
 
                 } //good quote
                     
@@ -461,11 +651,48 @@ public class Monkey {
         // continuous loop ends here
         //******************************
              
+        transcript.close();
+        if (prefetch != null) prefetch.close();
+        if (localEngine != null) localEngine.stop();
+        if (monitor != null) monitor.stop();
+        if (recorder != null) {
+            try {
+                recorder.close();
+                System.out.printf("Event log: %d events recorded to %s\n", recorder.getNumEvents(), recordFilename);
+            } catch (IOException e) {
+                System.out.println("Monkey Error 95: unable to close " + recordFilename);
+            }
+        }
+        if (replayer != null) {
+            replayer.close();
+            System.out.println(replayer);
+            if (recorder != null) {
+                try {
+                    System.out.print(EventDiff.diff(Tools.getConfig("eventLogFilename"), recordFilename));
+                } catch (IOException e) {
+                    System.out.println("Monkey Error 94: unable to compare the event logs, " + e.getMessage());
+                }
+            }
+        }
+        h.getAnalytics().export(Tools.getConfig("logsDirectory") + "\\analytics.txt");
+        if (journal != null) {
+            journal.exportText(h, Tools.getConfig("holdingsFilename"), Tools.getConfig("transactionLogFilename"));
+            journal.close();
+        }
 
         if (verbose > 0) {
             System.out.println("\nTransaction(s)");
             h.printAllHoldings();
             System.out.printf("Total Profit: %.2f\n", h.totalProfit(symbol));
+            if (exec != null) System.out.println(exec);
+            if (risk != null) System.out.println(risk);
+            if (cache != null) System.out.println(cache);
+            if (prefetch != null) System.out.println(prefetch);
+            if (localEngine != null) System.out.println(localEngine);
+            if (alloc.isEnabled()) System.out.print(alloc.summary());
+            
+            System.out.println("---------------------------------------------------------------------------------------------");
+            System.out.print(h.getAnalytics().report());
             
             System.out.println("---------------------------------------------------------------------------------------------");
             System.out.println("\nCopy and Paste into your spreadsheet called,  results_v##.xlsx");
@@ -478,10 +705,66 @@ public class Monkey {
             System.out.println("\n\nMonkey says good-bye on " + theDate + " " + theTime +
                     "\tElapsed time: " + String.format("%.4f", elapsedMinutes) + " minutes\n");
         }
+
+        //a benchmark run fails when the quote loop allocates more than its budget
+        if (alloc.isOverBudget()) {
+            System.out.printf("Monkey Error 90: %.0f bytes allocated per quote, over the budget of %s%n",
+                alloc.getBytesPerQuote(), Tools.getConfig("allocationBudgetBytesPerQuote").trim());
+            System.exit(1);
+        }
     }
 
     
     
+    //the end of the day loop at theDT:  working orders are cancelled and the day's reports written
+    private static void endDay(TranscriptWriter transcript, String theDT, String stopTime, ExecutionSimulator exec,
+                               LatencyTracer tracer, AllocationTracker alloc, String theDate, int dayNum) {
+        transcript.write(theDT, String.format("Monkey\tmain()\t\t\t\tend of day loop ends at %s",stopTime));
+        if (exec != null) {
+            int cancelled = exec.cancelAll(theDT);
+            if (cancelled > 0) transcript.write(theDT, String.format("Exec\tCANCEL\t\t\t\t%d unfilled order(s) cancelled at end of day, see execution.txt",cancelled));
+        }
+        
+        //tick-to-decision latency distribution for the day
+        String report = tracer.dailyReport(theDate);
+        for (String line : report.split("\\R")) {
+            transcript.write(theDT, "Monkey\tLATENCY\t\t\t\t" + line);
+        }
+        if (verbose > 1) System.out.print(report);
+        if (alloc.isEnabled()) {
+            report = alloc.dailyReport(theDate);
+            for (String line : report.split("\\R")) {
+                transcript.write(theDT, "Monkey\tALLOCATION\t\t\t\t" + line);
+            }
+            if (verbose > 1) System.out.print(report);
+        }
+        
+        //Check if the current date set i.e. [-7,4] is over ...
+        if (dayNum == 4) System.out.println("---------------------------------------------------------------------------------------------");
+    }
+    
+    
+    
+    //an event that can not be recorded stops the recording (null is returned), the run itself carries on
+    private interface Recording {
+        void to(EventLog.Writer r) throws IOException;
+    }
+
+    private static EventLog.Writer record(EventLog.Writer recorder, Recording event) {
+        if (recorder == null) return null;
+        try {
+            event.to(recorder);
+            return recorder;
+        } catch (IOException e) {
+            System.out.println("Monkey Error 93: event log write failed, recording stopped, " + e.getMessage());
+            try {
+                recorder.close();
+            } catch (IOException ignored) {
+                //already failing, the first error is the one reported
+            }
+            return null;
+        }
+    }
 
     
 
@@ -0,0 +1,258 @@
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * MonteCarlo asks how much of a run's total profit was luck.  It resamples the run many times and
+ * reports confidence intervals for the total profit and the maximum drawdown, and the risk of ruin:
+ * the share of resamples in which the account lost monteCarloRuinFraction of availableCash.
+ *
+ * Two resamplings are done:
+ *
+ *   - trades:  the closed trades' profits drawn with replacement, in a random order
+ *   - days:    the daily profits (every market day, 0 when nothing closed) drawn as a circular block
+ *              bootstrap of monteCarloBlockDays days, which keeps runs of good and bad days together
+ *
+ * The resamples are split into fixed chunks, each with its own SplittableRandom split off one seed,
+ * and the chunks run on all cores.  The results do not depend on the number of threads.  Inside a
+ * chunk nothing is allocated, the results go straight into preallocated arrays, so a million
+ * resamples take seconds.
+ *
+ *     java MonteCarlo [startingDate endingDate]
+ *
+ * reads the trades from the trade journal of the last simulator run (simulatorJournalFilename).
+ *
+ * @version v1
+ */
+public class MonteCarlo
+{
+    private static final int CHUNK = 16384;   // resamples per task
+
+    /**
+     * The distribution of one resampling.
+     */
+    public static final class Stats {
+        private final String name;
+        private final int numResamples;
+        private final double confidence;
+        private final double[] profit;     // sorted
+        private final double[] drawdown;   // sorted
+        private final int ruined;
+
+        Stats(String name, double confidence, double[] profit, double[] drawdown, int ruined) {
+            this.name = name;
+            this.numResamples = profit.length;
+            this.confidence = confidence;
+            this.profit = profit;
+            this.drawdown = drawdown;
+            this.ruined = ruined;
+            Arrays.sort(profit);
+            Arrays.sort(drawdown);
+        }
+
+        public double profitPercentile(double p) { return percentile(profit, p); }
+        public double drawdownPercentile(double p) { return percentile(drawdown, p); }
+        public double getRiskOfRuin() { return numResamples == 0 ? 0.0 : (double) ruined / numResamples; }
+
+        private static double percentile(double[] sorted, double p) {
+            if (sorted.length == 0) return 0.0;
+            int i = (int) Math.round(p * (sorted.length - 1));
+            return sorted[Math.max(0, Math.min(sorted.length - 1, i))];
+        }
+
+        public String toString() {
+            double lo = (1.0 - confidence) / 2.0, hi = 1.0 - lo;
+            return String.format("%s\t%d resamples%n"
+                               + "  total profit\tmedian %.2f\t%.0f%% interval [%.2f, %.2f]%n"
+                               + "  max drawdown\tmedian %.2f\t%.0f%% interval [%.2f, %.2f]%n"
+                               + "  risk of ruin\t%.4f%%%n",
+                name, numResamples,
+                profitPercentile(0.5), confidence * 100, profitPercentile(lo), profitPercentile(hi),
+                drawdownPercentile(0.5), confidence * 100, drawdownPercentile(lo), drawdownPercentile(hi),
+                getRiskOfRuin() * 100);
+        }
+    }
+
+
+
+    private final double[] trades;
+    private final double[] days;
+    private final double ruinLoss;       // ruined once the equity falls this far below the start
+    private final double confidence;
+
+
+
+    /**
+     * @param trades       profit of every closed trade, in the order they closed
+     * @param days         profit of every market day
+     * @param ruinLoss     the loss that ruins the account, e.g. availableCash
+     * @param confidence   e.g. 0.95 for a 95% interval
+     */
+    public MonteCarlo(double[] trades, double[] days, double ruinLoss, double confidence) {
+        this.trades = trades.clone();
+        this.days = days.clone();
+        this.ruinLoss = ruinLoss;
+        this.confidence = confidence;
+    }
+
+
+
+    public Stats resampleTrades(int numResamples, long seed, int numThreads) throws Exception {
+        return run("trades", numResamples, seed, numThreads, 0);
+    }
+
+    public Stats bootstrapDays(int numResamples, int blockDays, long seed, int numThreads) throws Exception {
+        return run("days (blocks of " + blockDays + ")", numResamples, seed, numThreads, Math.max(1, blockDays));
+    }
+
+
+
+    //blockDays = 0 resamples the trades, otherwise the days in blocks
+    private Stats run(String name, int numResamples, long seed, int numThreads, int blockDays) throws Exception {
+        double[] profit = new double[numResamples];
+        double[] drawdown = new double[numResamples];
+        double[] series = blockDays == 0 ? trades : days;
+
+        //one generator per chunk, split in order, so the threads do not change the answer
+        SplittableRandom root = new SplittableRandom(seed);
+        ArrayList<Future<Integer>> futures = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        try {
+            for (int from = 0; from < numResamples; from += CHUNK) {
+                final int start = from;
+                final int end = Math.min(numResamples, from + CHUNK);
+                final SplittableRandom rng = root.split();
+                futures.add(pool.submit(() -> blockDays == 0
+                    ? resampleTrades(series, rng, start, end, profit, drawdown)
+                    : bootstrapDays(series, blockDays, rng, start, end, profit, drawdown)));
+            }
+            int ruined = 0;
+            for (Future<Integer> f : futures) ruined += f.get();
+            return new Stats(name, confidence, profit, drawdown, ruined);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+
+    //resamples [start, end) into profit[] and drawdown[], returns how many were ruined
+    private int resampleTrades(double[] series, SplittableRandom rng, int start, int end, double[] profit, double[] drawdown) {
+        int n = series.length;
+        int ruined = 0;
+        for (int r = start; r < end; r++) {
+            double equity = 0.0, peak = 0.0, maxDD = 0.0;
+            boolean ruin = false;
+            for (int k = 0; k < n; k++) {
+                equity += series[rng.nextInt(n)];
+                if (equity > peak) peak = equity;
+                if (peak - equity > maxDD) maxDD = peak - equity;
+                if (equity <= -ruinLoss) ruin = true;
+            }
+            profit[r] = equity;
+            drawdown[r] = maxDD;
+            if (ruin) ruined++;
+        }
+        return ruined;
+    }
+
+    //circular block bootstrap:  random blocks of blockDays consecutive days until the series is full again
+    private int bootstrapDays(double[] series, int blockDays, SplittableRandom rng, int start, int end, double[] profit, double[] drawdown) {
+        int n = series.length;
+        int ruined = 0;
+        for (int r = start; r < end; r++) {
+            double equity = 0.0, peak = 0.0, maxDD = 0.0;
+            boolean ruin = false;
+            int k = 0;
+            while (k < n) {
+                int from = rng.nextInt(n);
+                for (int b = 0; b < blockDays && k < n; b++, k++) {
+                    equity += series[(from + b) % n];
+                    if (equity > peak) peak = equity;
+                    if (peak - equity > maxDD) maxDD = peak - equity;
+                    if (equity <= -ruinLoss) ruin = true;
+                }
+            }
+            profit[r] = equity;
+            drawdown[r] = maxDD;
+            if (ruin) ruined++;
+        }
+        return ruined;
+    }
+
+
+
+    /**
+     * The closed trades' profits in closing order, and the profit of every date in marketDates
+     * (the sum of the trades that closed that day).
+     */
+    public static double[][] series(List<SingleHolding> holdings, List<String> marketDates) {
+        ArrayList<SingleHolding> closed = new ArrayList<>();
+        for (SingleHolding s : holdings) if (!s.isOpen()) closed.add(s);
+        closed.sort((a, b) -> a.getDateClosed().compareTo(b.getDateClosed()));   //stable, lots before their partial closes
+
+        double[] trades = new double[closed.size()];
+        TreeMap<String, Double> byDay = new TreeMap<>();
+        for (int i = 0; i < trades.length; i++) {
+            trades[i] = closed.get(i).getProfit();
+            byDay.merge(closed.get(i).getDateClosed().toString(), trades[i], Double::sum);
+        }
+        double[] days = new double[marketDates.size()];
+        for (int i = 0; i < days.length; i++) days[i] = byDay.getOrDefault(marketDates.get(i), 0.0);
+        return new double[][] {trades, days};
+    }
+
+
+
+    public static void main(String[] args) throws Exception {
+        String startingDate = args.length >= 2 ? args[0] : Tools.getConfig("walkForwardStartDate");
+        String endingDate   = args.length >= 2 ? args[1] : Tools.getConfig("walkForwardEndDate");
+
+        //the last run's trades, rebuilt from its journal
+        AllHoldings h = new AllHoldings();
+        try {
+            TradeJournal journal = new TradeJournal(Tools.getConfig("simulatorJournalFilename"), false);
+            journal.replayInto(h);
+            journal.close();
+        } catch (IOException e) {
+            System.out.println("MonteCarlo Error 73: trade journal not available, " + e.getMessage());
+            return;
+        }
+
+        MarketDates md = new MarketDates();
+        md.loadFromFile("../data/marketDates.txt", startingDate, endingDate);
+        ArrayList<String> dates = new ArrayList<>();
+        for (MarketDates.MarketDate d : md.getMarketDates()) dates.add(d.getDate());
+
+        double[][] series = series(h.getAllHoldings(), dates);
+        double cash = Double.parseDouble(Tools.getConfig("availableCash"));
+        double ruinLoss = cash * Double.parseDouble(Tools.getConfig("monteCarloRuinFraction"));
+        MonteCarlo mc = new MonteCarlo(series[0], series[1], ruinLoss, Double.parseDouble(Tools.getConfig("monteCarloConfidence")));
+
+        int numResamples = Integer.parseInt(Tools.getConfig("monteCarloResamples"));
+        int blockDays = Integer.parseInt(Tools.getConfig("monteCarloBlockDays"));
+        long seed = Long.parseLong(Tools.getConfig("monteCarloSeed"));
+        int numThreads = Tools.getConfigInt("monteCarloThreads", 0);
+        if (numThreads <= 0) numThreads = Runtime.getRuntime().availableProcessors();
+
+        double actual = 0.0;
+        for (double p : series[0]) actual += p;
+        System.out.printf("MonteCarlo: %d trades, %d market days [%s to %s], actual profit %.2f, ruin = losing %.2f of %.2f%n",
+            series[0].length, series[1].length, startingDate, endingDate, actual, ruinLoss, cash);
+        if (series[0].length == 0) return;
+
+        long timer = System.nanoTime();
+        System.out.print(mc.resampleTrades(numResamples, seed, numThreads));
+        System.out.printf("  %.2f s%n", (System.nanoTime() - timer) / 1e9);
+        timer = System.nanoTime();
+        System.out.print(mc.bootstrapDays(numResamples, blockDays, seed, numThreads));
+        System.out.printf("  %.2f s on %d thread(s)%n", (System.nanoTime() - timer) / 1e9, numThreads);
+    }
+}
@@ -22,11 +22,13 @@ public class Mr_Green {
     private Quote q;                   // Current quote data.
     private AllHoldings h;             // Portfolio of current holdings.
     private String symbol;             // Stock symbol (e.g., "AAPL").
+    private int symbolId;              // symbol's id in Symbols
     private String reasonCode;         // Code explaining why a buy decision was made.
     private int numShares;             // Number of shares to buy.
     private Prof_Plum plum;            // Provides historical data for the symbol.
     private String marketOpenTime;
     private String marketCloseTime;
+    private OrderRouter orders;        // where the orders go (risk check, execution simulator)
 
     // Threshold values read from configuration.
     private double g1_threshold = Double.parseDouble(Tools.getConfig("GREEN_G1_SPREADPERCENT"));
@@ -43,9 +45,11 @@ public class Mr_Green {
      */
     public Mr_Green(String symbol, String date, String time, AllHoldings h, Prof_Plum plum, String marketOpenTime, String marketCloseTime) {
         this.symbol = symbol;
+        this.symbolId = Symbols.id(symbol);
         this.theDate = date;
         this.theTime = time;
         this.h = h;
+        this.orders = new OrderRouter(h, null, null);
         this.plum = plum;
         this.marketOpenTime = marketOpenTime;
         this.marketCloseTime = marketCloseTime;
@@ -81,6 +85,10 @@ public class Mr_Green {
         return reasonCode;
     }
 
+    public void setOrderRouter(OrderRouter orders) {
+        this.orders = orders;
+    }
+
     public void setNumShares(int n) {
         this.numShares = n;
     }
@@ -107,9 +115,9 @@ public class Mr_Green {
         double percent = 0.0;
         double spreadPercent = (q.getHigh() - q.getLow()) / q.getLow() * 100.0;
         String msg="";
-        if (h.getAvgCost(symbol) > 0.000001) {
-            profit = (q.getPrice() - h.getAvgCost(symbol)) * numShares;
-            percent = (q.getPrice() - h.getAvgCost(symbol)) / h.getAvgCost(symbol) * 100.0;
+        if (h.getAvgCost(symbolId) > 0.000001) {
+            profit = (q.getPrice() - h.getAvgCost(symbolId)) * numShares;
+            percent = (q.getPrice() - h.getAvgCost(symbolId)) / h.getAvgCost(symbolId) * 100.0;
         }
         else {
             profit = 0.00;
@@ -120,8 +128,10 @@ public class Mr_Green {
         
 
         // "message\tdayNum\tprice\tprofit\tpercent\tspread\thigh\tlow\t");
-        msg = String.format("Green sees\t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", dayNum, q.getPrice(), h.getAvgCost(symbol), profit, percent, spreadPercent, q.getHigh(), q.getLow());
-        Tools.log("green.txt", q.getDT(), msg);
+        if (Tools.isLogging()) {   //not formatted at all in backtests, it cost more than the decision
+            msg = String.format("Green sees\t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", dayNum, q.getPrice(), h.getAvgCost(symbolId), profit, percent, spreadPercent, q.getHigh(), q.getLow());
+            Tools.log("green.txt", q.getDT(), msg);
+        }
         
         
         
@@ -135,11 +145,11 @@ public class Mr_Green {
             reasonCode = "G0";
             
         
-            h.openHolding(symbol, numShares, q.getPrice(), LocalDate.parse(theDate));
+            if (!orders.open("Green", symbol, symbolId, numShares, q, LocalDate.parse(theDate), reasonCode)) return false;
             
             //here Rest API placeOrder goes here
             
-            msg = String.format("Green buys, (%s) \t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", reasonCode,dayNum, q.getPrice(), h.getAvgCost(symbol), profit, percent, spreadPercent, q.getHigh(), q.getLow());
+            msg = String.format("Green buys, (%s) \t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", reasonCode,dayNum, q.getPrice(), h.getAvgCost(symbolId), profit, percent, spreadPercent, q.getHigh(), q.getLow());
             Tools.log("green.txt", q.getDT(), msg);
                                 
             return true;
@@ -153,19 +163,13 @@ public class Mr_Green {
         if (spreadPercent > 1.15) {
             
             if (dayNum == 2 || dayNum == 3 || dayNum == 4) {
-                double x1 = plum.getValue(symbol,"high" ,dayNum-2);
-                double y1 = plum.getValue(symbol,"low"  ,dayNum-2);
-                double x2 = plum.getValue(symbol,"high" ,dayNum-1);
-                double y2 = plum.getValue(symbol,"low"  ,dayNum-1);
-                double x3 = plum.getValue(symbol,"high" ,dayNum);
-                double y3 = plum.getValue(symbol,"low"  ,dayNum);
-                
-                boolean ok = Tools.HLx3(x1,x2,x3,y1,y2,y3);
+                //three lower highs and lower lows, days dayNum-2 to today
+                boolean ok = plum.hasPattern(symbolId, dayNum, CandlePatterns.Pattern.DESCENDING_3);
 
                 if (ok) {
                                 reasonCode = "G3";
-                                h.openHolding(symbol, numShares, q.getPrice(), LocalDate.parse(theDate));
-                                msg = String.format("Green buys, (%s) \t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", reasonCode,dayNum, q.getPrice(), h.getAvgCost(symbol), profit, percent, spreadPercent, q.getHigh(), q.getLow());
+                                if (!orders.open("Green", symbol, symbolId, numShares, q, LocalDate.parse(theDate), reasonCode)) return false;
+                                msg = String.format("Green buys, (%s) \t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", reasonCode,dayNum, q.getPrice(), h.getAvgCost(symbolId), profit, percent, spreadPercent, q.getHigh(), q.getLow());
                                 Tools.log("green.txt", q.getDT(), msg);
                                 
                                 return true;
@@ -179,6 +183,7 @@ public class Mr_Green {
     }
     
     
+
     //empties the green.txt file, but does not delete the file.  green.txt just stores activity by green 
     public void clearFile() {
         try (PrintWriter writer = new PrintWriter(new FileWriter("..\\logs\\green.txt"))) {
@@ -200,8 +205,8 @@ public class Mr_Green {
     public String toString() {
         String str = String.format("Mr_Green [%s %s]\t%.2f\t", theDate, theTime, q.getPrice());
 
-        if (h.hasHolding(symbol)) {
-            double profit = (q.getPrice() - h.getAvgCost(symbol)) * numShares;
+        if (h.hasHolding(symbolId)) {
+            double profit = (q.getPrice() - h.getAvgCost(symbolId)) * numShares;
             str += String.format("profit: %.2f", profit);
         }
 
@@ -24,11 +24,13 @@ public class Mrs_Peacock {
     private Quote q;                   // Current quote data.
     private AllHoldings h;             // Portfolio of current holdings.
     private String symbol;             // Stock symbol (e.g., "AAPL").
+    private int symbolId;              // symbol's id in Symbols
     private String reasonCode;         // Code explaining why a short-sell decision was made.
     private int numShares;             // Number of shares to short (negative number).
     private Prof_Plum plum;            // Historical stats provider (not directly used here).
     private String marketOpenTime;
     private String marketCloseTime;
+    private OrderRouter orders;        // where the orders go (risk check, execution simulator)
 
     /**
      * Constructor for Mrs_Peacock.
@@ -41,9 +43,11 @@ public class Mrs_Peacock {
      */
     public Mrs_Peacock(String symbol, String date, String time, AllHoldings h, Prof_Plum plum, String marketOpenTime, String marketCloseTime) {
         this.symbol = symbol;
+        this.symbolId = Symbols.id(symbol);
         this.theDate = date;
         this.theTime = time;
         this.h = h;
+        this.orders = new OrderRouter(h, null, null);
         this.plum = plum;
         this.marketOpenTime = marketOpenTime;
         this.marketCloseTime = marketCloseTime;
@@ -89,6 +93,10 @@ public class Mrs_Peacock {
         return reasonCode;
     }
 
+    public void setOrderRouter(OrderRouter orders) {
+        this.orders = orders;
+    }
+
     /**
      * Decides whether to open a short position under four main cases:
      * 
@@ -105,9 +113,9 @@ public class Mrs_Peacock {
         double percent = 0.0;
         double spreadPercent = (q.getHigh() - q.getLow()) / q.getLow() * 100.0;
         String msg="";
-        if (h.getAvgCost(symbol) > 0.000001) {
-            profit = (q.getPrice() - h.getAvgCost(symbol)) * numShares;
-            percent = (q.getPrice() - h.getAvgCost(symbol)) / h.getAvgCost(symbol) * 100.0;
+        if (h.getAvgCost(symbolId) > 0.000001) {
+            profit = (q.getPrice() - h.getAvgCost(symbolId)) * numShares;
+            percent = (q.getPrice() - h.getAvgCost(symbolId)) / h.getAvgCost(symbolId) * 100.0;
         }
         else {
             profit = 0.00;
@@ -118,8 +126,10 @@ public class Mrs_Peacock {
         
 
 
-        msg = String.format("Peacock sees\t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", dayNum, q.getPrice(), h.getAvgCost(symbol), profit, percent, spreadPercent, q.getHigh(), q.getLow());
-        Tools.log("peacock.txt", q.getDT(), msg);
+        if (Tools.isLogging()) {
+            msg = String.format("Peacock sees\t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", dayNum, q.getPrice(), h.getAvgCost(symbolId), profit, percent, spreadPercent, q.getHigh(), q.getLow());
+            Tools.log("peacock.txt", q.getDT(), msg);
+        }
         
         
         
@@ -132,9 +142,9 @@ public class Mrs_Peacock {
             (Tools.ConvertTimeToLong(theTime) >= Tools.ConvertTimeToLong(fifteen_minutes_earlier)) &&
             (Tools.ConvertTimeToLong(theTime) < Tools.ConvertTimeToLong(marketCloseTime))) {
                 reasonCode = "P0";
-                h.openHolding(symbol, numShares, q.getPrice(), LocalDate.parse(theDate));
+                if (!orders.open("Peacock", symbol, symbolId, numShares, q, LocalDate.parse(theDate), reasonCode)) return false;
             
-                msg = String.format("Peacock sells, (%s) \t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", reasonCode,dayNum, q.getPrice(), h.getAvgCost(symbol), profit, percent, spreadPercent, q.getHigh(), q.getLow());
+                msg = String.format("Peacock sells, (%s) \t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", reasonCode,dayNum, q.getPrice(), h.getAvgCost(symbolId), profit, percent, spreadPercent, q.getHigh(), q.getLow());
                 Tools.log("peacock.txt", q.getDT(), msg);
                 
                 return true;
@@ -147,6 +157,7 @@ public class Mrs_Peacock {
 
     
      
+
    //empties the peacock.txt file, but does not delete the file.  peacock.txt just stores activity by peacock
     public void clearFile() {
         try (PrintWriter writer = new PrintWriter(new FileWriter("..\\logs\\peacock.txt"))) {
@@ -170,8 +181,8 @@ public class Mrs_Peacock {
     public String toString() {
         String str = String.format("Mrs Peacock [%s %s]\t%.2f\t", theDate, theTime, q.getPrice());
 
-        if (h.hasHolding(symbol)) {
-            double profit = (q.getPrice() - h.getAvgCost(symbol)) * numShares;
+        if (h.hasHolding(symbolId)) {
+            double profit = (q.getPrice() - h.getAvgCost(symbolId)) * numShares;
             str += String.format("profit: %.2f", profit);
         }
 
@@ -0,0 +1,56 @@
+import java.time.LocalDate;
+
+/**
+ * OrderRouter is where the strategies send their orders.  An order is first checked by the
+ * RiskEngine, when there is one, and then booked:  straight into AllHoldings or, in simulator mode,
+ * through the ExecutionSimulator.  A turned down order is logged to the strategy's own log file.
+ *
+ * One router is shared by the four strategies of a run, so they all trade through the same checks.
+ *
+ * @version v1
+ */
+public class OrderRouter
+{
+    private final AllHoldings h;
+    private final ExecutionSimulator exec;   // when set, orders go through the execution simulator
+    private final RiskEngine risk;           // when set, every order must pass the pre-trade risk check
+
+
+
+    public OrderRouter(AllHoldings h, ExecutionSimulator exec, RiskEngine risk) {
+        this.h = h;
+        this.exec = exec;
+        this.risk = risk;
+    }
+
+
+
+    /**
+     * Opens (shares > 0, long) or adds to a position (shares < 0, short) for who, e.g. "Green".
+     * Returns false when the risk engine turns the order down.
+     */
+    public boolean open(String who, String symbol, int symbolId, int shares, Quote q, LocalDate date, String reasonCode) {
+        if (!allowed(who, symbolId, shares, q, reasonCode)) return false;
+        if (exec != null) exec.submitOpen(symbol, shares, q, date, reasonCode);
+        else h.openHolding(symbol, shares, q.getPrice(), date, reasonCode);
+        return true;
+    }
+
+    /**
+     * Closes shares of a position (shares > 0 sells a long, shares < 0 covers a short) for who.
+     * Returns false when the risk engine turns the order down.
+     */
+    public boolean close(String who, String symbol, int symbolId, int shares, Quote q, LocalDate date, String reasonCode) {
+        if (!allowed(who, symbolId, -shares, q, reasonCode)) return false;
+        if (exec != null) exec.submitClose(symbol, shares, q, date, reasonCode);
+        else h.closeHolding(symbol, shares, q.getPrice(), date, reasonCode);
+        return true;
+    }
+
+    //signedShares > 0 buys, < 0 sells
+    private boolean allowed(String who, int symbolId, int signedShares, Quote q, String reasonCode) {
+        if (risk == null || risk.allows(symbolId, signedShares, q.getPrice())) return true;
+        Tools.log(who.toLowerCase() + ".txt", q.getDT(), who + " blocked by risk, (" + reasonCode + ") " + risk.getRejectReason());
+        return false;
+    }
+}
@@ -0,0 +1,181 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * PnLAnalytics keeps the performance statistics of a run up to date as trades close.
+ *
+ * AllHoldings calls onClose() once for every lot (or synthetic partial clone) that is closed,
+ * and each call does a fixed amount of work, so the numbers can be read at any time during a
+ * run instead of pasting AllHoldings.results() into a spreadsheet afterwards.
+ *
+ * Tracked:
+ *   - equity curve (cumulative realized profit after each closed lot)
+ *   - max drawdown of that curve
+ *   - win rate, profit factor, average win/loss
+ *   - average holding time in days
+ *   - profit attributed to each reason code, both the opening code (G0, G3, P0...) and the
+ *     closing code (S0, SL, M0, M3...)
+ *
+ * @version v1
+ */
+public class PnLAnalytics
+{
+    /**
+     * Running totals for one reason code.
+     */
+    public static class ReasonStats {
+        private int trades;
+        private int wins;
+        private double profit;
+
+        private void add(double p) {
+            trades++;
+            if (p > 0) wins++;
+            profit += p;
+        }
+
+        public int getTrades()   { return trades; }
+        public int getWins()     { return wins; }
+        public double getProfit() { return profit; }
+    }
+
+
+
+    private double[] equityCurve = new double[256];
+    private int numTrades = 0;
+
+    private double equity = 0.0;
+    private double peakEquity = 0.0;
+    private double maxDrawdown = 0.0;
+
+    private int wins = 0;
+    private int losses = 0;
+    private double grossWin = 0.0;
+    private double grossLoss = 0.0;     // stored as a positive number
+    private long holdDays = 0;
+
+    private final Map<String, ReasonStats> byOpenReason = new TreeMap<>();
+    private final Map<String, ReasonStats> byCloseReason = new TreeMap<>();
+
+
+
+    /**
+     * Records one closed lot.
+     *
+     * @param profit  profit of the lot, after any dividend adjustment
+     */
+    public void onClose(String openReason, String closeReason, double profit, LocalDate dateOpened, LocalDate dateClosed) {
+        if (numTrades == equityCurve.length) equityCurve = Arrays.copyOf(equityCurve, numTrades * 2);
+
+        equity += profit;
+        equityCurve[numTrades++] = equity;
+        if (equity > peakEquity) peakEquity = equity;
+        if (peakEquity - equity > maxDrawdown) maxDrawdown = peakEquity - equity;
+
+        if (profit > 0) {
+            wins++;
+            grossWin += profit;
+        } else {
+            losses++;
+            grossLoss -= profit;
+        }
+
+        if (dateOpened != null && dateClosed != null) holdDays += dateClosed.toEpochDay() - dateOpened.toEpochDay();
+
+        reasonStats(byOpenReason, openReason).add(profit);
+        reasonStats(byCloseReason, closeReason).add(profit);
+    }
+
+
+
+    private static ReasonStats reasonStats(Map<String, ReasonStats> map, String reason) {
+        String key = (reason == null || reason.isEmpty()) ? "--" : reason;
+        ReasonStats stats = map.get(key);
+        if (stats == null) {
+            stats = new ReasonStats();
+            map.put(key, stats);
+        }
+        return stats;
+    }
+
+
+
+    public int getNumTrades()       { return numTrades; }
+    public double getEquity()       { return equity; }
+    public double getMaxDrawdown()  { return maxDrawdown; }
+    public double getGrossWin()     { return grossWin; }
+    public double getGrossLoss()    { return grossLoss; }
+
+    public double getWinRate() {
+        return (numTrades == 0) ? 0.0 : (double) wins / numTrades * 100.0;
+    }
+
+    //gross profit / gross loss, infinite if nothing has lost yet
+    public double getProfitFactor() {
+        if (grossLoss == 0.0) return (grossWin > 0.0) ? Double.POSITIVE_INFINITY : 0.0;
+        return grossWin / grossLoss;
+    }
+
+    public double getAverageHoldDays() {
+        return (numTrades == 0) ? 0.0 : (double) holdDays / numTrades;
+    }
+
+    public double getAverageWin()  { return (wins == 0) ? 0.0 : grossWin / wins; }
+    public double getAverageLoss() { return (losses == 0) ? 0.0 : -grossLoss / losses; }
+
+    //cumulative profit after each closed lot
+    public double[] getEquityCurve() {
+        return Arrays.copyOf(equityCurve, numTrades);
+    }
+
+    public Map<String, ReasonStats> getByOpenReason()  { return byOpenReason; }
+    public Map<String, ReasonStats> getByCloseReason() { return byCloseReason; }
+
+
+
+    /**
+     * Compact performance report.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Trades: %d   Net Profit: %.2f   Max Drawdown: %.2f%n", numTrades, equity, maxDrawdown));
+        sb.append(String.format("Win Rate: %.1f%%   Profit Factor: %.2f   Avg Win: %.2f   Avg Loss: %.2f   Avg Hold: %.1f days%n",
+            getWinRate(), getProfitFactor(), getAverageWin(), getAverageLoss(), getAverageHoldDays()));
+        sb.append(String.format("%-8s %-6s %7s %6s %12s%n", "side", "reason", "trades", "wins", "profit"));
+        appendReasons(sb, "open", byOpenReason);
+        appendReasons(sb, "close", byCloseReason);
+        return sb.toString();
+    }
+
+
+
+    private static void appendReasons(StringBuilder sb, String side, Map<String, ReasonStats> map) {
+        for (Map.Entry<String, ReasonStats> e : map.entrySet()) {
+            ReasonStats r = e.getValue();
+            sb.append(String.format("%-8s %-6s %7d %6d %12.2f%n", side, e.getKey(), r.trades, r.wins, r.profit));
+        }
+    }
+
+
+
+    /**
+     * Writes the report followed by the equity curve (one value per line) to filename.
+     */
+    public void export(String filename) {
+        try (PrintWriter out = new PrintWriter(new FileWriter(filename))) {
+            out.print(report());
+            out.println();
+            out.println("trade\tequity");
+            for (int i = 0; i < numTrades; i++) {
+                out.printf("%d\t%.2f%n", i + 1, equityCurve[i]);
+            }
+        } catch (IOException e) {
+            System.out.println("PnLAnalytics Error 60: unable to write " + filename);
+        }
+    }
+}
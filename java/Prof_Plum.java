@@ -4,25 +4,50 @@ import java.util.*;
 public class Prof_Plum {
     private static final String FILE_PATH = "..\\data\\plum.txt";
     
-    // Map<Symbol, Map<Variable, Map<DayNum, Value>>>
-    private Map<String, Map<String, Map<Integer, Double>>> data;
+    // data.get(symbolId) is Map<Variable, Map<DayNum, Value>>, indexed by the symbol's id in Symbols
+    private ArrayList<Map<String, Map<Integer, Double>>> data;
+    private final boolean persistent;   // false = the stats stay in memory, plum.txt is never touched
+
+    //the day candles (open, high, low, close) by dayNum, fed with every price Plum is given (see hasPattern)
+    private final CandlePatterns days = new CandlePatterns(86400);
 
     public Prof_Plum() {
-        data = new HashMap<>();
+        this(true);
+    }
+
+    //in-memory Plums let parallel backtests (see Backtest) keep their own stats
+    public Prof_Plum(boolean persistent) {
+        this.persistent = persistent;
+        data = new ArrayList<>();
+    }
+
+    //the symbol's statistics, null if it has none
+    private Map<String, Map<Integer, Double>> symbolData(int symbolId) {
+        return (symbolId >= 0 && symbolId < data.size()) ? data.get(symbolId) : null;
     }
 
 public void setValue(String symbol, String variable, int dayNum, double value) {
-    data.computeIfAbsent(symbol, k -> new HashMap<>())
+    setValue(Symbols.id(symbol), variable, dayNum, value);
+}
+
+public void setValue(int symbolId, String variable, int dayNum, double value) {
+    while (data.size() <= symbolId) data.add(null);
+    if (data.get(symbolId) == null) data.set(symbolId, new HashMap<>());
+    data.get(symbolId)
         .computeIfAbsent(variable, k -> new HashMap<>())
         .put(dayNum, value);
 
     // Auto-save to file after every update
-    saveToFile();
+    if (persistent) saveToFile();
 }
 
 
 public Double getValue(String symbol, String variable, int dayNum) {
-    Map<String, Map<Integer, Double>> symbolData = data.get(symbol);
+    return getValue(Symbols.id(symbol), variable, dayNum);
+}
+
+public Double getValue(int symbolId, String variable, int dayNum) {
+    Map<String, Map<Integer, Double>> symbolData = symbolData(symbolId);
     if (symbolData != null) {
         Map<Integer, Double> varData = symbolData.get(variable);
         if (varData != null) {
@@ -41,13 +66,46 @@ public Double getValue(String symbol, String variable, int dayNum) {
 }
 
 
+
+    /**
+     * Whether the days dayNum - 2, dayNum - 1 and dayNum (today so far) make pattern p (see
+     * CandlePatterns).  The day candles are kept as the prices come in (updateStatistics, setCandle),
+     * so this is one flag read.  A day Plum has no prices for is a missing candle.
+     *
+     * For a day that is not the newest one of its candles (stats read back from plum.txt), the
+     * patterns are worked out from the highs and lows alone, with the sentinels of getValue, and
+     * the engulfing patterns are then never true.
+     */
+    public boolean hasPattern(int symbolId, int dayNum, CandlePatterns.Pattern p) {
+        if (days.isNewest(symbolId, 0, dayNum)) return days.matches(symbolId, 0, p);
+        double none = Double.NaN;
+        long flags = CandlePatterns.evaluate(none, getValue(symbolId, "high", dayNum - 2), getValue(symbolId, "low", dayNum - 2), none,
+                                             none, getValue(symbolId, "high", dayNum - 1), getValue(symbolId, "low", dayNum - 1), none,
+                                             none, getValue(symbolId, "high", dayNum), getValue(symbolId, "low", dayNum), none);
+        return (flags & p.bit) != 0;
+    }
+
+
+
+    /**
+     * Day dayNum so far, worked out in one go (Backtest's vectorized days):  its high and low stats,
+     * and its candle.
+     */
+    public void setCandle(int symbolId, int dayNum, double open, double high, double low, double close) {
+        setValue(symbolId, "high", dayNum, high);
+        setValue(symbolId, "low", dayNum, low);
+        days.set(symbolId, 0, dayNum, open, high, low, close);
+    }
+
+
     public void saveToFile() {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(FILE_PATH))) {
-            for (String symbol : data.keySet()) {
-                for (String variable : data.get(symbol).keySet()) {
-                    for (Map.Entry<Integer, Double> entry : data.get(symbol).get(variable).entrySet()) {
+            for (int symbolId = 0; symbolId < data.size(); symbolId++) {
+                if (data.get(symbolId) == null) continue;
+                for (String variable : data.get(symbolId).keySet()) {
+                    for (Map.Entry<Integer, Double> entry : data.get(symbolId).get(variable).entrySet()) {
                         writer.write(String.format("%s\t%s\t%d\t%.4f%n",
-                                symbol, variable, entry.getKey(), entry.getValue()));
+                                Symbols.name(symbolId), variable, entry.getKey(), entry.getValue()));
                     }
                 }
             }
@@ -57,6 +115,7 @@ public Double getValue(String symbol, String variable, int dayNum) {
     }
 
     public void getFromFile() {
+        if (!persistent) return;   // the stats are already in memory
         data.clear();
         try (BufferedReader reader = new BufferedReader(new FileReader(FILE_PATH))) {
             String line;
@@ -78,22 +137,27 @@ public Double getValue(String symbol, String variable, int dayNum) {
     
     
     public void updateStatistics(String symbol, int dayNum, double currentPrice) {
-    Double currentHigh = getValue(symbol, "high", dayNum);
-    Double currentLow  = getValue(symbol, "low", dayNum);
+        updateStatistics(Symbols.id(symbol), dayNum, currentPrice);
+    }
+
+    public void updateStatistics(int symbolId, int dayNum, double currentPrice) {
+    days.update(symbolId, 0, dayNum, currentPrice);
+    Double currentHigh = getValue(symbolId, "high", dayNum);
+    Double currentLow  = getValue(symbolId, "low", dayNum);
 
     // If no high or low exists yet, initialize both to currentPrice
     if (currentHigh == null || currentLow == null) {
-        setValue(symbol, "high", dayNum, currentPrice);
-        setValue(symbol, "low", dayNum, currentPrice);
+        setValue(symbolId, "high", dayNum, currentPrice);
+        setValue(symbolId, "low", dayNum, currentPrice);
         return;
     }
 
     if (currentPrice > currentHigh) {
-        setValue(symbol, "high", dayNum, currentPrice);
+        setValue(symbolId, "high", dayNum, currentPrice);
     }
 
     if (currentPrice < currentLow) {
-        setValue(symbol, "low", dayNum, currentPrice);
+        setValue(symbolId, "low", dayNum, currentPrice);
     }
 }
 
@@ -101,6 +165,11 @@ public Double getValue(String symbol, String variable, int dayNum) {
 
 
   public void clearFile() {
+        days.clear();   //a new dataset, the candles start again with the stats
+        if (!persistent) {
+            data.clear();
+            return;
+        }
         try (PrintWriter writer = new PrintWriter(new FileWriter(FILE_PATH))) {
             // Truncate file by writing nothing
         } catch (IOException e) {
@@ -116,8 +185,8 @@ public Double getValue(String symbol, String variable, int dayNum) {
     public String toString() {
         StringBuilder sb = new StringBuilder();
     
-        for (String symbol : data.keySet()) {
-            Map<String, Map<Integer, Double>> variableMap = data.get(symbol);
+        for (Map<String, Map<Integer, Double>> variableMap : data) {
+            if (variableMap == null) continue;
             for (String variable : variableMap.keySet()) {
                 Map<Integer, Double> dayNumMap = variableMap.get(variable);
                 for (Map.Entry<Integer, Double> entry : dayNumMap.entrySet()) {
@@ -9,6 +9,7 @@ public class Quote
 {
     private String myDT=null;           // 2023-04-28.13:46.40
     private String mySymbol=null;       // PDI
+    private int    mySymbolId=-1;       // PDI's id in Symbols
     private String myType=null;         // STK
     private double myPrice=0.00;        // 17.99
     private String mySource=null;       // L7-1007
@@ -38,6 +39,7 @@ public class Quote
        
         this.myDT = str[0];
         this.mySymbol = str[1];
+        this.mySymbolId = Symbols.id(str[1]);
         this.myType = str[2];
         this.myPrice = Double.parseDouble(str[3]);
         this.mySource = str[4];
@@ -52,6 +54,26 @@ public class Quote
         
     }
 
+
+    //builds a quote from its fields, used for quotes that do not come from the MMEngine (e.g. the TickStore)
+    public Quote(String dt, String symbol, String type, double price, String source, long volume,
+                 double bid, double ask, int bidSize, int askSize, double high, double low, double open) {
+        this.myDT = dt;
+        this.mySymbol = symbol;
+        this.mySymbolId = Symbols.id(symbol);
+        this.myType = type;
+        this.myPrice = price;
+        this.mySource = source;
+        this.myVolume = volume;
+        this.myBid = bid;
+        this.myAsk = ask;
+        this.myBidSize = bidSize;
+        this.myAskSize = askSize;
+        this.myHigh = high;
+        this.myLow = low;
+        this.myOpen = open;
+    }
+
     public String getDT() {
         return myDT;
     }
@@ -98,6 +120,10 @@ public class Quote
         return mySymbol;
     }
 
+    public int getSymbolId() {
+        return mySymbolId;
+    }
+
     public String getType() {
         return myType;
     }
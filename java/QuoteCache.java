@@ -0,0 +1,207 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * QuoteCache sits in front of another QuoteSource (the MMEngine) and remembers every answer,
+ * keyed by symbol, date and time, so re-running a backtest over the same days needs no HTTP.
+ *
+ * There are two tiers, both least-recently-used:
+ *
+ *   memory   the last quoteCacheMemoryDays symbol-days, each a map of time -> response
+ *   disk     one file per symbol-day in quoteCacheDirectory (SYMBOL_yyyy-MM-dd.qc), with one
+ *            line per quote: time, field count, fields.  When the files add up to more than
+ *            quoteCacheMaxMB, the least recently used days are deleted.
+ *
+ * Only answers that will never change are cached: a quote, or "null" (no quote at that time).
+ * A failed request (null) or an unreadable answer is passed on and asked again next time.
+ * Only use the cache in simulator mode, real-mode quotes are live.
+ *
+ * @version v1
+ */
+public class QuoteCache implements QuoteSource
+{
+    private final QuoteSource source;
+    private final File directory;
+    private final int memoryDays;
+    private final long maxDiskBytes;
+
+    //memory tier: symbol-day -> (time -> response), in access order
+    private final LinkedHashMap<String, HashMap<String, Vector<String>>> memory;
+
+    //disk tier: symbol-day file name -> size, in access order; the oldest are deleted first
+    private final LinkedHashMap<String, Long> diskFiles = new LinkedHashMap<>(256, 0.75f, true);
+    private long diskBytes = 0;
+
+    private long memoryHits = 0;
+    private long diskHits = 0;
+    private long misses = 0;
+    private long evictedDays = 0;
+    private long sourceNanos = 0;
+
+
+
+    /**
+     * Reads quoteCacheDirectory, quoteCacheMemoryDays and quoteCacheMaxMB from config.txt.
+     */
+    public QuoteCache(QuoteSource source) {
+        this(source, Tools.getConfig("quoteCacheDirectory"),
+             Integer.parseInt(Tools.getConfig("quoteCacheMemoryDays")),
+             Long.parseLong(Tools.getConfig("quoteCacheMaxMB")) * 1024 * 1024);
+    }
+
+    public QuoteCache(QuoteSource source, String directory, int memoryDays, long maxDiskBytes) {
+        this.source = source;
+        this.directory = new File(directory);
+        this.memoryDays = memoryDays;
+        this.maxDiskBytes = maxDiskBytes;
+        this.memory = new LinkedHashMap<>(memoryDays * 2, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, HashMap<String, Vector<String>>> eldest) {
+                return size() > QuoteCache.this.memoryDays;
+            }
+        };
+        this.directory.mkdirs();
+
+        //the files from earlier runs, least recently used first
+        File[] files = this.directory.listFiles((d, name) -> name.endsWith(".qc"));
+        if (files != null) {
+            Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+            for (File f : files) {
+                diskFiles.put(f.getName(), f.length());
+                diskBytes += f.length();
+            }
+        }
+        evict();
+    }
+
+
+
+    public Vector<String> getQuote(String symbol, String theDate, String theTime) {
+        String day = symbol + "_" + theDate;
+        HashMap<String, Vector<String>> quotes = memory.get(day);
+        if (quotes != null) {
+            Vector<String> resp = quotes.get(theTime);
+            if (resp != null) {
+                memoryHits++;
+                return resp;
+            }
+        } else {
+            quotes = loadDay(day);
+            memory.put(day, quotes);
+            Vector<String> resp = quotes.get(theTime);
+            if (resp != null) {
+                diskHits++;
+                return resp;
+            }
+        }
+
+        misses++;
+        long start = System.nanoTime();
+        Vector<String> resp = source.getQuote(symbol, theDate, theTime);
+        sourceNanos += System.nanoTime() - start;
+        if (isFinal(resp)) {
+            quotes.put(theTime, resp);
+            append(day, theTime, resp);
+        }
+        return resp;
+    }
+
+
+
+    //a quote (14 fields) or "null", both are what the MMEngine will always answer for that time
+    private static boolean isFinal(Vector<String> resp) {
+        if (resp == null) return false;
+        if (resp.size() == 1 && resp.get(0).trim().equalsIgnoreCase("null")) return true;
+        return resp.size() == 14;
+    }
+
+    private File file(String day) {
+        return new File(directory, day + ".qc");
+    }
+
+    private HashMap<String, Vector<String>> loadDay(String day) {
+        HashMap<String, Vector<String>> quotes = new HashMap<>();
+        File f = file(day);
+        if (!diskFiles.containsKey(f.getName())) return quotes;
+
+        try (BufferedReader in = new BufferedReader(new FileReader(f))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length < 2) continue;
+                int n = Integer.parseInt(parts[1]);
+                if (parts.length != n + 2) continue;     //a line cut short by a crash
+                Vector<String> resp = new Vector<>(n);
+                for (int i = 0; i < n; i++) resp.add(parts[i + 2]);
+                quotes.put(parts[0], resp);
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("QuoteCache Error 60: unable to read " + f + ", it will be fetched again");
+            quotes.clear();
+        }
+        diskFiles.get(f.getName());                   //most recently used now
+        f.setLastModified(System.currentTimeMillis()); //and for the next run
+        return quotes;
+    }
+
+    private void append(String day, String theTime, Vector<String> resp) {
+        File f = file(day);
+        StringBuilder sb = new StringBuilder(160);
+        sb.append(theTime).append('\t').append(resp.size());
+        for (String s : resp) sb.append('\t').append(s);
+        sb.append('\n');
+
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(f, true))) {
+            out.write(sb.toString());
+        } catch (IOException e) {
+            System.out.println("QuoteCache Error 61: unable to write " + f);
+            return;
+        }
+        Long old = diskFiles.get(f.getName());
+        diskFiles.put(f.getName(), f.length());
+        diskBytes += f.length() - (old == null ? 0 : old);
+        evict();
+    }
+
+    //deletes the least recently used days until the cache fits in maxDiskBytes
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = diskFiles.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && it.hasNext()) {
+            Map.Entry<String, Long> e = it.next();
+            String day = e.getKey().substring(0, e.getKey().length() - 3);
+            if (memory.containsKey(day)) continue;     //in use, the day being run is never evicted
+            if (new File(directory, e.getKey()).delete()) {
+                diskBytes -= e.getValue();
+                evictedDays++;
+                it.remove();
+            }
+        }
+    }
+
+
+
+    public long getMemoryHits() { return memoryHits; }
+    public long getDiskHits() { return diskHits; }
+    public long getMisses() { return misses; }
+    public long getEvictedDays() { return evictedDays; }
+    public long getDiskBytes() { return diskBytes; }
+
+    public double getHitRate() {
+        long total = memoryHits + diskHits + misses;
+        return total == 0 ? 0.0 : (memoryHits + diskHits) * 100.0 / total;
+    }
+
+    public String toString() {
+        return String.format("Quote cache: %d memory hits, %d disk hits, %d misses (%.1f%% hit rate), %.1f s fetching misses, %d day(s) evicted, %.1f MB on disk",
+            memoryHits, diskHits, misses, getHitRate(), sourceNanos / 1e9, evictedDays, diskBytes / (1024.0 * 1024.0));
+    }
+}
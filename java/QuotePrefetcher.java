@@ -0,0 +1,194 @@
+import java.util.Vector;
+
+/**
+ * QuotePrefetcher puts a fetcher thread in front of another QuoteSource, so the next quotes are
+ * already being fetched while the Monkey is still deciding what to do with this one.
+ *
+ * Each MMEngine request asks for the quote after a given time, and that time comes from the
+ * previous answer, so the requests form a chain and only one can be in flight at a time.  The
+ * fetcher walks the chain the same way the Monkey does (the answer's time, or 5 minutes on when
+ * there is no answer) and hands the answers over through a RingBuffer of prefetchDepth slots,
+ * waiting as set by ringWaitStrategy:
+ *
+ *   - order is kept, the Monkey gets exactly the answers it would have fetched itself
+ *   - when the ring is full the fetcher waits (backpressure), when it is empty the Monkey waits
+ *   - a request the fetcher did not predict (a new day, a repeated time) throws the ring's contents away
+ *     and restarts the chain from that request
+ *   - the fetcher stops at setStopTime(), the Monkey's end of day
+ *
+ * Only one thread ever uses the wrapped source (a restart waits for the old fetcher to finish),
+ * so a QuoteCache can sit behind it.  The wait is bounded by CLOSE_TIMEOUT_MS: a fetcher stuck in a
+ * request longer than that is left behind with a ring of its own, so it can never hand over a
+ * stale answer (MMEngineQuoteSource has a read timeout, so this should not happen).
+ *
+ * @version v1
+ */
+public class QuotePrefetcher implements QuoteSource
+{
+    //one answer and the request the fetcher made next, or end = the fetcher has stopped
+    private static class Slot {
+        String time;
+        Vector<String> resp;
+        String nextTime;
+        boolean end;
+    }
+
+    private static final long CLOSE_TIMEOUT_MS = 10_000;
+
+    private final QuoteSource source;
+    private final int capacity;
+    private final RingBuffer.WaitStrategy wait;
+    private RingBuffer<Slot> ring;
+
+    private volatile Thread fetcher = null;   // a fetcher thread stops as soon as it is no longer this one
+    private long nextRead = 0;            // the next sequence the Monkey reads from the ring
+    private volatile long stopSecond = Long.MAX_VALUE;
+    private String symbol = null;
+    private String date = null;
+    private String expectedTime = null;   // the request the next Slot in the ring answers
+
+    private long served = 0;
+    private long restarts = 0;
+    private long waits = 0;
+    private long waitNanos = 0;
+
+
+
+    /**
+     * @param depth   answers fetched ahead, rounded up to a power of 2
+     */
+    public QuotePrefetcher(QuoteSource source, int depth, RingBuffer.WaitStrategy wait) {
+        this.source = source;
+        this.capacity = RingBuffer.capacityFor(depth);
+        this.ring = new RingBuffer<>(capacity, Slot::new, false);
+        this.wait = wait;
+    }
+
+
+
+    //the fetcher stops once it has passed stopTime (HH:mm:ss)
+    public void setStopTime(String stopTime) {
+        stopSecond = Tools.ConvertTimeToLong(stopTime);
+    }
+
+
+
+    public Vector<String> getQuote(String symbol, String theDate, String theTime) {
+        if (fetcher == null || !symbol.equals(this.symbol) || !theDate.equals(date) || !theTime.equals(expectedTime)) {
+            restart(symbol, theDate, theTime);
+        }
+
+        Slot slot = next();
+        if (slot.end) {
+            //the Monkey went on past where the fetcher stopped
+            ring.release(nextRead++);
+            restart(symbol, theDate, theTime);
+            slot = next();
+            if (slot.end) return null;
+        }
+        Vector<String> resp = slot.resp;
+        expectedTime = slot.nextTime;
+        slot.resp = null;
+        ring.release(nextRead++);
+        served++;
+        return resp;
+    }
+
+
+
+    private Slot next() {
+        if (ring.isAvailable(nextRead)) return ring.get(nextRead);
+        long start = System.nanoTime();
+        Slot slot = ring.waitFor(nextRead, wait);
+        waits++;
+        waitNanos += System.nanoTime() - start;
+        return slot;
+    }
+
+
+
+    private void restart(String symbol, String theDate, String theTime) {
+        close();
+        restarts++;
+        this.symbol = symbol;
+        this.date = theDate;
+        this.expectedTime = theTime;
+
+        //skip whatever the old fetcher left in the ring
+        nextRead = ring.getCursor() + 1;
+        ring.release(nextRead - 1);
+        RingBuffer<Slot> into = ring;
+        Thread t = new Thread(() -> fetch(into, symbol, theDate, theTime), "QuotePrefetcher");
+        t.setDaemon(true);
+        fetcher = t;
+        t.start();
+    }
+
+    private boolean cancelled() {
+        return fetcher != Thread.currentThread();
+    }
+
+    //the fetcher thread: follows the chain of requests until it passes the stop time or is cancelled,
+    //then leaves an end Slot in the ring so the Monkey never waits for an answer that is not coming
+    private void fetch(RingBuffer<Slot> into, String symbol, String theDate, String theTime) {
+        String time = theTime;
+        try {
+            while (!cancelled()) {
+                Vector<String> resp = source.getQuote(symbol, theDate, time);
+                String next = Tools.getValidQuoteTime(resp);     //same rule as the Monkey's loop
+                if (next == null) next = Tools.addMinutesToTime(time, 5);
+                if (!put(into, time, resp, next, false)) return;
+                if (Tools.ConvertTimeToLong(next) >= stopSecond) break;
+                time = next;
+            }
+        } catch (RuntimeException e) {
+            //an answer with a time that can not be followed, the Monkey restarts from its own request
+        }
+        put(into, null, null, null, true);
+    }
+
+    //false if cancelled while waiting for room in the ring
+    private boolean put(RingBuffer<Slot> ring, String time, Vector<String> resp, String nextTime, boolean end) {
+        long seq;
+        int spins = 0;
+        while ((seq = ring.tryNext()) < 0) {
+            if (cancelled()) return false;
+            wait.idle(spins++);
+        }
+        Slot slot = ring.get(seq);
+        slot.time = time;
+        slot.resp = resp;
+        slot.nextTime = nextTime;
+        slot.end = end;
+        ring.publish(seq);
+        return true;
+    }
+
+
+
+    //stops the fetcher and waits, at most CLOSE_TIMEOUT_MS, for its request in progress to finish
+    public void close() {
+        Thread t = fetcher;
+        if (t == null) return;
+        fetcher = null;   //cancels it
+        t.interrupt();
+        try {
+            t.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (t.isAlive()) {
+            System.out.println("QuotePrefetcher Error 83: the fetcher is still waiting for " + symbol + " after "
+                + CLOSE_TIMEOUT_MS + " ms, it is left behind");
+            ring = new RingBuffer<>(capacity, Slot::new, false);   //whatever it hands over goes nowhere
+            nextRead = 0;
+        }
+    }
+
+
+
+    public String toString() {
+        return String.format("Prefetch: %d quotes served, %d chain restart(s), waited for the fetcher %d time(s) (%.3f s)",
+            served, restarts, waits, waitNanos / 1e9);
+    }
+}
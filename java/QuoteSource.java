@@ -0,0 +1,16 @@
+import java.util.Vector;
+
+/**
+ * A QuoteSource answers the Monkey's "next quote" request.
+ *
+ * The response has the same form as the MMEngine REST API (see Tools.VectorURIPost): the 14
+ * tab separated quote fields, or a single "null" when there is no quote, or null if the
+ * request failed.  theTime is the time of the previous quote; the source returns the quote
+ * that follows it.
+ *
+ * @version v1
+ */
+public interface QuoteSource
+{
+    Vector<String> getQuote(String symbol, String theDate, String theTime);
+}
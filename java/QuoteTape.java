@@ -0,0 +1,146 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * QuoteTape holds, for every trading day (dayNum -7 to 4) in a date range, the quotes the Monkey's
+ * loop acts on, read once from a QuoteSource and never changed afterwards.
+ *
+ * A day is fetched exactly the way Monkey.main walks it:  the chain of requests starts at 09:29:01,
+ * each answer's time is the next request (5 minutes on when there is no answer), a repeated quote
+ * is skipped and the day ends at the first quote at or after the market close.  So a Backtest over
+ * the tape sees the same quotes the Monkey would.
+ *
+ * The tape is read-only once loaded, so any number of Backtests on any number of threads can share
+ * it (see WalkForward).
+ *
+ * @version v1
+ */
+public class QuoteTape
+{
+    private static final int MAX_REQUESTS_PER_DAY = 100000;   // a day whose chain never reaches the close is cut off
+
+    /**
+     * One trading day:  its dayNum, market hours, and the quotes with the time the Monkey saw each at.
+     */
+    public static final class Day {
+        private final String date;
+        private final int dayNum;
+        private final String openTime;
+        private final String closeTime;
+        private final Quote[] quotes;
+        private final String[] times;
+        private volatile DayColumns columns = null;   // built by the first vectorized Backtest to trade the day
+
+        Day(String date, int dayNum, String openTime, String closeTime, List<Quote> quotes, List<String> times) {
+            this.date = date;
+            this.dayNum = dayNum;
+            this.openTime = openTime;
+            this.closeTime = closeTime;
+            this.quotes = quotes.toArray(new Quote[0]);
+            this.times = times.toArray(new String[0]);
+        }
+
+        public String getDate() { return date; }
+        public int getDayNum() { return dayNum; }
+        public String getMarketOpenTime() { return openTime; }
+        public String getMarketCloseTime() { return closeTime; }
+        public int size() { return quotes.length; }
+        public Quote getQuote(int i) { return quotes[i]; }
+        public String getTime(int i) { return times[i]; }
+
+        //the day as primitive columns, see DayColumns;  two threads may both build them, either copy will do
+        public DayColumns getColumns() {
+            DayColumns c = columns;
+            if (c == null) columns = c = new DayColumns(this);
+            return c;
+        }
+    }
+
+
+
+    private final String symbol;
+    private final List<Day> days;
+    private final int numQuotes;
+
+
+
+    QuoteTape(String symbol, List<Day> days) {
+        this.symbol = symbol;
+        this.days = Collections.unmodifiableList(days);
+        int n = 0;
+        for (Day d : days) n += d.size();
+        this.numQuotes = n;
+    }
+
+
+
+    /**
+     * Reads symbol's quotes for every date in md from source.  Days outside dayNum -7 to 4 are kept
+     * with no quotes, the Backtest needs them to know where a dataset ends.
+     */
+    public static QuoteTape load(QuoteSource source, String symbol, MarketDates md) {
+        ArrayList<Day> days = new ArrayList<>();
+        for (MarketDates.MarketDate a_day : md.getMarketDates()) {
+            ArrayList<Quote> quotes = new ArrayList<>();
+            ArrayList<String> times = new ArrayList<>();
+            if (a_day.getDayNum() >= -7 && a_day.getDayNum() <= 4) {
+                readDay(source, symbol, a_day.getDate(), a_day.getMarketCloseTime(), quotes, times);
+            }
+            days.add(new Day(a_day.getDate(), a_day.getDayNum(), a_day.getMarketOpenTime(), a_day.getMarketCloseTime(), quotes, times));
+        }
+        return new QuoteTape(symbol, days);
+    }
+
+
+
+    //the same walk as Monkey.main's quote loop
+    private static void readDay(QuoteSource source, String symbol, String theDate, String stopTime,
+                                List<Quote> quotes, List<String> times) {
+        long l_stopTime = Tools.ConvertTimeToLong(stopTime);
+        String theTime = "09:29:01";
+        String prevDT = "";
+        for (int n = 0; n < MAX_REQUESTS_PER_DAY; n++) {
+            Vector<String> resp = source.getQuote(symbol, theDate, theTime);
+            String prevTime = theTime;
+            theTime = Tools.getValidQuoteTime(resp);
+            if (theTime == null) theTime = Tools.addMinutesToTime(prevTime, 5);
+            if (Tools.ConvertTimeToLong(theTime) < Tools.ConvertTimeToLong(prevTime)) return;   //past midnight, no close quote
+
+            if (resp == null || (resp.size() == 1 && resp.get(0).trim().equalsIgnoreCase("null"))) continue;
+
+            Quote q = new Quote(String.join("\t", resp));
+            if (prevDT.equals(q.getDT())) continue;
+            prevDT = q.getDT() != null ? q.getDT() : "";
+
+            if (Tools.ConvertTimeToLong(theTime) >= l_stopTime) return;
+            quotes.add(q);
+            times.add(theTime);
+        }
+        System.out.println("QuoteTape Warning 70: " + symbol + " " + theDate + " never reached " + stopTime + ", the day is cut off");
+    }
+
+
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public List<Day> getDays() {
+        return days;
+    }
+
+    //days [from, to)
+    public List<Day> slice(int from, int to) {
+        return days.subList(from, to);
+    }
+
+    public int getNumQuotes() {
+        return numQuotes;
+    }
+
+    public String toString() {
+        return String.format("QuoteTape: %s, %d days, %d quotes", symbol, days.size(), numQuotes);
+    }
+}
@@ -0,0 +1,233 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * RingBuffer hands objects from producer thread(s) to one consumer thread without locks and
+ * without creating garbage: the slots are created once, up front, and re-used forever.
+ *
+ *   producer:   long seq = ring.next(wait);  Slot s = ring.get(seq);  ...fill s...;  ring.publish(seq);
+ *   consumer:   Slot s = ring.waitFor(seq, wait);  ...read s...;  ring.release(seq);  seq++;
+ *
+ * Sequences count up from 0 and slot = seq & (capacity - 1).  The producer and consumer
+ * positions each sit on their own cache line (Sequence), so the two threads do not slow each
+ * other down by sharing one.
+ *
+ *   single producer (SPSC)   the producer claims slots with plain arithmetic and publishes by
+ *                            moving the cursor with a release store
+ *   multi producer (MPSC)    producers claim slots with a CAS on the cursor, and each slot has
+ *                            its own "published in round n" flag, so slots can be published in
+ *                            any order and the consumer still reads them in sequence
+ *
+ * A thread that has to wait (ring full / nothing published yet) calls a WaitStrategy:
+ * BUSY_SPIN (lowest latency, burns a core), YIELD (spins, then gives up its time slice) or
+ * PARK (spins, then sleeps ~50 us, for threads that are idle most of the time).
+ *
+ *   java RingBuffer      measures the hand-off latency for each wait strategy
+ *
+ * @version v1
+ */
+public class RingBuffer<T>
+{
+    public interface WaitStrategy {
+        //called over and over while waiting, spins counts the calls so far
+        void idle(int spins);
+    }
+
+    public static final WaitStrategy BUSY_SPIN = spins -> Thread.onSpinWait();
+    public static final WaitStrategy YIELD = spins -> {
+        if (spins < 100) Thread.onSpinWait();
+        else Thread.yield();
+    };
+    public static final WaitStrategy PARK = spins -> {
+        if (spins < 100) Thread.onSpinWait();
+        else LockSupport.parkNanos(50_000);
+    };
+
+    //BUSY_SPIN, YIELD or PARK (the default, when name is blank)
+    public static WaitStrategy waitStrategy(String name) {
+        switch (name.trim().toUpperCase()) {
+            case "BUSY_SPIN": return BUSY_SPIN;
+            case "YIELD":     return YIELD;
+            case "PARK":
+            case "":          return PARK;
+            default:          throw new IllegalArgumentException("unknown wait strategy " + name.trim() + ", use BUSY_SPIN, YIELD or PARK");
+        }
+    }
+
+    //the smallest power of 2 that holds n slots
+    public static int capacityFor(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+
+
+    /**
+     * A long on a cache line of its own: 7 longs of padding either side, kept in superclasses so
+     * the JVM can not move them around the value.
+     */
+    static class LhsPadding { long p1, p2, p3, p4, p5, p6, p7; }
+    static class Value extends LhsPadding { volatile long value; }
+    static class RhsPadding extends Value { long p9, p10, p11, p12, p13, p14, p15; }
+
+    static final class Sequence extends RhsPadding {
+        private static final VarHandle VALUE;
+        static {
+            try {
+                VALUE = MethodHandles.lookup().findVarHandle(Value.class, "value", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        Sequence(long initial) { VALUE.setRelease(this, initial); }
+        long get() { return (long) VALUE.getAcquire(this); }
+        void set(long v) { VALUE.setRelease(this, v); }
+        boolean compareAndSet(long expected, long v) { return VALUE.compareAndSet(this, expected, v); }
+    }
+
+    private static final VarHandle ROUND = MethodHandles.arrayElementVarHandle(int[].class);
+
+
+
+    private final Object[] slots;
+    private final int mask;
+    private final int shift;
+    private final boolean multiProducer;
+    private final Sequence cursor = new Sequence(-1);     // SPSC: last published, MPSC: last claimed
+    private final Sequence consumed = new Sequence(-1);   // last slot the consumer released
+    private final int[] published;                        // MPSC: the round each slot was last published in
+    private long claimed = -1;                            // SPSC: producer-only copy of the cursor
+    private long cachedConsumed = -1;                     // SPSC: producer-only, saves reading the consumer's line
+
+
+
+    /**
+     * @param capacity        number of slots, a power of 2
+     * @param factory         makes the slot objects, called capacity times here and never again
+     * @param multiProducer   true if more than one thread will call next()/publish()
+     */
+    public RingBuffer(int capacity, Supplier<T> factory, boolean multiProducer) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("RingBuffer capacity must be a power of 2, not " + capacity);
+        this.slots = new Object[capacity];
+        for (int i = 0; i < capacity; i++) slots[i] = factory.get();
+        this.mask = capacity - 1;
+        this.shift = Integer.numberOfTrailingZeros(capacity);
+        this.multiProducer = multiProducer;
+        this.published = multiProducer ? new int[capacity] : null;
+        if (multiProducer) Arrays.fill(published, -1);
+    }
+
+
+
+    /**
+     * Claims the next slot, or returns -1 at once if the ring is full.
+     */
+    public long tryNext() {
+        int capacity = mask + 1;
+        if (!multiProducer) {
+            long next = claimed + 1;
+            if (next - capacity > cachedConsumed) {
+                cachedConsumed = consumed.get();
+                if (next - capacity > cachedConsumed) return -1;
+            }
+            claimed = next;
+            return next;
+        }
+        while (true) {
+            long current = cursor.get();
+            long next = current + 1;
+            if (next - capacity > consumed.get()) return -1;
+            if (cursor.compareAndSet(current, next)) return next;
+        }
+    }
+
+    //claims the next slot, waiting while the ring is full
+    public long next(WaitStrategy wait) {
+        long seq;
+        int spins = 0;
+        while ((seq = tryNext()) < 0) wait.idle(spins++);
+        return seq;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(long seq) {
+        return (T) slots[(int) (seq & mask)];
+    }
+
+    //makes a filled slot visible to the consumer
+    public void publish(long seq) {
+        if (multiProducer) ROUND.setRelease(published, (int) (seq & mask), (int) (seq >>> shift));
+        else cursor.set(seq);
+    }
+
+
+
+    public boolean isAvailable(long seq) {
+        if (multiProducer) return (int) ROUND.getAcquire(published, (int) (seq & mask)) == (int) (seq >>> shift);
+        return cursor.get() >= seq;
+    }
+
+    //waits until seq has been published and returns its slot
+    public T waitFor(long seq, WaitStrategy wait) {
+        int spins = 0;
+        while (!isAvailable(seq)) wait.idle(spins++);
+        return get(seq);
+    }
+
+    //hands the slot (and every slot before it) back to the producers
+    public void release(long seq) {
+        consumed.set(seq);
+    }
+
+    public long getReleased() {
+        return consumed.get();
+    }
+
+    //the last published sequence, only meaningful for a single producer
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+
+
+    public static void main(String[] args) throws InterruptedException {
+        int n = 2_000_000;
+        for (String name : new String[] {"BUSY_SPIN", "YIELD", "PARK"}) {
+            for (boolean multi : new boolean[] {false, true}) {
+                WaitStrategy wait = waitStrategy(name);
+                RingBuffer<long[]> ring = new RingBuffer<>(1024, () -> new long[1], multi);
+                Thread producer = new Thread(() -> {
+                    for (int i = 0; i < n; i++) {
+                        long seq = ring.next(wait);
+                        ring.get(seq)[0] = System.nanoTime();
+                        ring.publish(seq);
+                        if ((i & 15) == 0) {    //let the ring drain now and then so we time the hand-off, not the queue
+                            long until = System.nanoTime() + 2_000;
+                            while (System.nanoTime() < until) Thread.onSpinWait();
+                        }
+                    }
+                });
+                long[] latency = new long[n];
+                long start = System.nanoTime();
+                producer.start();
+                for (long seq = 0; seq < n; seq++) {
+                    long sent = ring.waitFor(seq, wait)[0];
+                    latency[(int) seq] = System.nanoTime() - sent;
+                    ring.release(seq);
+                }
+                producer.join();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                Arrays.sort(latency);
+                System.out.printf("%-9s %s  %5.1f M/s   hand-off p50 %5d ns  p99 %6d ns\n", name, multi ? "MPSC" : "SPSC",
+                    n / seconds / 1e6, latency[n / 2], latency[(int) (n * 0.99)]);
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+import java.util.Arrays;
+
+/**
+ * RiskEngine is the pre-trade check on the account in config.txt (accountNumber, availableCash).
+ *
+ * It keeps a running account: cash, and per symbol the position and the price it was last
+ * traded at, together with the totals below.  Every fill booked into AllHoldings updates it
+ * (onFill), and allows() answers "may this order be placed?" from the totals without looking at
+ * any lots, so both are O(1) and the check can sit right in front of every order.
+ *
+ *   gross exposure    sum of |shares x price| over all positions    <= riskMaxGrossExposure
+ *   net exposure      |sum of shares x price|                       <= riskMaxNetExposure
+ *   position size     |shares| in any one symbol                    <= riskMaxShares
+ *   buying power      cash - riskShortMargin x short market value   >= 0
+ *
+ * Buying power is for a cash account: longs are paid for in full, and a short's proceeds plus
+ * (riskShortMargin - 1) of its value must stay in the account (Reg T, riskShortMargin = 1.5).
+ * Orders that only reduce a position are always allowed.
+ *
+ * @version v1
+ */
+public class RiskEngine
+{
+    //one symbol's position and the price it was last traded at
+    private static class Exposure {
+        int shares = 0;
+        double price = 0.0;
+    }
+
+    private Exposure[] exposures = new Exposure[16];   // indexed by Symbols id
+    private final String accountNumber;
+    private final double startingCash;
+    private final double maxGross;
+    private final double maxNet;
+    private final int maxShares;
+    private final double shortMargin;
+
+    private double cash;
+    private double gross = 0.0;
+    private double net = 0.0;
+    private double shortValue = 0.0;
+
+    private long numChecks = 0;
+    private long numRejects = 0;
+    private String rejectReason = "";
+
+
+
+    /**
+     * Reads the account and limits from config.txt.
+     */
+    public RiskEngine() {
+        this(Tools.getConfig("accountNumber"),
+             Double.parseDouble(Tools.getConfig("availableCash")),
+             Double.parseDouble(Tools.getConfig("riskMaxGrossExposure")),
+             Double.parseDouble(Tools.getConfig("riskMaxNetExposure")),
+             Integer.parseInt(Tools.getConfig("riskMaxShares")),
+             Double.parseDouble(Tools.getConfig("riskShortMargin")));
+    }
+
+    public RiskEngine(String accountNumber, double availableCash, double maxGross, double maxNet, int maxShares, double shortMargin) {
+        this.accountNumber = accountNumber;
+        this.startingCash = availableCash;
+        this.cash = availableCash;
+        this.maxGross = maxGross;
+        this.maxNet = maxNet;
+        this.maxShares = maxShares;
+        this.shortMargin = shortMargin;
+    }
+
+
+
+    /**
+     * The pre-trade check.  shares is signed (+ buy, - sell or sell short), price is the expected fill.
+     *
+     * @return true if the order may be placed, otherwise false and getRejectReason() says why
+     */
+    public boolean allows(String symbol, int shares, double price) {
+        return allows(Symbols.id(symbol), shares, price);
+    }
+
+    public boolean allows(int symbolId, int shares, double price) {
+        numChecks++;
+        Exposure e = (symbolId < exposures.length) ? exposures[symbolId] : null;
+        int oldShares = (e == null) ? 0 : e.shares;
+        double oldPrice = (e == null) ? 0.0 : e.price;
+        int newShares = oldShares + shares;
+
+        //reducing a position never adds risk
+        if (Math.abs(newShares) <= Math.abs(oldShares) && Integer.signum(newShares) != -Integer.signum(oldShares)) {
+            return true;
+        }
+
+        double newGross = gross - Math.abs(oldShares) * oldPrice + Math.abs(newShares) * price;
+        double newNet = net - oldShares * oldPrice + newShares * price;
+        double newShort = shortValue - Math.max(0, -oldShares) * oldPrice + Math.max(0, -newShares) * price;
+        double newCash = cash - shares * price;
+        double buyingPower = newCash - shortMargin * newShort;
+
+        if (Math.abs(newShares) > maxShares) {
+            return reject(String.format("%s position of %d shares is over the %d share limit", Symbols.name(symbolId), newShares, maxShares));
+        }
+        if (newGross > maxGross) {
+            return reject(String.format("gross exposure %.2f is over the %.2f limit", newGross, maxGross));
+        }
+        if (Math.abs(newNet) > maxNet) {
+            return reject(String.format("net exposure %.2f is over the %.2f limit", newNet, maxNet));
+        }
+        if (buyingPower < 0) {
+            return reject(String.format("not enough buying power, %.2f short", -buyingPower));
+        }
+        return true;
+    }
+
+    private boolean reject(String reason) {
+        numRejects++;
+        rejectReason = reason;
+        return false;
+    }
+
+
+
+    /**
+     * Books a fill.  shares is signed (+ bought, - sold).
+     */
+    public void onFill(String symbol, int shares, double price) {
+        onFill(Symbols.id(symbol), shares, price);
+    }
+
+    public void onFill(int symbolId, int shares, double price) {
+        if (shares == 0) return;
+        if (symbolId >= exposures.length) exposures = Arrays.copyOf(exposures, Math.max(symbolId + 1, exposures.length * 2));
+        if (exposures[symbolId] == null) exposures[symbolId] = new Exposure();
+        Exposure e = exposures[symbolId];
+        gross -= Math.abs(e.shares) * e.price;
+        net -= e.shares * e.price;
+        shortValue -= Math.max(0, -e.shares) * e.price;
+
+        cash -= shares * price;
+        e.shares += shares;
+        e.price = price;
+
+        gross += Math.abs(e.shares) * e.price;
+        net += e.shares * e.price;
+        shortValue += Math.max(0, -e.shares) * e.price;
+    }
+
+    //money in or out of the account that is not a trade, e.g. the dividend a short pays
+    public void onCash(double amount) {
+        cash += amount;
+    }
+
+
+
+    public String getAccountNumber() { return accountNumber; }
+    public double getCash() { return cash; }
+    public double getGrossExposure() { return gross; }
+    public double getNetExposure() { return net; }
+    public double getBuyingPower() { return cash - shortMargin * shortValue; }
+    public long getNumChecks() { return numChecks; }
+    public long getNumRejects() { return numRejects; }
+    public String getRejectReason() { return rejectReason; }
+
+    public int getShares(String symbol) {
+        int symbolId = Symbols.id(symbol);
+        Exposure e = (symbolId < exposures.length) ? exposures[symbolId] : null;
+        return (e == null) ? 0 : e.shares;
+    }
+
+    public String toString() {
+        return String.format("Account %s\tstarting cash: %.2f\tcash: %.2f\tbuying power: %.2f\tgross: %.2f\tnet: %.2f\tchecks: %d\trejected: %d",
+            accountNumber, startingCash, cash, getBuyingPower(), gross, net, numChecks, numRejects);
+    }
+}
@@ -4,6 +4,7 @@ import java.time.LocalDate;
 
 public class SingleHolding {
     private String symbol;
+    private int symbolId;
     private boolean isOpen;
     private int numShares;
     private double avgCost;
@@ -15,9 +16,11 @@ public class SingleHolding {
     private double partialProfit;
     private double dividendAdjustment = 0.0;
     private boolean isSynthetic = false; // true for synthetic partial clones
+    private String openReason = "";      // reason code of the strategy that opened the lot (G0, G3, P0...)
 
     public SingleHolding(String symbol, int numShares, double avgCost, LocalDate dateOpened) {
         this.symbol = symbol;
+        this.symbolId = Symbols.id(symbol);
         this.numShares = numShares;
         this.avgCost = avgCost;
         this.dateOpened = dateOpened;
@@ -26,6 +29,20 @@ public class SingleHolding {
         this.partialProfit = 0.0;
     }
 
+    //a lot or partial close as it stands in a TradeLedger, see TradeLedger.getHolding()
+    SingleHolding(String symbol, int numShares, double avgCost, LocalDate dateOpened, LocalDate dateClosed, double closePrice,
+                  double profit, double partialProfit, double dividendAdjustment, boolean isOpen, boolean isSynthetic, String openReason) {
+        this(symbol, numShares, avgCost, dateOpened);
+        this.dateClosed = dateClosed;
+        this.closePrice = closePrice;
+        this.profit = profit;
+        this.partialProfit = partialProfit;
+        this.dividendAdjustment = dividendAdjustment;
+        this.isOpen = isOpen;
+        this.isSynthetic = isSynthetic;
+        this.openReason = openReason;
+    }
+
     public void close(double closingPrice, LocalDate dateClosed) {
         if (!isOpen && !isSynthetic) throw new IllegalStateException("Position is already closed.");
         this.closePrice = closingPrice;
@@ -61,6 +78,7 @@ public class SingleHolding {
     public double getProfit() { return profit - dividendAdjustment; }
     public double getRawProfit() { return profit; }
     public String getSymbol() { return symbol; }
+    public int getSymbolId() { return symbolId; }
     public boolean isOpen() { return isOpen; }
     public int getNumShares() { return numShares; }
     public double getAvgCost() { return avgCost; }
@@ -69,6 +87,8 @@ public class SingleHolding {
     public double getPartialProfit() { return partialProfit - dividendAdjustment; }
     public boolean isSynthetic() { return isSynthetic; }
     public void markSynthetic() { this.isSynthetic = true; }
+    public String getOpenReason() { return openReason; }
+    public void setOpenReason(String openReason) { this.openReason = openReason; }
 
     @Override
     public String toString() {
@@ -0,0 +1,355 @@
+import java.io.BufferedReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * SweepCoordinator spreads a threshold sweep over several JVMs, on one host or a few.
+ *
+ * Every combination of sweepGrid (GREEN_* and SCARLET_* thresholds, written like walkForwardGrid)
+ * is one configuration, backtested over sweepStartDate to sweepEndDate.  The configurations are
+ * cut into units of sweepUnitSize and handed out to whichever SweepWorker asks next, so faster
+ * workers simply do more units.  Workers can join at any time, from any host that can reach
+ * sweepPort and sees the same tick files.
+ *
+ * The protocol is one tab delimited line at a time:
+ *
+ *     worker:       HELLO  name
+ *     coordinator:  JOB  symbol  startingDate  endingDate  numShares  vectorized
+ *     worker:       READY  numQuotes
+ *     coordinator:  UNIT  id  count,  then count lines of  CONFIG  index  NAME=value;NAME=value
+ *     worker:       RESULT  index  profit  realizedProfit  trades  wins  maxDD   (one per CONFIG, as each is done)
+ *                   or  FAILED  index  message                                (the backtest threw)
+ *     worker:       DONE  id
+ *     coordinator:  BYE                                                         (when every result is in)
+ *
+ * A worker that drops its connection, says nothing for sweepWorkerTimeoutSec once it is READY, or
+ * breaks the protocol (e.g. a RESULT for a configuration that is not in its unit) is given up on, and
+ * the configurations of its unit with no result yet go back to the front of the queue for the next
+ * worker.  The first of them is the one the worker was running, since a unit is run in order, and
+ * is charged with the attempt:  after sweepMaxAttempts it is recorded as failed instead of being
+ * handed out again, so one configuration that kills its worker can not take down every worker in
+ * turn.  A configuration's first result (or failure) is kept, so nothing is counted twice.
+ *
+ * The results are printed best first and written to logs\sweep.txt.
+ *
+ *     java SweepCoordinator [numLocalWorkers]     also starts numLocalWorkers SweepWorker JVMs on this host
+ *
+ * @version v1
+ */
+public class SweepCoordinator
+{
+    /**
+     * Configurations handed out together.
+     */
+    static final class Unit {
+        final int id;
+        final int[] configs;   // indexes into the grid
+
+        Unit(int id, int[] configs) {
+            this.id = id;
+            this.configs = configs;
+        }
+    }
+
+    static final String HEADER = "rank\tconfig\tprofit\trealized\ttrades\twins\tmaxDD";
+
+
+
+    private final List<Map<String, String>> grid;
+    private final String job;
+    private final int timeoutMs;
+    private final int maxAttempts;
+
+    private final BlockingDeque<Unit> pending = new LinkedBlockingDeque<>();
+    private final Map<Integer, String[]> results = new ConcurrentHashMap<>();   // by config index, the RESULT or FAILED fields
+    private final AtomicIntegerArray attempts;                                   // by config index, workers lost on it
+    private final CountDownLatch remaining;
+    private final AtomicInteger numWorkers = new AtomicInteger();
+    private final AtomicInteger numConnected = new AtomicInteger();
+    private final AtomicInteger numLost = new AtomicInteger();
+    private final AtomicInteger numReassigned = new AtomicInteger();
+    private volatile ServerSocket server = null;
+
+
+
+    public SweepCoordinator(List<Map<String, String>> grid, int unitSize, String symbol, String startingDate, String endingDate,
+                            int numShares, boolean vectorized, int timeoutSec, int maxAttempts) {
+        this.grid = grid;
+        this.job = String.join("\t", "JOB", symbol, startingDate, endingDate, String.valueOf(numShares), String.valueOf(vectorized));
+        this.timeoutMs = timeoutSec * 1000;
+        this.maxAttempts = maxAttempts;
+        this.remaining = new CountDownLatch(grid.size());
+        this.attempts = new AtomicIntegerArray(grid.size());
+
+        int id = 0;
+        for (int from = 0; from < grid.size(); from += unitSize) {
+            int[] configs = new int[Math.min(unitSize, grid.size() - from)];
+            for (int k = 0; k < configs.length; k++) configs[k] = from + k;
+            pending.add(new Unit(id++, configs));
+        }
+    }
+
+
+
+    /**
+     * Opens port, so workers started before run() can already connect.
+     */
+    public void bind(int port) throws IOException {
+        if (server == null) server = new ServerSocket(port);
+    }
+
+    /**
+     * Serves workers on port until every configuration has a result.
+     */
+    public void run(int port) throws IOException, InterruptedException {
+        bind(port);
+        Thread acceptor = new Thread(() -> {
+            while (true) {
+                try {
+                    Socket socket = server.accept();
+                    Thread t = new Thread(() -> serve(socket), "SweepCoordinator-" + socket.getRemoteSocketAddress());
+                    t.setDaemon(true);
+                    t.start();
+                } catch (IOException e) {
+                    return;   //closed, the sweep is done
+                }
+            }
+        }, "SweepCoordinator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        long done = 0;
+        while (!remaining.await(10, TimeUnit.SECONDS)) {
+            long now = grid.size() - remaining.getCount();
+            if (now != done) System.out.printf("SweepCoordinator: %d of %d configurations done%n", now, grid.size());
+            else if (numConnected.get() == 0) System.out.printf("SweepCoordinator: waiting for workers, %d of %d configurations done%n", now, grid.size());
+            done = now;
+        }
+        server.close();
+    }
+
+
+
+    //one worker, from HELLO to BYE or until it is lost
+    private void serve(Socket socket) {
+        String name = socket.getRemoteSocketAddress().toString();
+        Unit unit = null;
+        boolean connected = false;
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            String[] hello = expect(in, "HELLO");
+            if (hello.length > 1) name = hello[1];
+            numWorkers.incrementAndGet();
+            numConnected.incrementAndGet();
+            connected = true;
+            send(out, job);
+            expect(in, "READY");   //reading the tape can take a while, and holds no unit
+            socket.setSoTimeout(timeoutMs);
+            System.out.println("SweepCoordinator: " + name + " is ready");
+
+            while (remaining.getCount() > 0) {
+                unit = pending.poll(200, TimeUnit.MILLISECONDS);
+                if (unit == null) continue;
+                StringBuilder sb = new StringBuilder();
+                sb.append("UNIT\t").append(unit.id).append('\t').append(unit.configs.length);
+                for (int c : unit.configs) sb.append("\nCONFIG\t").append(c).append('\t').append(formatParams(grid.get(c)));
+                send(out, sb.toString());
+
+                String[] f;
+                while (!(f = readLine(in))[0].equals("DONE")) {
+                    boolean isResult = f[0].equals("RESULT") && f.length >= 7;
+                    boolean isFailure = f[0].equals("FAILED") && f.length >= 2;
+                    if (!isResult && !isFailure) throw new IOException("expected RESULT, got " + f[0]);
+                    int c = Integer.parseInt(f[1]);
+                    if (!contains(unit.configs, c)) throw new IOException("a result for configuration " + c + ", not in unit " + unit.id);
+                    if (isFailure) System.out.println("SweepCoordinator: configuration " + c + " failed on " + name + ", "
+                        + (f.length > 2 ? f[2] : ""));
+                    record(c, f);
+                }
+                if (f.length < 2 || !f[1].equals(String.valueOf(unit.id))) throw new IOException("DONE for the wrong unit");
+                unit = null;
+            }
+            send(out, "BYE");
+        } catch (IOException | RuntimeException e) {
+            numLost.incrementAndGet();
+            System.out.println("SweepCoordinator: lost " + name + ", " + e.getMessage());
+            Tools.log("SweepCoordinator\tlost\t" + name + "\t" + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (connected) numConnected.decrementAndGet();
+            if (unit != null) requeue(unit);
+        }
+    }
+
+    private static boolean contains(int[] configs, int c) {
+        for (int k : configs) if (k == c) return true;
+        return false;
+    }
+
+    //the first result or failure of configuration c is the one kept
+    private void record(int c, String[] fields) {
+        if (results.putIfAbsent(c, fields) == null) remaining.countDown();
+    }
+
+    //the configurations of unit with no result yet go to the front of the queue, but the one the lost
+    //worker was running is given up on after maxAttempts
+    private void requeue(Unit unit) {
+        int[] missing = Arrays.stream(unit.configs).filter(c -> !results.containsKey(c)).toArray();
+        if (missing.length == 0) return;
+        int running = missing[0];
+        if (attempts.incrementAndGet(running) >= maxAttempts) {
+            System.out.printf("SweepCoordinator: configuration %d failed, %d worker(s) lost on it%n", running, maxAttempts);
+            Tools.log("SweepCoordinator\tfailed\t" + running + "\t" + formatParams(grid.get(running)));
+            record(running, new String[] {"FAILED", String.valueOf(running), maxAttempts + " worker(s) lost on it"});
+            missing = Arrays.copyOfRange(missing, 1, missing.length);
+            if (missing.length == 0) return;
+        }
+        pending.addFirst(new Unit(unit.id, missing));
+        numReassigned.incrementAndGet();
+        System.out.printf("SweepCoordinator: unit %d reassigned, %d configuration(s)%n", unit.id, missing.length);
+    }
+
+    private static void send(PrintWriter out, String line) throws IOException {
+        out.print(line);
+        out.print('\n');
+        out.flush();
+        if (out.checkError()) throw new SocketException("unable to write to the worker");
+    }
+
+    private static String[] readLine(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        if (line == null) throw new SocketException("the worker closed the connection");
+        return line.split("\t");
+    }
+
+    private static String[] expect(BufferedReader in, String what) throws IOException {
+        String[] f = readLine(in);
+        if (!f[0].equals(what)) throw new IOException("expected " + what + ", got " + f[0]);
+        return f;
+    }
+
+    static String formatParams(Map<String, String> params) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> e : params.entrySet()) {
+            if (sb.length() > 0) sb.append(';');
+            sb.append(e.getKey()).append('=').append(e.getValue());
+        }
+        return sb.toString();
+    }
+
+
+
+    /**
+     * Every configuration with a result, best profit first.
+     */
+    public List<String> ranked() {
+        ArrayList<Integer> order = new ArrayList<>();
+        for (Map.Entry<Integer, String[]> e : results.entrySet()) {
+            if (e.getValue()[0].equals("RESULT")) order.add(e.getKey());
+        }
+        order.sort((a, b) -> {
+            int byProfit = Double.compare(Double.parseDouble(results.get(b)[2]), Double.parseDouble(results.get(a)[2]));
+            return byProfit != 0 ? byProfit : Integer.compare(a, b);
+        });
+        ArrayList<String> rows = new ArrayList<>();
+        for (int c : order) {
+            String[] f = results.get(c);
+            rows.add(String.join("\t", String.valueOf(rows.size() + 1), formatParams(grid.get(c)), f[2], f[3], f[4], f[5], f[6]));
+        }
+        return rows;
+    }
+
+    /**
+     * The configurations that failed, and why.
+     */
+    public List<String> failed() {
+        ArrayList<String> rows = new ArrayList<>();
+        for (int c = 0; c < grid.size(); c++) {
+            String[] f = results.get(c);
+            if (f != null && f[0].equals("FAILED")) rows.add(String.join("\t", "failed", formatParams(grid.get(c)), f.length > 2 ? f[2] : ""));
+        }
+        return rows;
+    }
+
+    public String toString() {
+        return String.format("SweepCoordinator: %d configurations, %d failed, %d worker(s), %d lost, %d unit(s) reassigned",
+            grid.size(), failed().size(), numWorkers.get(), numLost.get(), numReassigned.get());
+    }
+
+
+
+    public static void main(String[] args) throws Exception {
+        List<Map<String, String>> grid = WalkForward.parseGrid(Tools.getConfig("sweepGrid"));
+        for (String name : grid.get(0).keySet()) {
+            if (!name.startsWith("GREEN_") && !name.startsWith("SCARLET_")) {
+                System.out.println("SweepCoordinator Error 77: " + name + " in sweepGrid is not a GREEN_ or SCARLET_ threshold");
+                return;
+            }
+        }
+        int port = Integer.parseInt(Tools.getConfig("sweepPort"));
+        int numLocal = args.length > 0 ? Integer.parseInt(args[0]) : Tools.getConfigInt("sweepLocalWorkers", 0);
+        boolean vectorized = Tools.getConfig("enable_VectorBacktest").trim().equalsIgnoreCase("YES");
+        SweepCoordinator sc = new SweepCoordinator(grid, Integer.parseInt(Tools.getConfig("sweepUnitSize")), Tools.getConfig("symbol"),
+            Tools.getConfig("sweepStartDate"), Tools.getConfig("sweepEndDate"), 1000, vectorized,
+            Integer.parseInt(Tools.getConfig("sweepWorkerTimeoutSec")), Integer.parseInt(Tools.getConfig("sweepMaxAttempts")));
+        System.out.printf("SweepCoordinator: %d configurations in %d units on port %d%n", grid.size(), sc.pending.size(), port);
+
+        //workers on this host, the same classes from the same directory
+        ArrayList<Process> local = new ArrayList<>();
+        long timer = System.nanoTime();
+        try {
+            sc.bind(port);   //before the workers start, or a quick one is refused
+            for (int w = 1; w <= numLocal; w++) {
+                local.add(new ProcessBuilder(ProcessHandle.current().info().command().orElse("java"), "-cp", System.getProperty("java.class.path"),
+                    "SweepWorker", "localhost", String.valueOf(port), "local-" + w).inheritIO().start());
+            }
+            sc.run(port);
+        } catch (IOException e) {
+            System.out.println("SweepCoordinator Error 78: unable to serve on port " + port + ", " + e.getMessage());
+            return;
+        } finally {
+            for (Process p : local) {
+                if (!p.waitFor(5, TimeUnit.SECONDS)) p.destroy();
+            }
+        }
+
+        List<String> rows = sc.ranked();
+        List<String> failed = sc.failed();
+        System.out.printf("%s, in %.1f s%n", sc, (System.nanoTime() - timer) / 1e9);
+        System.out.println(HEADER);
+        for (String row : rows.subList(0, Math.min(10, rows.size()))) System.out.println(row);
+        for (String row : failed) System.out.println(row);
+
+        String filename = Tools.getConfig("logsDirectory") + "\\sweep.txt";
+        try (PrintWriter out = new PrintWriter(new FileWriter(filename))) {
+            out.println(HEADER);
+            for (String row : rows) out.println(row);
+            for (String row : failed) out.println(row);
+            out.println();
+            out.println(sc);
+        } catch (IOException e) {
+            System.out.println("SweepCoordinator Error 78: unable to write " + filename);
+        }
+    }
+}
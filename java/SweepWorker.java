@@ -0,0 +1,152 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SweepWorker runs the backtests a SweepCoordinator hands it and streams the results back.
+ *
+ * It connects to the coordinator (trying again for a while if it is not listening yet), is told the symbol, dates and number of shares of the sweep, and
+ * reads that quote tape itself from the tick files in tickDirectory (TickStoreQuoteSource), so the
+ * only thing sent over the socket is the thresholds to try and the results.  Every worker must see
+ * the same tick files and marketDates.txt, on the same host or a shared directory.
+ *
+ * The worker then takes units of configurations until the coordinator says BYE, one result line per
+ * configuration as soon as it is done (see SweepCoordinator for the protocol).
+ *
+ *     java SweepWorker host port [name]
+ *
+ * @version v1
+ */
+public class SweepWorker
+{
+    private static final int CONNECT_ATTEMPTS = 20;   // about 30 s with the backoff
+
+    private final String host;
+    private final int port;
+    private final String name;
+
+
+
+    public SweepWorker(String host, int port, String name) {
+        this.host = host;
+        this.port = port;
+        this.name = name;
+    }
+
+
+
+    /**
+     * Works until the coordinator says BYE or goes away.  Returns the number of configurations run.
+     */
+    public int work() throws IOException {
+        int numRun = 0;
+        try (Socket socket = connect();
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            send(out, "HELLO\t" + name);
+
+            //JOB  symbol  startingDate  endingDate  numShares  vectorized
+            String[] job = in.readLine().split("\t");
+            if (!job[0].equals("JOB")) throw new IOException("expected JOB, got " + job[0]);
+            long timer = System.nanoTime();
+            QuoteTape tape = loadTape(job[1], job[2], job[3]);
+            Backtest backtest = new Backtest(job[1], Integer.parseInt(job[4]), Boolean.parseBoolean(job[5]));
+            send(out, "READY\t" + tape.getNumQuotes());
+            System.out.printf("SweepWorker %s: %s, read in %.1f s%n", name, tape, (System.nanoTime() - timer) / 1e9);
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] f = line.split("\t");
+                if (f[0].equals("BYE")) break;
+                if (!f[0].equals("UNIT")) throw new IOException("expected UNIT, got " + f[0]);
+
+                //UNIT  id  count, then count lines of  CONFIG  index  NAME=value;NAME=value
+                int count = Integer.parseInt(f[2]);
+                for (int k = 0; k < count; k++) {
+                    String[] c = in.readLine().split("\t", 3);
+                    try {
+                        Backtest.Result r = backtest.run(tape.getDays(), parseParams(c.length > 2 ? c[2] : ""));
+                        send(out, String.format("RESULT\t%s\t%.2f\t%.2f\t%d\t%d\t%.2f", c[1], r.getProfit(), r.getRealizedProfit(),
+                            r.getNumTrades(), r.getNumWins(), r.getMaxDrawdown()));
+                    } catch (RuntimeException e) {
+                        //a configuration the backtest can not run is reported, the worker carries on with the next
+                        send(out, "FAILED\t" + c[1] + "\t" + String.valueOf(e).replace('\t', ' ').replace('\n', ' '));
+                    }
+                    numRun++;
+                }
+                send(out, "DONE\t" + f[1]);
+            }
+        }
+        return numRun;
+    }
+
+    //the coordinator may not be listening yet, so a refused connection is tried again for a while
+    private Socket connect() throws IOException {
+        long backoffMs = 100;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return new Socket(host, port);
+            } catch (ConnectException e) {
+                if (attempt == CONNECT_ATTEMPTS) throw e;
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                backoffMs = Math.min(backoffMs * 2, 2000);
+            }
+        }
+    }
+
+    private static void send(PrintWriter out, String line) throws IOException {
+        out.print(line);
+        out.print('\n');
+        out.flush();
+        if (out.checkError()) throw new IOException("the coordinator has gone away");
+    }
+
+
+
+    //the sweep's tape, straight from the tick files
+    static QuoteTape loadTape(String symbol, String startingDate, String endingDate) {
+        MarketDates md = new MarketDates();
+        md.loadFromFile("../data/marketDates.txt", startingDate, endingDate);
+        QuoteSource source = new TickStoreQuoteSource(new TickStore(Tools.getConfig("tickDirectory")));
+        return QuoteTape.load(source, symbol, md);
+    }
+
+    //NAME=value;NAME=value, as SweepCoordinator.formatParams writes them
+    static Map<String, String> parseParams(String s) {
+        LinkedHashMap<String, String> params = new LinkedHashMap<>();
+        for (String pair : s.split(";")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) params.put(pair.substring(0, eq), pair.substring(eq + 1));
+        }
+        return params;
+    }
+
+
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("usage: java SweepWorker host port [name]");
+            return;
+        }
+        String name = args.length > 2 ? args[2] : "worker-" + ProcessHandle.current().pid();
+        try {
+            int numRun = new SweepWorker(args[0], Integer.parseInt(args[1]), name).work();
+            System.out.println("SweepWorker " + name + ": " + numRun + " configurations run");
+        } catch (IOException | RuntimeException e) {
+            System.out.println("SweepWorker Error 79: " + name + ", " + e);
+        }
+    }
+}
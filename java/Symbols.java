@@ -0,0 +1,54 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Symbols is the program-wide symbol table.  Every ticker is given a small int id (0, 1, 2...)
+ * the first time it is seen, and keeps it for the life of the program.
+ *
+ * A ticker is looked up once, when a quote is decoded (Quote.getSymbolId) or an object is set up
+ * for a symbol.  After that positions, statistics and risk are kept in arrays indexed by the id,
+ * so comparing symbols is an int compare and finding a symbol's state needs no hashing.
+ *
+ * Ids are handed out under a lock, so the capture thread and the trading thread can both
+ * register symbols; looking up an existing symbol or its name never locks.
+ *
+ * @version v1
+ */
+public final class Symbols
+{
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[16];
+    private static volatile int count = 0;
+
+    private Symbols() {
+    }
+
+
+
+    //the id of symbol, registering it if it is new; -1 for null
+    public static int id(String symbol) {
+        if (symbol == null) return -1;
+        Integer id = ids.get(symbol);
+        return (id != null) ? id : register(symbol);
+    }
+
+    private static synchronized int register(String symbol) {
+        Integer id = ids.get(symbol);
+        if (id != null) return id;
+        if (count == names.length) names = Arrays.copyOf(names, count * 2);
+        names[count] = symbol;
+        ids.put(symbol, count);
+        return count++;
+    }
+
+
+
+    public static String name(int id) {
+        return (id >= 0 && id < count) ? names[id] : null;
+    }
+
+    //number of symbols registered, every id is below this
+    public static int size() {
+        return count;
+    }
+}
@@ -0,0 +1,420 @@
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SyntheticTicks makes up intraday quotes for any number of symbols, so the Monkey, the capture
+ * path and the backtests can be run and load tested without the MMEngine and its MySQL data.
+ *
+ * Prices follow geometric Brownian motion with jumps (synthDrift, synthVolatility, synthJumpsPerDay,
+ * synthJumpMean, synthJumpVolatility, all per year except the jump rate).  Each market day first
+ * gets an opening and a closing level (the open gaps away from the previous close by
+ * synthGapVolatility), then the day's path is drawn from the open and bridged to that close.
+ * The levels are one chain over the weekdays, anchored at synthStartPrice on synthStartDate and
+ * walked from there both ways, so a day's levels do not depend on the dates being generated.
+ * synthTicksPerDay ticks are spread evenly over the session times in MarketDates; the last tick is
+ * at the close, which is where the Monkey ends its day.  Every tick has a bid/ask up to
+ * synthSpreadCents wide, sizes, and the day's running high and low, open and the previous close,
+ * the same fields as a Quote.
+ *
+ * Everything follows from synthSeed:  a symbol-day (its levels and its ticks) is generated from its
+ * own SplittableRandom, so the same seed always gives the same ticks, in any order, over any range
+ * of dates and on any number of threads.
+ *
+ * The ticks go either into the TickStore (one file per day), or straight to the Monkey through
+ * source(), a QuoteSource that answers like the MMEngine.
+ *
+ *     java SyntheticTicks [startingDate endingDate]    writes the tick files
+ *     java SyntheticTicks bench                        measures the generator
+ *
+ * @version v1
+ */
+public class SyntheticTicks
+{
+    private static final double TRADING_DAYS = 252.0;
+
+    /**
+     * One symbol-day of ticks, held as parallel arrays and re-used from day to day.
+     */
+    public static final class Day {
+        public int size = 0;
+        public String symbol;
+        public String date;
+        public long[] epochSec;
+        public double[] price, bid, ask, high, low;
+        public long[] volume;
+        public int[] bidSize, askSize;
+        public double open, close;       // the day's open, the previous day's close
+
+        public Day(int capacity) {
+            epochSec = new long[capacity];
+            price = new double[capacity];
+            bid = new double[capacity];
+            ask = new double[capacity];
+            high = new double[capacity];
+            low = new double[capacity];
+            volume = new long[capacity];
+            bidSize = new int[capacity];
+            askSize = new int[capacity];
+        }
+
+        //copies tick i into t
+        public void get(int i, TickStore.Tick t) {
+            t.epochSec = epochSec[i];
+            t.symbol = symbol;
+            t.price = price[i];
+            t.bid = bid[i];
+            t.ask = ask[i];
+            t.high = high[i];
+            t.low = low[i];
+            t.close = close;
+            t.open = open;
+            t.volume = volume[i];
+            t.bidSize = bidSize[i];
+            t.askSize = askSize[i];
+        }
+
+        //the first tick after epoch second sec, -1 if there is none
+        public int after(long sec) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (epochSec[mid] <= sec) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo < size ? lo : -1;
+        }
+    }
+
+
+
+    private final String[] symbols;
+    private final List<MarketDates.MarketDate> dates;
+    private final long seed;
+    private final int ticksPerDay;
+    private final double drift, volatility, jumpsPerDay, jumpMean, jumpVolatility, gapVolatility;
+    private final int spreadCents;
+    private final double[][] dayOpen;    // [symbol][day]
+    private final double[][] dayClose;
+    private final double[][] prevClose;  // the chain's close the weekday before
+
+
+
+    /**
+     * Reads the synth* settings from config.txt.
+     */
+    public SyntheticTicks(String[] symbols, List<MarketDates.MarketDate> dates) {
+        this(symbols, dates, Long.parseLong(Tools.getConfig("synthSeed")), Integer.parseInt(Tools.getConfig("synthTicksPerDay")),
+             LocalDate.parse(Tools.getConfig("synthStartDate").trim()),
+             Double.parseDouble(Tools.getConfig("synthStartPrice")), Double.parseDouble(Tools.getConfig("synthDrift")),
+             Double.parseDouble(Tools.getConfig("synthVolatility")), Double.parseDouble(Tools.getConfig("synthJumpsPerDay")),
+             Double.parseDouble(Tools.getConfig("synthJumpMean")), Double.parseDouble(Tools.getConfig("synthJumpVolatility")),
+             Double.parseDouble(Tools.getConfig("synthGapVolatility")), Integer.parseInt(Tools.getConfig("synthSpreadCents")));
+    }
+
+    public SyntheticTicks(String[] symbols, List<MarketDates.MarketDate> dates, long seed, int ticksPerDay,
+                          LocalDate startDate, double startPrice, double drift, double volatility, double jumpsPerDay, double jumpMean, double jumpVolatility,
+                          double gapVolatility, int spreadCents) {
+        this.symbols = symbols.clone();
+        this.dates = new ArrayList<>(dates);
+        this.seed = seed;
+        this.ticksPerDay = Math.max(2, ticksPerDay);
+        this.drift = drift;
+        this.volatility = volatility;
+        this.jumpsPerDay = jumpsPerDay;
+        this.jumpMean = jumpMean;
+        this.jumpVolatility = jumpVolatility;
+        this.gapVolatility = gapVolatility;
+        this.spreadCents = Math.max(1, spreadCents);
+
+        //the daily levels:  the chain's log close on every weekday from the earliest to the latest of
+        //startDate and the dates, then shifted so the close on startDate is startPrice
+        dayOpen = new double[symbols.length][dates.size()];
+        dayClose = new double[symbols.length][dates.size()];
+        prevClose = new double[symbols.length][dates.size()];
+        LocalDate first = startDate, last = startDate;
+        for (MarketDates.MarketDate md : dates) {
+            LocalDate date = LocalDate.parse(md.getDate());
+            if (date.isBefore(first)) first = date;
+            if (date.isAfter(last)) last = date;
+        }
+        int numDays = (int) (last.toEpochDay() - first.toEpochDay()) + 1;
+        double[] logClose = new double[numDays];
+        double[] step = new double[2];
+        for (int s = 0; s < symbols.length; s++) {
+            double x = 0.0;
+            for (int k = 0; k < numDays; k++) {
+                LocalDate date = first.plusDays(k);
+                if (k > 0 && date.getDayOfWeek().getValue() <= 5) {
+                    levels(s, date, step);
+                    x += step[0] + step[1];
+                }
+                logClose[k] = x;   //a weekend keeps Friday's close
+            }
+            double shift = Math.log(startPrice) - logClose[(int) (startDate.toEpochDay() - first.toEpochDay())];
+            for (int d = 0; d < dates.size(); d++) {
+                LocalDate date = LocalDate.parse(dates.get(d).getDate());
+                int k = (int) (date.toEpochDay() - first.toEpochDay());
+                double close = logClose[k] + shift;
+                levels(s, date, step);
+                dayClose[s][d] = round(Math.exp(close));
+                dayOpen[s][d] = round(Math.exp(close - step[1]));
+                prevClose[s][d] = round(Math.exp(close - step[1] - step[0]));
+            }
+        }
+    }
+
+
+
+    //the gap (into[0]) and the move from open to close (into[1]) of symbol s on date, in logs;
+    //~ keeps this stream apart from the one of the day's ticks
+    private void levels(int s, LocalDate date, double[] into) {
+        SplittableRandom rng = new SplittableRandom(mix(seed, symbols[s].hashCode(), ~date.toEpochDay()));
+        double dt = 1.0 / TRADING_DAYS;
+        into[0] = gapVolatility * rng.nextGaussian();
+        into[1] = (drift - 0.5 * volatility * volatility) * dt + volatility * Math.sqrt(dt) * rng.nextGaussian();
+        if (rng.nextDouble() < jumpsPerDay) into[1] += jumpMean + jumpVolatility * rng.nextGaussian();
+    }
+
+
+
+    //a well mixed 64 bit seed for symbol-day, SplittableRandom's own mixing constant
+    private static long mix(long seed, int symbolHash, long day) {
+        long z = seed + 0x9E3779B97F4A7C15L * (symbolHash + 1L) + 0xBF58476D1CE4E5B9L * (day + 1L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    //exp() of a tick's return, nearly always small enough for the series (error below 1e-13)
+    private static double exp(double r) {
+        if (r > 1e-3 || r < -1e-3) return Math.exp(r);
+        return 1.0 + r * (1.0 + r * (0.5 + r * (1.0 / 6.0)));
+    }
+
+    private static double round(double price) {
+        return Math.round(price * 100.0) / 100.0;
+    }
+
+
+
+    /**
+     * Fills into with the ticks of symbol s on market day d (indexes into the symbols and dates).
+     */
+    public Day generate(int s, int d, Day into) {
+        MarketDates.MarketDate md = dates.get(d);
+        LocalDate date = LocalDate.parse(md.getDate());
+        long first = date.atTime(LocalTime.parse(md.getMarketOpenTime())).atZone(ZoneId.systemDefault()).toEpochSecond();
+        long last = date.atTime(LocalTime.parse(md.getMarketCloseTime())).atZone(ZoneId.systemDefault()).toEpochSecond();
+        SplittableRandom rng = new SplittableRandom(mix(seed, symbols[s].hashCode(), date.toEpochDay()));
+
+        int n = ticksPerDay;
+        double open = dayOpen[s][d];
+        double dt = 1.0 / (TRADING_DAYS * (n - 1));
+        double step = volatility * Math.sqrt(dt);
+        double mu = (drift - 0.5 * volatility * volatility) * dt;
+        double jumpChance = jumpsPerDay / (n - 1);
+
+        //the log returns from tick to tick, kept in price[] for now
+        double x = 0.0;
+        double[] path = into.price;
+        path[0] = 0.0;
+        for (int i = 1; i < n; i++) {
+            double r = mu + step * rng.nextGaussian();
+            if (rng.nextDouble() < jumpChance) r += jumpMean + jumpVolatility * rng.nextGaussian();
+            path[i] = r;
+            x += r;
+        }
+        //each return is nudged so the path is bridged to the day's close
+        double pull = (Math.log(dayClose[s][d] / open) - x) / (n - 1);
+
+        double hi = open, lo = open, level = open;
+        long span = last - first;
+        for (int i = 0; i < n; i++) {
+            if (i > 0) level *= exp(path[i] + pull);
+            double p = round(level);
+            int spread = 1 + rng.nextInt(spreadCents);
+            double b = round(p - 0.01 * rng.nextInt(spread + 1));
+            if (p > hi) hi = p;
+            if (p < lo) lo = p;
+            into.price[i] = p;
+            into.bid[i] = b;
+            into.ask[i] = round(b + 0.01 * spread);
+            into.high[i] = hi;
+            into.low[i] = lo;
+            into.epochSec[i] = first + span * i / (n - 1);
+            into.volume[i] = 100L * (1 + rng.nextInt(20));
+            into.bidSize[i] = 1 + rng.nextInt(100);
+            into.askSize[i] = 1 + rng.nextInt(100);
+        }
+        into.size = n;
+        into.symbol = symbols[s];
+        into.date = md.getDate();
+        into.open = open;
+        into.close = prevClose[s][d];
+        return into;
+    }
+
+    public Day newDay() {
+        return new Day(ticksPerDay);
+    }
+
+
+
+    /**
+     * Writes every symbol's ticks for market day d to the TickStore, in time order, replacing the
+     * day's file.  Returns the number of ticks written.
+     */
+    public long write(TickStore store, int d) throws IOException {
+        LocalDate date = LocalDate.parse(dates.get(d).getDate());
+        if (store.exists(date) && !store.file(date).delete()) {
+            throw new IOException("SyntheticTicks Error 74: unable to replace " + store.file(date));
+        }
+        Day[] day = new Day[symbols.length];
+        for (int s = 0; s < symbols.length; s++) day[s] = generate(s, d, newDay());
+
+        //the symbols share one time grid, so tick i of every symbol goes before tick i + 1
+        TickStore.Tick t = new TickStore.Tick();
+        try (TickStore.Writer out = store.openWriter(date)) {
+            for (int i = 0; i < ticksPerDay; i++) {
+                for (int s = 0; s < symbols.length; s++) {
+                    day[s].get(i, t);
+                    out.write(t);
+                }
+            }
+        }
+        return (long) ticksPerDay * symbols.length;
+    }
+
+
+
+    /**
+     * A QuoteSource that answers like the MMEngine, from the generated ticks:  the first tick after
+     * the requested time, or "null" after the last one.  The last symbol-day asked for is kept,
+     * so a day's chain of requests generates the day once.
+     */
+    public QuoteSource source() {
+        return new QuoteSource() {
+            private final Day day = newDay();
+            private String symbolDate = null;
+
+            public synchronized Vector<String> getQuote(String symbol, String theDate, String theTime) {
+                if (!(symbol + theDate).equals(symbolDate)) {
+                    int s = indexOf(symbol), d = dayIndex(theDate);
+                    if (s < 0 || d < 0) return new Vector<>(List.of("null"));
+                    generate(s, d, day);
+                    symbolDate = symbol + theDate;
+                }
+                LocalDate date = LocalDate.parse(theDate);
+                long sec = date.atTime(LocalTime.parse(theTime)).atZone(ZoneId.systemDefault()).toEpochSecond();
+                int i = day.after(sec);
+                if (i < 0) return new Vector<>(List.of("null"));
+
+                TickStore.Tick t = new TickStore.Tick();
+                day.get(i, t);
+                Vector<String> resp = new Vector<>(14);
+                resp.add(t.getDT());
+                resp.add(symbol);
+                resp.add("STK");
+                resp.add(String.format("%.2f", t.price));
+                resp.add("SYNTH");
+                resp.add(String.valueOf(t.volume));
+                resp.add(String.format("%.2f", t.bid));
+                resp.add(String.format("%.2f", t.ask));
+                resp.add(String.valueOf(t.bidSize));
+                resp.add(String.valueOf(t.askSize));
+                resp.add(String.format("%.2f", t.high));
+                resp.add(String.format("%.2f", t.low));
+                resp.add(String.format("%.2f", t.close));
+                resp.add(String.format("%.2f", t.open));
+                return resp;
+            }
+        };
+    }
+
+    private int indexOf(String symbol) {
+        for (int s = 0; s < symbols.length; s++) if (symbols[s].equals(symbol)) return s;
+        return -1;
+    }
+
+    private int dayIndex(String date) {
+        for (int d = 0; d < dates.size(); d++) if (dates.get(d).getDate().equals(date)) return d;
+        return -1;
+    }
+
+
+
+    public int getNumDays() {
+        return dates.size();
+    }
+
+    public int getNumSymbols() {
+        return symbols.length;
+    }
+
+
+
+    //generates every symbol-day on numThreads threads, returns ticks per second
+    public double benchmark(int numThreads) throws Exception {
+        AtomicLong checksum = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        long start = System.nanoTime();
+        try {
+            ArrayList<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                final int first = t;
+                futures.add(pool.submit(() -> {
+                    Day day = newDay();
+                    long sum = 0;
+                    for (int k = first; k < symbols.length * dates.size(); k += numThreads) {
+                        generate(k % symbols.length, k / symbols.length, day);
+                        sum += day.epochSec[day.size - 1] + (long) (day.price[day.size / 2] * 100);
+                    }
+                    checksum.addAndGet(sum);
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return (double) ticksPerDay * symbols.length * dates.size() / seconds;
+    }
+
+
+
+    public static void main(String[] args) throws Exception {
+        boolean bench = args.length > 0 && args[0].equalsIgnoreCase("bench");
+        String startingDate = args.length >= 2 ? args[0] : Tools.getConfig("walkForwardStartDate");
+        String endingDate   = args.length >= 2 ? args[1] : Tools.getConfig("walkForwardEndDate");
+
+        MarketDates md = new MarketDates();
+        md.loadFromFile("../data/marketDates.txt", startingDate, endingDate);
+        SyntheticTicks gen = new SyntheticTicks(Tools.getConfig("synthSymbols").split("\\s*,\\s*"), md.getMarketDates());
+
+        if (bench) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            gen.benchmark(cores);   //warm up
+            System.out.printf("SyntheticTicks: %d symbol(s) x %d days x %d ticks, %.1f million ticks/s on %d thread(s)%n",
+                gen.getNumSymbols(), gen.getNumDays(), Integer.parseInt(Tools.getConfig("synthTicksPerDay")),
+                gen.benchmark(cores) / 1e6, cores);
+            return;
+        }
+
+        TickStore store = new TickStore(Tools.getConfig("tickDirectory"));
+        long timer = System.nanoTime();
+        long n = 0;
+        for (int d = 0; d < gen.getNumDays(); d++) n += gen.write(store, d);
+        System.out.printf("SyntheticTicks: %d ticks written to %s in %.1f s%n", n, Tools.getConfig("tickDirectory"),
+            (System.nanoTime() - timer) / 1e9);
+    }
+}
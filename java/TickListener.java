@@ -0,0 +1,12 @@
+/**
+ * A TickListener is handed every tick the CaptureService commits to the TickStore.
+ *
+ * The Tick object is re-used for the next tick, so copy anything that must be kept
+ * (TickStore.Tick.copyFrom).  onTick() runs on the capture writer thread and should be quick.
+ *
+ * @version v1
+ */
+public interface TickListener
+{
+    void onTick(TickStore.Tick tick);
+}
@@ -0,0 +1,248 @@
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+
+/**
+ * TickStore is the on-disk home of captured quotes: one binary file per day, ticks_yyyymmdd.bin,
+ * in the tickDirectory named in config.txt.
+ *
+ * The file starts with a 16 byte header ("MKTICKS1", record size) followed by fixed 88 byte
+ * records, one per tick, holding the same fields as the MySQL quote tables:
+ *
+ *   epochSec, symbol(8), price, bid, ask, high, low, close, open, volume, bidSize, askSize
+ *
+ * A partly written record at the end of a file (e.g. after a crash) is ignored by the reader.
+ *
+ * @version v1
+ */
+public class TickStore
+{
+    public static final int RECORD_SIZE = 88;
+    private static final int HEADER_SIZE = 16;
+    private static final long MAGIC = 0x4D4B5449434B5331L;   // "MKTICKS1"
+    private static final DateTimeFormatter DT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter FILE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+
+
+    /**
+     * One tick.  The object is mutable so readers and writers can re-use a single instance.
+     */
+    public static class Tick {
+        public long epochSec;
+        public String symbol;
+        public double price;
+        public double bid;
+        public double ask;
+        public double high;
+        public double low;
+        public double close;
+        public double open;
+        public long volume;
+        public int bidSize;
+        public int askSize;
+
+        public void copyFrom(Tick t) {
+            epochSec = t.epochSec;  symbol = t.symbol;  price = t.price;
+            bid = t.bid;  ask = t.ask;  high = t.high;  low = t.low;  close = t.close;  open = t.open;
+            volume = t.volume;  bidSize = t.bidSize;  askSize = t.askSize;
+        }
+
+        //myDT in the same form as the MMEngine, e.g. 2023-08-28 09:30:24
+        public String getDT() {
+            return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSec), ZoneId.systemDefault()).format(DT_FORMAT);
+        }
+
+        public Quote toQuote() {
+            return new Quote(getDT(), symbol, "STK", price, String.valueOf(epochSec), volume,
+                             bid, ask, bidSize, askSize, high, low, open);
+        }
+
+        public String toString() {
+            return String.format("%s\t%s\t%.4f\t%.4f\t%.4f", getDT(), symbol, price, bid, ask);
+        }
+    }
+
+
+
+    private final String directory;
+
+    public TickStore(String directory) {
+        this.directory = directory;
+    }
+
+    public File file(LocalDate date) {
+        return new File(directory, "ticks_" + date.format(FILE_FORMAT) + ".bin");
+    }
+
+    public boolean exists(LocalDate date) {
+        return file(date).exists();
+    }
+
+    public Writer openWriter(LocalDate date) throws IOException {
+        new File(directory).mkdirs();
+        return new Writer(file(date));
+    }
+
+    public Reader openReader(LocalDate date) throws IOException {
+        return new Reader(file(date));
+    }
+
+
+
+    /**
+     * Reads a whole day into memory as Quotes (empty if there is no file for the day).
+     */
+    public ArrayList<Quote> loadQuotes(LocalDate date, String symbol) {
+        ArrayList<Quote> quotes = new ArrayList<>();
+        if (!exists(date)) return quotes;
+
+        Tick t = new Tick();
+        try (Reader in = openReader(date)) {
+            while (in.next(t)) {
+                if (symbol == null || symbol.equals(t.symbol)) quotes.add(t.toQuote());
+            }
+        } catch (IOException e) {
+            System.out.println("TickStore Error 70: unable to read " + file(date));
+        }
+        return quotes;
+    }
+
+
+
+    /**
+     * Appends ticks to a day file.  Ticks are collected in a buffer and only reach the file on
+     * flush(); commit() also forces them to disk, which is how the capture service group-commits.
+     */
+    public static class Writer implements AutoCloseable {
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(RECORD_SIZE * 4096);
+
+        private Writer(File f) throws IOException {
+            file = new RandomAccessFile(f, "rw");
+            channel = file.getChannel();
+            if (channel.size() < HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putLong(MAGIC).putInt(RECORD_SIZE).putInt(0).flip();
+                channel.write(header, 0);
+            }
+            //drop any partial record left by a crash
+            long records = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+            channel.truncate(HEADER_SIZE + records * RECORD_SIZE);
+            channel.position(channel.size());
+        }
+
+        public void write(Tick t) throws IOException {
+            if (buf.remaining() < RECORD_SIZE) flush();
+            buf.putLong(t.epochSec);
+            putSymbol(buf, t.symbol);
+            buf.putDouble(t.price).putDouble(t.bid).putDouble(t.ask).putDouble(t.high)
+               .putDouble(t.low).putDouble(t.close).putDouble(t.open);
+            buf.putLong(t.volume).putInt(t.bidSize).putInt(t.askSize);
+        }
+
+        public void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) channel.write(buf);
+            buf.clear();
+        }
+
+        //flush and force to disk
+        public void commit() throws IOException {
+            flush();
+            channel.force(false);
+        }
+
+        public void close() throws IOException {
+            commit();
+            channel.close();
+            file.close();
+        }
+    }
+
+
+
+    /**
+     * Reads the ticks of a day file in order.
+     */
+    public static class Reader implements AutoCloseable {
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(RECORD_SIZE * 4096);
+        private final long end;
+        private long pos = HEADER_SIZE;
+
+        private Reader(File f) throws IOException {
+            file = new RandomAccessFile(f, "r");
+            channel = file.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getLong() != MAGIC || header.getInt() != RECORD_SIZE) {
+                channel.close();
+                file.close();
+                throw new IOException("TickStore Error 71: " + f + " is not a tick file");
+            }
+            end = HEADER_SIZE + (channel.size() - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+            buf.flip();
+        }
+
+        //fills t with the next tick, false at the end of the file
+        public boolean next(Tick t) throws IOException {
+            if (buf.remaining() < RECORD_SIZE) {
+                if (pos >= end) return false;
+                buf.clear();
+                buf.limit((int) Math.min(buf.capacity(), end - pos) / RECORD_SIZE * RECORD_SIZE);
+                while (buf.hasRemaining()) {
+                    if (channel.read(buf, pos + buf.position()) < 0) throw new EOFException();
+                }
+                pos += buf.limit();
+                buf.flip();
+            }
+            t.epochSec = buf.getLong();
+            t.symbol = getSymbol(buf);
+            t.price = buf.getDouble();  t.bid = buf.getDouble();  t.ask = buf.getDouble();
+            t.high = buf.getDouble();   t.low = buf.getDouble();  t.close = buf.getDouble();
+            t.open = buf.getDouble();
+            t.volume = buf.getLong();  t.bidSize = buf.getInt();  t.askSize = buf.getInt();
+            return true;
+        }
+
+        public long getNumTicks() {
+            return (end - HEADER_SIZE) / RECORD_SIZE;
+        }
+
+        public void close() throws IOException {
+            channel.close();
+            file.close();
+        }
+    }
+
+
+
+    private static void putSymbol(ByteBuffer buf, String symbol) {
+        for (int i = 0; i < 8; i++) {
+            buf.put((symbol != null && i < symbol.length()) ? (byte) symbol.charAt(i) : (byte) 0);
+        }
+    }
+
+    private static String getSymbol(ByteBuffer buf) {
+        char[] c = new char[8];
+        int n = 0;
+        for (int i = 0; i < 8; i++) {
+            byte b = buf.get();
+            if (b != 0 && n == i) c[n++] = (char) b;
+        }
+        return new String(c, 0, n);
+    }
+}
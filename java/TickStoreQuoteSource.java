@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * TickStoreQuoteSource answers the Monkey's quote requests straight from the TickStore's day files,
+ * the way the MMEngine answers them from its database:  the first tick after theTime, or "null"
+ * when the day has no more.  theDate can be "today", and with no theTime the latest tick is given.
+ *
+ * The fields are the same strings the MMEngine's JSON gives (see MMEngineServer, which serves this
+ * source over HTTP), so a QuoteTape read from here is the same as one read through the MMEngine.
+ *
+ * The last few days read are kept in memory, by symbol, in time order.  It is safe to share
+ * between threads.
+ *
+ * @version v1
+ */
+public class TickStoreQuoteSource implements QuoteSource
+{
+    private static final int CACHED_DAYS = 8;
+
+    private final TickStore store;
+
+    //the ticks of the most recent days, by date then symbol, in time order
+    private final Map<String, Map<String, TickStore.Tick[]>> days = new LinkedHashMap<>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, TickStore.Tick[]>> eldest) {
+            return size() > CACHED_DAYS;
+        }
+    };
+
+
+
+    public TickStoreQuoteSource(TickStore store) {
+        this.store = store;
+    }
+
+
+
+    public Vector<String> getQuote(String symbol, String theDate, String theTime) {
+        TickStore.Tick t = tickAfter(symbol, theDate, theTime);
+        Vector<String> resp = new Vector<>(14);
+        if (t == null) {
+            resp.add("null");
+            return resp;
+        }
+        resp.add(t.getDT());
+        resp.add(t.symbol);
+        resp.add("STK");
+        resp.add(String.valueOf(t.price));
+        resp.add(String.valueOf(t.epochSec));
+        resp.add(String.valueOf(t.volume));
+        resp.add(String.valueOf(t.bid));
+        resp.add(String.valueOf(t.ask));
+        resp.add(String.valueOf(t.bidSize));
+        resp.add(String.valueOf(t.askSize));
+        resp.add(String.valueOf(t.high));
+        resp.add(String.valueOf(t.low));
+        resp.add(String.valueOf(t.close));
+        resp.add(String.valueOf(t.open));
+        return resp;
+    }
+
+
+
+    //the first tick of symbol after theDate theTime (the latest one when theTime is null), null if none
+    TickStore.Tick tickAfter(String symbol, String theDate, String theTime) {
+        LocalDate date = theDate.equalsIgnoreCase("today") ? LocalDate.now() : LocalDate.parse(theDate);
+        TickStore.Tick[] ticks = day(date).get(symbol);
+        if (ticks == null || ticks.length == 0) return null;
+        if (theTime == null) return ticks[ticks.length - 1];
+
+        long sec = date.atTime(LocalTime.parse(theTime)).atZone(ZoneId.systemDefault()).toEpochSecond();
+        int lo = 0, hi = ticks.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ticks[mid].epochSec <= sec) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo == ticks.length ? null : ticks[lo];
+    }
+
+
+
+    //the day's ticks by symbol, read from the TickStore the first time the day is asked for
+    private Map<String, TickStore.Tick[]> day(LocalDate date) {
+        String key = date.toString();
+        synchronized (days) {
+            Map<String, TickStore.Tick[]> day = days.get(key);
+            if (day != null) return day;
+
+            HashMap<String, ArrayList<TickStore.Tick>> bySymbol = new HashMap<>();
+            if (store.exists(date)) {
+                try (TickStore.Reader in = store.openReader(date)) {
+                    TickStore.Tick t = new TickStore.Tick();
+                    while (in.next(t)) {
+                        TickStore.Tick copy = new TickStore.Tick();
+                        copy.copyFrom(t);
+                        bySymbol.computeIfAbsent(t.symbol, k -> new ArrayList<>()).add(copy);
+                    }
+                } catch (IOException e) {
+                    System.out.println("TickStoreQuoteSource Error 75: unable to read " + store.file(date));
+                }
+            }
+            day = new HashMap<>();
+            for (Map.Entry<String, ArrayList<TickStore.Tick>> e : bySymbol.entrySet()) {
+                TickStore.Tick[] ticks = e.getValue().toArray(new TickStore.Tick[0]);
+                Arrays.sort(ticks, (a, b) -> Long.compare(a.epochSec, b.epochSec));   //stable, ticks in the same second keep their order
+                day.put(e.getKey(), ticks);
+            }
+            days.put(key, day);
+            return day;
+        }
+    }
+}
@@ -18,6 +18,8 @@ import java.time.LocalTime;
 import java.io.PrintWriter;
 import java.util.Date;
 import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
 
 
 /**
@@ -28,6 +30,45 @@ import java.net.HttpURLConnection;
  */
 public class Tools
 {
+    //where every timestamp and sleep comes from, Monkey swaps in a VirtualClock in simulator mode
+    private static TradingClock clock = new WallClock();
+
+    public static TradingClock getClock() {
+        return clock;
+    }
+
+    public static void setClock(TradingClock newClock) {
+        clock = newClock;
+    }
+    
+    
+    
+    //per-thread config values that win over config.txt, so parallel backtests (see WalkForward) can try other thresholds
+    private static final ThreadLocal<Map<String, String>> configOverrides = new ThreadLocal<>();
+    //per-thread switch for log(filename, ...), parallel backtests turn it off so they do not share the log files
+    private static final ThreadLocal<Boolean> logging = ThreadLocal.withInitial(() -> true);
+
+    //overrides holds config names and values, null = config.txt only
+    public static void setConfigOverrides(Map<String, String> overrides) {
+        if (overrides == null) {
+            configOverrides.remove();
+            return;
+        }
+        Map<String, String> upper = new HashMap<>();
+        for (Map.Entry<String, String> e : overrides.entrySet()) upper.put(e.getKey().toUpperCase().trim(), e.getValue());
+        configOverrides.set(upper);
+    }
+
+    public static void setLogging(boolean on) {
+        logging.set(on);
+    }
+
+    public static boolean isLogging() {
+        return logging.get();
+    }
+    
+    
+    
     public static int getDayNum( String theDate ) {
 /*      File: marketdates.txt
         2023-08-28    99    OBSERVE
@@ -81,6 +122,8 @@ public class Tools
     
     public static String getConfig(String targetVar) {
         String target = targetVar.toUpperCase().trim();
+        Map<String, String> overrides = configOverrides.get();
+        if (overrides != null && overrides.containsKey(target)) return overrides.get(target);
         String varname = "";
         String filePath = "../data/config.txt";
         // Create a File object to represent the text file
@@ -117,6 +160,38 @@ public class Tools
         }  
         return "";
     }
+
+    
+    
+    //every setting in config.txt at once, names in upper case, read the same way as getConfig
+    public static Map<String, String> getAllConfig() {
+        Map<String, String> all = new HashMap<>();
+        try (Scanner scanner = new Scanner(new File("../data/config.txt"))) {
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine();
+                if (line.contains("#") || line.length() <= 0) continue;
+                String[] items = line.split("=");
+                if (items.length < 2) continue;
+                all.putIfAbsent(items[0].toUpperCase().trim(), items[1].replaceAll("\"", "").trim());   //the first one wins, as in getConfig
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println("configFile not found: ../data/config.txt");
+        }
+        return all;
+    }
+
+
+
+    //a whole number setting, or defaultValue when it is missing or blank
+    public static int getConfigInt(String targetVar, int defaultValue) {
+        String value = getConfig(targetVar).trim();
+        return value.isEmpty() ? defaultValue : Integer.parseInt(value);
+    }
+
+    public static long getConfigLong(String targetVar, long defaultValue) {
+        String value = getConfig(targetVar).trim();
+        return value.isEmpty() ? defaultValue : Long.parseLong(value);
+    }
     
     
     
@@ -132,10 +207,11 @@ public class Tools
     // returns the actualDT
     //
     public static String log(String filename, String dateTime, String message) {
+        if (!logging.get()) return "";
         String theFileName = Tools.getConfig("logsDirectory") + "\\" + filename;
         
         DateTimeFormatter s_today_dt = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime now = clock.now();
         String actualDT = now.format(s_today_dt);
         
         
@@ -161,7 +237,7 @@ public class Tools
      */
     public static void log(String message) {
         try (PrintWriter out = new PrintWriter(new FileWriter("errors.txt", true))) {
-            out.println(new Date() + " - " + message);
+            out.println(new Date(clock.currentTimeMillis()) + " - " + message);
         } catch (IOException e) {
             System.err.println("Logging failed: " + e.getMessage());
         }
@@ -288,6 +364,11 @@ public class Tools
     
     //There are two vector posts, this one is for URIs, ie. REST APIs
     public static Vector<String> VectorURIPost(String uri) {
+        return VectorURIPost(uri, 0);
+    }
+
+    //readTimeoutMs > 0 gives up on an answer that takes longer than that, 0 waits forever
+    public static Vector<String> VectorURIPost(String uri, int readTimeoutMs) {
         Vector<String> data = new Vector<>(0);
 
        
@@ -296,6 +377,7 @@ public class Tools
             URL url = new URL(uri);
             HttpURLConnection conn = (HttpURLConnection) url.openConnection();
             conn.setConnectTimeout(1500);
+            conn.setReadTimeout(readTimeoutMs);
             conn.setRequestMethod("GET");
             conn.setDoInput(true);
             
@@ -0,0 +1,260 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.LocalDate;
+import java.util.zip.CRC32;
+
+/**
+ * TradeJournal is an append-only, memory-mapped journal of every fill booked into AllHoldings.
+ *
+ * Each record is a fixed 64 bytes:
+ *
+ *   offset  size  field
+ *      0     1    type      OPEN, CLOSE, REDUCE, CLONE, DIVIDEND
+ *      8     8    seq       record number, starting at 1
+ *     16     8    symbol    ASCII, padded with zeros
+ *     24     4    shares    signed share count
+ *     32     8    price     fill price
+ *     40     8    epochDay  LocalDate.toEpochDay() of the fill
+ *     48     8    amount    profit (REDUCE, CLONE) or dividend adjustment (DIVIDEND)
+ *     56     4    reason    strategy reason code (OPEN, CLOSE), ASCII
+ *     60     4    crc       CRC32 of bytes 0..59
+ *
+ * OPEN and CLOSE are the calls made on AllHoldings; REDUCE, CLONE and DIVIDEND record what the
+ * CLOSE did to the lots.  Replay re-issues the OPEN and CLOSE calls, which rebuilds the lots,
+ * the synthetic clones and the dividend adjustments exactly as they were.
+ *
+ * Records are written straight into the mapped file, so a crash of the JVM loses nothing that
+ * was already booked.  A torn record at the end (bad CRC) marks the end of the journal.
+ * Set journalSync = YES to also force every record to disk (slower).
+ *
+ * @version v1
+ */
+public class TradeJournal
+{
+    public static final byte OPEN     = 1;
+    public static final byte CLOSE    = 2;
+    public static final byte REDUCE   = 3;
+    public static final byte CLONE    = 4;
+    public static final byte DIVIDEND = 5;
+
+    public static final int RECORD_SIZE = 64;
+    private static final long MAGIC = 0x4D4F4E4B45594A31L;   // "MONKEYJ1", first record of the file
+    private static final int INITIAL_RECORDS = 16384;        // 1 MB, grows as needed
+
+    private final String filename;
+    private final boolean sync;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private int position;        // byte offset of the next record
+    private long seq;            // seq of the last record written
+    private final CRC32 crc = new CRC32();
+
+
+
+    /**
+     * Opens (or creates) the journal.  If fresh is true, any existing journal is thrown away,
+     * which is what simulator mode wants at the start of a run (on simulatorJournalFilename, never
+     * the real journal).
+     */
+    public TradeJournal(String filename, boolean fresh) throws IOException {
+        this.filename = filename;
+        this.sync = Tools.getConfig("journalSync").equalsIgnoreCase("YES");
+
+        File f = new File(filename);
+        if (fresh && f.exists() && !f.delete()) {
+            throw new IOException("TradeJournal Error 40: unable to reset " + filename);
+        }
+
+        file = new RandomAccessFile(f, "rw");
+        channel = file.getChannel();
+        long size = Math.max(channel.size(), (long) INITIAL_RECORDS * RECORD_SIZE);
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        if (map.getLong(0) != MAGIC) {
+            map.putLong(0, MAGIC);
+            map.putInt(8, RECORD_SIZE);
+        }
+        if (map.getInt(8) != RECORD_SIZE) {
+            throw new IOException("TradeJournal Error 41: " + filename + " has the wrong record size");
+        }
+
+        //find the end of the journal: the first empty or torn record
+        position = RECORD_SIZE;
+        seq = 0;
+        while (position + RECORD_SIZE <= map.capacity() && isValid(position)) {
+            seq = map.getLong(position + 8);
+            position += RECORD_SIZE;
+        }
+    }
+
+
+
+    public void append(byte type, String symbol, int shares, double price, LocalDate date, double amount) {
+        append(type, symbol, shares, price, date, amount, "");
+    }
+
+
+
+    public void append(byte type, String symbol, int shares, double price, LocalDate date, double amount, String reason) {
+        if (position + RECORD_SIZE > map.capacity()) grow();
+
+        int p = position;
+        map.put(p, type);
+        for (int i = 1; i < 8; i++) map.put(p + i, (byte) 0);
+        map.putLong(p + 8, ++seq);
+        for (int i = 0; i < 8; i++) {
+            map.put(p + 16 + i, (symbol != null && i < symbol.length()) ? (byte) symbol.charAt(i) : (byte) 0);
+        }
+        map.putInt(p + 24, shares);
+        map.putInt(p + 28, 0);
+        map.putDouble(p + 32, price);
+        map.putLong(p + 40, date == null ? 0 : date.toEpochDay());
+        map.putDouble(p + 48, amount);
+        for (int i = 0; i < 4; i++) {
+            map.put(p + 56 + i, (reason != null && i < reason.length()) ? (byte) reason.charAt(i) : (byte) 0);
+        }
+        map.putInt(p + 60, checksum(p));
+
+        position += RECORD_SIZE;
+        if (sync) map.force();
+    }
+
+
+
+    /**
+     * Replays every OPEN and CLOSE into h.  The journal is detached from h while this runs,
+     * so nothing is written twice.
+     *
+     * @return the number of records read
+     */
+    public int replayInto(AllHoldings h) {
+        TradeJournal attached = h.getJournal();
+        h.setJournal(null);
+
+        int n = 0;
+        for (int p = RECORD_SIZE; p < position; p += RECORD_SIZE, n++) {
+            byte type = map.get(p);
+            if (type != OPEN && type != CLOSE) continue;
+
+            String symbol = readSymbol(p);
+            int shares = map.getInt(p + 24);
+            double price = map.getDouble(p + 32);
+            LocalDate date = LocalDate.ofEpochDay(map.getLong(p + 40));
+            String reason = readAscii(p + 56, 4);
+
+            if (type == OPEN) h.openHolding(symbol, shares, price, date, reason);
+            else              h.closeHolding(symbol, shares, price, date, reason);
+        }
+
+        h.setJournal(attached);
+        return n;
+    }
+
+
+
+    /**
+     * Writes the journal out as text: the open positions to holdingsFilename and every record
+     * to transactionLogFilename (both named in config.txt).
+     */
+    public void exportText(AllHoldings h, String holdingsFilename, String transactionsFilename) {
+        try (PrintWriter out = new PrintWriter(new FileWriter(holdingsFilename))) {
+            for (SingleHolding s : h.getAllHoldings()) {
+                if (s.isOpen()) out.printf("%s\t%d\t%.4f\t%s%n", s.getSymbol(), s.getNumShares(), s.getAvgCost(), s.getDateOpened());
+            }
+        } catch (IOException e) {
+            System.out.println("TradeJournal Error 42: unable to write " + holdingsFilename);
+        }
+
+        try (PrintWriter out = new PrintWriter(new FileWriter(transactionsFilename))) {
+            out.println("seq\ttype\tsymbol\tshares\tprice\tdate\tamount\treason");
+            for (int p = RECORD_SIZE; p < position; p += RECORD_SIZE) {
+                out.printf("%d\t%s\t%s\t%d\t%.4f\t%s\t%.4f\t%s%n", map.getLong(p + 8), typeName(map.get(p)), readSymbol(p),
+                    map.getInt(p + 24), map.getDouble(p + 32), LocalDate.ofEpochDay(map.getLong(p + 40)), map.getDouble(p + 48),
+                    readAscii(p + 56, 4));
+            }
+        } catch (IOException e) {
+            System.out.println("TradeJournal Error 43: unable to write " + transactionsFilename);
+        }
+    }
+
+
+
+    public void close() {
+        try {
+            map.force();
+            channel.close();
+            file.close();
+        } catch (IOException e) {
+            System.out.println("TradeJournal Error 44: unable to close " + filename);
+        }
+    }
+
+
+
+    public long getNumRecords() {
+        return seq;
+    }
+
+
+
+    private void grow() {
+        try {
+            map.force();
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) map.capacity() * 2);
+        } catch (IOException e) {
+            throw new IllegalStateException("TradeJournal Error 45: unable to grow " + filename, e);
+        }
+    }
+
+
+
+    private boolean isValid(int p) {
+        byte type = map.get(p);
+        return type >= OPEN && type <= DIVIDEND && map.getInt(p + 60) == checksum(p);
+    }
+
+
+
+    private int checksum(int p) {
+        crc.reset();
+        for (int i = 0; i < 60; i++) crc.update(map.get(p + i));
+        return (int) crc.getValue();
+    }
+
+
+
+    private String readSymbol(int p) {
+        return readAscii(p + 16, 8);
+    }
+
+
+
+    private String readAscii(int offset, int len) {
+        StringBuilder sb = new StringBuilder(len);
+        for (int i = 0; i < len; i++) {
+            byte b = map.get(offset + i);
+            if (b == 0) break;
+            sb.append((char) b);
+        }
+        return sb.toString();
+    }
+
+
+
+    private static String typeName(byte type) {
+        switch (type) {
+            case OPEN:     return "OPEN";
+            case CLOSE:    return "CLOSE";
+            case REDUCE:   return "REDUCE";
+            case CLONE:    return "CLONE";
+            case DIVIDEND: return "DIVIDEND";
+            default:       return "?";
+        }
+    }
+}
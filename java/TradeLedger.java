@@ -0,0 +1,229 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * TradeLedger stores every lot AllHoldings opens, and every partial close, in parallel primitive
+ * arrays (struct-of-arrays) rather than as one SingleHolding object per lot.
+ *
+ * A lot is one row:  symbol id, signed shares, cost, opened/closed as epoch days, close price,
+ * profit, partial profit, dividend adjustment and the reason code that opened it.  A partial close
+ * is a row that only holds the shares it closed, the price, the day and its dividend adjustment,
+ * plus the row of the lot it was taken out of; the cost, opened date and reason are read from
+ * that lot, so nothing is cloned.  Rows are about 60 bytes, against several hundred for a
+ * SingleHolding with its two LocalDates and String, so millions of simulated trades fit in a
+ * small heap.
+ *
+ * Rows are referred to by a code:  a lot is its row (>= 0), a partial close is ~row (< 0).
+ * getHolding() builds a SingleHolding for a code on demand, for callers that want the old view.
+ *
+ * The ledger also keeps running totals (profit per symbol, realized profit) and the first row that
+ * may still be open, so closing and totalling do not walk the whole history.  Only the trading
+ * thread uses a TradeLedger.
+ *
+ * @version v1
+ */
+public class TradeLedger
+{
+    private static final int INITIAL_CAPACITY = 64;
+
+    // lots
+    private int numLots = 0;
+    private int[] symbolId = new int[INITIAL_CAPACITY];
+    private int[] shares = new int[INITIAL_CAPACITY];            // signed, what is still open
+    private double[] cost = new double[INITIAL_CAPACITY];
+    private int[] openDay = new int[INITIAL_CAPACITY];           // LocalDate.toEpochDay()
+    private int[] closeDay = new int[INITIAL_CAPACITY];
+    private double[] closePrice = new double[INITIAL_CAPACITY];
+    private double[] profit = new double[INITIAL_CAPACITY];
+    private double[] partialProfit = new double[INITIAL_CAPACITY];
+    private double[] dividend = new double[INITIAL_CAPACITY];
+    private short[] reason = new short[INITIAL_CAPACITY];
+    private boolean[] open = new boolean[INITIAL_CAPACITY];
+
+    // partial closes, each taken out of lot parent[]
+    private int numPartials = 0;
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private int[] partialShares = new int[INITIAL_CAPACITY];     // signed, the same sign as the lot
+    private int[] partialDay = new int[INITIAL_CAPACITY];
+    private double[] partialPrice = new double[INITIAL_CAPACITY];
+    private double[] partialDividend = new double[INITIAL_CAPACITY];
+
+    private int firstOpen = 0;                                   // every lot before this row is closed
+    private double[] symbolProfit = new double[0];               // totalProfit per symbol id, open lots too
+    private double realizedProfit = 0.0;                         // closed lots and partial closes
+
+    private final ArrayList<String> reasons = new ArrayList<>();
+    private final HashMap<String, Short> reasonIds = new HashMap<>();
+
+
+
+    //adds an open lot, returns its row
+    public int open(int id, int numShares, double avgCost, LocalDate dateOpened, String openReason) {
+        if (numLots == symbolId.length) growLots();
+        int i = numLots++;
+        symbolId[i] = id;
+        shares[i] = numShares;
+        cost[i] = avgCost;
+        openDay[i] = (int) dateOpened.toEpochDay();
+        closeDay[i] = 0;
+        closePrice[i] = 0.0;
+        profit[i] = 0.0;
+        partialProfit[i] = 0.0;
+        dividend[i] = 0.0;
+        reason[i] = reasonId(openReason);
+        open[i] = true;
+        return i;
+    }
+
+
+
+    //closes all the shares left in lot i
+    public void close(int i, double price, LocalDate dateClosed) {
+        double p = calcProfit(shares[i], cost[i], price);
+        profit[i] += p;
+        closePrice[i] = price;
+        closeDay[i] = (int) dateClosed.toEpochDay();
+        shares[i] = 0;
+        open[i] = false;
+        addSymbolProfit(symbolId[i], p);
+        realizedProfit += profit[i] - dividend[i];   // the lot's whole profit counts once it is closed
+        while (firstOpen < numLots && !open[firstOpen]) firstOpen++;
+    }
+
+
+
+    /**
+     * Closes sharesToReduce (unsigned) out of lot i, which stays open with the rest, and records
+     * the closed shares as a partial close.  Returns the partial close's code.
+     */
+    public int reduce(int i, int sharesToReduce, double price, LocalDate date) {
+        int sign = Integer.signum(shares[i]);
+        int closed = Math.min(Math.abs(sharesToReduce), Math.abs(shares[i])) * sign;
+        double p = calcProfit(closed, cost[i], price);
+        partialProfit[i] = p;
+        profit[i] += p;
+        shares[i] -= closed;
+
+        if (numPartials == parent.length) growPartials();
+        int j = numPartials++;
+        parent[j] = i;
+        partialShares[j] = closed;
+        partialDay[j] = (int) date.toEpochDay();
+        partialPrice[j] = price;
+        partialDividend[j] = 0.0;
+        //the lot and its partial record both carry p and each count toward the symbol's total, as the
+        //SingleHolding path did (the lot's profit and its partial clone were both summed)
+        addSymbolProfit(symbolId[i], 2 * p);
+        realizedProfit += p;
+
+        if (shares[i] == 0) {
+            open[i] = false;
+            closeDay[i] = partialDay[j];
+            closePrice[i] = price;
+            realizedProfit += profit[i] - dividend[i];
+            while (firstOpen < numLots && !open[firstOpen]) firstOpen++;
+        }
+        return ~j;
+    }
+
+
+
+    //takes adjustment off the profit of a lot or partial close
+    public void applyDividendAdjustment(int code, double adjustment) {
+        if (code >= 0) dividend[code] += adjustment;
+        else           partialDividend[~code] += adjustment;
+        addSymbolProfit(getSymbolId(code), -adjustment);
+        if (!isOpen(code)) realizedProfit -= adjustment;
+    }
+
+
+
+    private static double calcProfit(int shares, double entryPrice, double exitPrice) {
+        return shares > 0 ? (exitPrice - entryPrice) * shares : (entryPrice - exitPrice) * Math.abs(shares);
+    }
+
+    private void addSymbolProfit(int id, double p) {
+        if (id >= symbolProfit.length) symbolProfit = Arrays.copyOf(symbolProfit, Math.max(id + 1, Symbols.size()));
+        symbolProfit[id] += p;
+    }
+
+    private short reasonId(String r) {
+        Short id = reasonIds.get(r);
+        if (id == null) {
+            id = (short) reasons.size();
+            reasons.add(r);
+            reasonIds.put(r, id);
+        }
+        return id;
+    }
+
+    private void growLots() {
+        int n = symbolId.length * 2;
+        symbolId = Arrays.copyOf(symbolId, n);
+        shares = Arrays.copyOf(shares, n);
+        cost = Arrays.copyOf(cost, n);
+        openDay = Arrays.copyOf(openDay, n);
+        closeDay = Arrays.copyOf(closeDay, n);
+        closePrice = Arrays.copyOf(closePrice, n);
+        profit = Arrays.copyOf(profit, n);
+        partialProfit = Arrays.copyOf(partialProfit, n);
+        dividend = Arrays.copyOf(dividend, n);
+        reason = Arrays.copyOf(reason, n);
+        open = Arrays.copyOf(open, n);
+    }
+
+    private void growPartials() {
+        int n = parent.length * 2;
+        parent = Arrays.copyOf(parent, n);
+        partialShares = Arrays.copyOf(partialShares, n);
+        partialDay = Arrays.copyOf(partialDay, n);
+        partialPrice = Arrays.copyOf(partialPrice, n);
+        partialDividend = Arrays.copyOf(partialDividend, n);
+    }
+
+
+
+    public int getNumLots() { return numLots; }
+    public int getNumPartials() { return numPartials; }
+    public int getFirstOpen() { return firstOpen; }
+
+    //these take a code, a lot's row or ~ a partial close's row
+    public boolean isOpen(int code) { return code >= 0 && open[code]; }
+    public int getSymbolId(int code) { return symbolId[lot(code)]; }
+    public int getNumShares(int code) { return code >= 0 ? shares[code] : 0; }   // still open, as SingleHolding
+    public double getAvgCost(int code) { return cost[lot(code)]; }
+    public String getOpenReason(int code) { return reasons.get(reason[lot(code)]); }
+    public LocalDate getDateOpened(int code) { return LocalDate.ofEpochDay(openDay[lot(code)]); }
+
+    //the same as SingleHolding.getProfit():  profit less dividend adjustments
+    public double getProfit(int code) {
+        if (code >= 0) return profit[code] - dividend[code];
+        int j = ~code;
+        return calcProfit(partialShares[j], cost[parent[j]], partialPrice[j]) - partialDividend[j];
+    }
+
+    //the same as SingleHolding.getPartialProfit() of a lot
+    public double getPartialProfit(int i) { return partialProfit[i] - dividend[i]; }
+
+    private int lot(int code) { return code >= 0 ? code : parent[~code]; }
+
+    public double totalProfit(int id) { return id >= 0 && id < symbolProfit.length ? symbolProfit[id] : 0.0; }
+    public double getRealizedProfit() { return realizedProfit; }
+
+
+
+    //a SingleHolding with the lot's or partial close's values, built on demand
+    public SingleHolding getHolding(int code) {
+        if (code >= 0) {
+            return new SingleHolding(Symbols.name(symbolId[code]), shares[code], cost[code], LocalDate.ofEpochDay(openDay[code]),
+                open[code] ? null : LocalDate.ofEpochDay(closeDay[code]), closePrice[code], profit[code], partialProfit[code],
+                dividend[code], open[code], false, reasons.get(reason[code]));
+        }
+        int j = ~code, i = parent[j];
+        return new SingleHolding(Symbols.name(symbolId[i]), 0, cost[i], LocalDate.ofEpochDay(openDay[i]),
+            LocalDate.ofEpochDay(partialDay[j]), partialPrice[j], calcProfit(partialShares[j], cost[i], partialPrice[j]), 0.0,
+            partialDividend[j], false, true, reasons.get(reason[i]));
+    }
+}
@@ -0,0 +1,28 @@
+import java.time.LocalDateTime;
+
+/**
+ * TradingClock is where the Monkey gets the time of day and does its waiting.
+ *
+ * In real mode this is a WallClock.  In simulator mode it is a VirtualClock, which is moved
+ * forward by the quote timestamps and whose sleep() returns at once, so a simulation runs as
+ * fast as the CPU allows and writes the same transcripts on every run.
+ *
+ * Use Tools.getClock() rather than LocalDateTime.now(), System.currentTimeMillis() or Thread.sleep().
+ *
+ * @version v1
+ */
+public interface TradingClock
+{
+    //milliseconds since the epoch
+    long currentTimeMillis();
+
+    //nanoseconds since the epoch (used by LatencyTracer)
+    long nanoTime();
+
+    LocalDateTime now();
+
+    void sleep(long millis) throws InterruptedException;
+
+    //a quote with timestamp myDT (2023-08-28 09:30:24) has arrived, only a VirtualClock cares
+    default void advanceTo(String myDT) { }
+}
@@ -0,0 +1,79 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * TranscriptReader streams a day's transcript back for analysis, whether it is still plain
+ * text (the day is in progress) or has been compressed by TranscriptWriter.
+ *
+ * Example, counting the quotes seen on a day:
+ *
+ *     try (Stream<String> lines = TranscriptReader.lines("..\\logs\\transcripts", "2022-08-10")) {
+ *         long quotes = lines.filter(s -> s.contains("\tQUOTE\t")).count();
+ *     }
+ *
+ * @version v1
+ */
+public class TranscriptReader
+{
+    /**
+     * Opens the transcript for theDate.  Lines in the compressed file come first, followed by any
+     * lines still sitting in the plain text file.
+     */
+    public static BufferedReader open(String directory, String theDate) throws IOException {
+        File gz = new File(directory, TranscriptWriter.fileName(theDate) + ".gz");
+        File txt = new File(directory, TranscriptWriter.fileName(theDate));
+
+        if (gz.exists() && txt.exists()) {
+            return new BufferedReader(new InputStreamReader(new SequenceInputStream(
+                new GZIPInputStream(new FileInputStream(gz), 1 << 16), new FileInputStream(txt)), StandardCharsets.UTF_8));
+        }
+        if (gz.exists()) {
+            return new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(gz), 1 << 16), StandardCharsets.UTF_8));
+        }
+        return new BufferedReader(new FileReader(txt));
+    }
+
+
+
+    /**
+     * The transcript as a stream of lines, close the stream when done.
+     */
+    public static Stream<String> lines(String directory, String theDate) {
+        try {
+            BufferedReader in = open(directory, theDate);
+            return in.lines().onClose(() -> {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            System.out.println("TranscriptReader Error 55: no transcript for " + theDate + " in " + directory);
+            return Stream.empty();
+        }
+    }
+
+
+
+    //prints a day's transcript:   java TranscriptReader 2022-08-10
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("usage: java TranscriptReader yyyy-mm-dd [transcriptDirectory]");
+            return;
+        }
+        String directory = (args.length > 1) ? args[1] : Tools.getConfig("logsDirectory") + "\\transcripts";
+        try (Stream<String> lines = lines(directory, args[0])) {
+            lines.forEach(System.out::println);
+        }
+    }
+}
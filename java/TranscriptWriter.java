@@ -0,0 +1,156 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * TranscriptWriter writes the Monkey's daily transcript, logs\transcripts\transcript_<date>.txt
+ *
+ * Unlike Tools.log(), which opens and closes the file for every line, the writer keeps one
+ * buffered file open for the whole day.  When the next day starts (or the Monkey shuts down)
+ * the finished day is gzipped into transcript_<date>.txt.gz and the plain text file is removed.
+ * If a day is run again, its lines are added to the .gz file as another gzip member, which
+ * TranscriptReader reads back as one stream.
+ *
+ * Every line has the same layout as Tools.log():   actualDT  dateTime  message
+ *
+ * @version v1
+ */
+public class TranscriptWriter
+{
+    private static final DateTimeFormatter DT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String directory;
+    private final String header;
+    private String currentDate = null;
+    private File currentFile = null;
+    private BufferedWriter out = null;
+
+    private long actualSecond = -1;     // actualDT only changes once a second, so it is formatted once a second
+    private String actualDT = "";
+    private long linesWritten = 0;
+
+
+
+    /**
+     * @param directory   where the transcripts go, e.g. ..\logs\transcripts
+     * @param header      header row written at the top of a new transcript
+     */
+    public TranscriptWriter(String directory, String header) {
+        this.directory = directory;
+        this.header = header;
+        new File(directory).mkdirs();
+    }
+
+
+
+    public static String fileName(String theDate) {
+        return "transcript_" + theDate + ".txt";
+    }
+
+
+
+    /**
+     * Rolls the transcript over to theDate.  The previous day is closed and compressed.
+     */
+    public void startDay(String theDate) {
+        if (theDate.equals(currentDate)) return;
+        finishDay();
+
+        currentDate = theDate;
+        currentFile = new File(directory, fileName(theDate));
+        boolean isNew = !currentFile.exists() && !new File(directory, fileName(theDate) + ".gz").exists();
+        try {
+            out = new BufferedWriter(new FileWriter(currentFile, true), BUFFER_SIZE);
+            if (isNew) write(theDate, header);
+        } catch (IOException e) {
+            System.out.println("TranscriptWriter Error 50: File " + currentFile + " can not be written to.  Is there a transcripts folder?");
+            out = null;
+        }
+    }
+
+
+
+    public void write(String dateTime, String message) {
+        if (out == null) return;
+
+        long second = Tools.getClock().currentTimeMillis() / 1000;
+        if (second != actualSecond) {
+            actualSecond = second;
+            actualDT = Tools.getClock().now().format(DT_FORMAT);
+        }
+
+        try {
+            out.write(actualDT);
+            out.write('\t');
+            out.write(dateTime == null ? "null" : dateTime);
+            out.write('\t');
+            out.write(message);
+            out.write('\n');
+            linesWritten++;
+        } catch (IOException e) {
+            System.out.println("TranscriptWriter Error 51: unable to write to " + currentFile);
+        }
+    }
+
+
+
+    //pushes buffered lines to disk, the file stays open
+    public void flush() {
+        try {
+            if (out != null) out.flush();
+        } catch (IOException e) {
+            System.out.println("TranscriptWriter Error 52: unable to flush " + currentFile);
+        }
+    }
+
+
+
+    //closes and compresses the last day
+    public void close() {
+        finishDay();
+    }
+
+
+
+    private void finishDay() {
+        if (out == null) return;
+        try {
+            out.close();
+            compress(currentFile, new File(directory, currentFile.getName() + ".gz"));
+        } catch (IOException e) {
+            System.out.println("TranscriptWriter Error 53: unable to compress " + currentFile);
+        }
+        out = null;
+        currentDate = null;
+    }
+
+
+
+    //appends src to dest as a gzip member, then deletes src
+    private static void compress(File src, File dest) throws IOException {
+        byte[] buf = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(src);
+             OutputStream gz = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(dest, true)), BUFFER_SIZE)) {
+            int n;
+            while ((n = in.read(buf)) > 0) gz.write(buf, 0, n);
+        }
+        if (!src.delete()) {
+            System.out.println("TranscriptWriter Error 54: unable to remove " + src + " after compressing it");
+        }
+    }
+
+
+
+    public long getLinesWritten() {
+        return linesWritten;
+    }
+}
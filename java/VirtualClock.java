@@ -0,0 +1,68 @@
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * VirtualClock is simulated time, used in simulator mode.
+ *
+ * The clock only moves when it is told to: advanceTo() jumps forward to a quote's timestamp and
+ * sleep() adds the sleep time without waiting.  It never moves backwards.  Since nothing depends
+ * on the real time of day, the same date range always produces the same output.
+ *
+ * @version v1
+ */
+public class VirtualClock implements TradingClock
+{
+    private static final DateTimeFormatter DT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private long nowNs;     // nanoseconds since the epoch
+
+
+
+    public VirtualClock(LocalDateTime start) {
+        this.nowNs = toEpochNanos(start);
+    }
+
+
+
+    public long currentTimeMillis() {
+        return nowNs / 1_000_000L;
+    }
+
+    public long nanoTime() {
+        return nowNs;
+    }
+
+    public LocalDateTime now() {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(nowNs / 1_000_000_000L, nowNs % 1_000_000_000L),
+                                       ZoneId.systemDefault());
+    }
+
+    //no waiting, the time just moves on
+    public void sleep(long millis) {
+        nowNs += millis * 1_000_000L;
+    }
+
+
+
+    public void advanceTo(String myDT) {
+        if (myDT == null || myDT.length() < 19) return;
+        try {
+            advanceTo(LocalDateTime.parse(myDT.replace('.', ' ').substring(0, 19), DT_FORMAT));
+        } catch (Exception e) {
+            // a malformed timestamp leaves the clock where it is
+        }
+    }
+
+    public void advanceTo(LocalDateTime dt) {
+        long t = toEpochNanos(dt);
+        if (t > nowNs) nowNs = t;
+    }
+
+
+
+    private static long toEpochNanos(LocalDateTime dt) {
+        return dt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() * 1_000_000L;
+    }
+}
@@ -0,0 +1,277 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * WalkForward checks the config thresholds out of sample, instead of judging them on the same
+ * dates they were tuned on.
+ *
+ * The market dates are split into ex-date cycles (a run of dayNum -7 to 4).  Each fold tunes the
+ * thresholds on walkForwardTrainCycles cycles, by trying every combination in walkForwardGrid, and
+ * then trades the next walkForwardTestCycles cycles with the best combination.  The next fold
+ * moves on by walkForwardTestCycles, so the test slices follow one another and never overlap.
+ *
+ * The quotes are read once into a QuoteTape (through the QuoteCache when it is enabled) and shared
+ * read-only by all folds, which run in parallel, walkForwardThreads at a time (0 = one per core).
+ * Positions still open at the end of a slice are marked at its last price.
+ *
+ * Per-fold and overall out-of-sample results are printed and written to logs\walkforward.txt.
+ *
+ *     java WalkForward [startingDate endingDate]
+ *
+ * @version v1
+ */
+public class WalkForward
+{
+    /**
+     * One fold:  where it trained and tested, what it picked and how that did.
+     */
+    public static final class Fold {
+        final int number;
+        final String trainStart, trainEnd, testStart, testEnd;
+        final Map<String, String> best;
+        final Backtest.Result train;
+        final Backtest.Result test;
+        final Backtest.Result baseline;   // the test slice with config.txt's own thresholds
+
+        Fold(int number, String trainStart, String trainEnd, String testStart, String testEnd, Map<String, String> best,
+             Backtest.Result train, Backtest.Result test, Backtest.Result baseline) {
+            this.number = number;
+            this.trainStart = trainStart;
+            this.trainEnd = trainEnd;
+            this.testStart = testStart;
+            this.testEnd = testEnd;
+            this.best = best;
+            this.train = train;
+            this.test = test;
+            this.baseline = baseline;
+        }
+
+        public String toString() {
+            return String.format("%d\t%s\t%s\t%s\t%s\t%s\t%.2f\t%.2f\t%.2f\t%d\t%d\t%.2f",
+                number, trainStart, trainEnd, testStart, testEnd, best, train.getProfit(), test.getProfit(),
+                baseline.getProfit(), test.getNumTrades(), test.getNumWins(), test.getMaxDrawdown());
+        }
+    }
+
+    static final String HEADER = "fold\ttrainStart\ttrainEnd\ttestStart\ttestEnd\tbest\ttrainProfit\ttestProfit\tbaselineProfit\ttrades\twins\tmaxDD";
+
+
+
+    private final QuoteTape tape;
+    private final Backtest backtest;
+    private final List<Map<String, String>> grid;
+    private final int trainCycles;
+    private final int testCycles;
+    private final List<int[]> cycles;     // {first day, last day} of each ex-date cycle, indexes into the tape
+
+
+
+    public WalkForward(QuoteTape tape, Backtest backtest, List<Map<String, String>> grid, int trainCycles, int testCycles) {
+        this.tape = tape;
+        this.backtest = backtest;
+        this.grid = grid;
+        this.trainCycles = trainCycles;
+        this.testCycles = testCycles;
+        this.cycles = findCycles(tape.getDays());
+    }
+
+
+
+    //a cycle starts at dayNum -7, or at the first day in the window after days outside it
+    static List<int[]> findCycles(List<QuoteTape.Day> days) {
+        ArrayList<int[]> cycles = new ArrayList<>();
+        int[] current = null;
+        int prevDayNum = Integer.MAX_VALUE;
+        for (int i = 0; i < days.size(); i++) {
+            int dayNum = days.get(i).getDayNum();
+            if (dayNum < -7 || dayNum > 4) {
+                current = null;
+                continue;
+            }
+            if (current == null || dayNum <= prevDayNum) {
+                current = new int[] {i, i};
+                cycles.add(current);
+            }
+            current[1] = i;
+            prevDayNum = dayNum;
+        }
+        return cycles;
+    }
+
+
+
+    /**
+     * Parses walkForwardGrid, e.g.  SCARLET_SL_LOWERLIMIT:-4.5,-3.45;SCARLET_SL_UPPERLIMIT:-3.0,-2.0
+     * into every combination of the values.
+     */
+    static List<Map<String, String>> parseGrid(String spec) {
+        List<Map<String, String>> grid = new ArrayList<>();
+        grid.add(new LinkedHashMap<>());
+        for (String axis : spec.split(";")) {
+            if (axis.trim().isEmpty()) continue;
+            String[] parts = axis.split(":");
+            String name = parts[0].trim();
+            List<Map<String, String>> next = new ArrayList<>();
+            for (Map<String, String> point : grid) {
+                for (String value : parts[1].split(",")) {
+                    Map<String, String> p = new LinkedHashMap<>(point);
+                    p.put(name, value.trim());
+                    next.add(p);
+                }
+            }
+            grid = next;
+        }
+        return grid;
+    }
+
+
+
+    public int getNumCycles() {
+        return cycles.size();
+    }
+
+
+
+    //runs every fold, numThreads at a time, and returns them in date order
+    public List<Fold> run(int numThreads) throws Exception {
+        ArrayList<Future<Fold>> futures = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        try {
+            int number = 1;
+            for (int start = 0; start + trainCycles + testCycles <= cycles.size(); start += testCycles) {
+                final int n = number++;
+                final int trainFrom = start;
+                final int testFrom = start + trainCycles;
+                futures.add(pool.submit(() -> fold(n, trainFrom, testFrom)));
+            }
+            ArrayList<Fold> folds = new ArrayList<>();
+            for (Future<Fold> f : futures) folds.add(f.get());
+            return folds;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+
+    private Fold fold(int number, int trainFrom, int testFrom) {
+        List<QuoteTape.Day> train = days(trainFrom, testFrom);
+        List<QuoteTape.Day> test = days(testFrom, testFrom + testCycles);
+
+        Map<String, String> best = null;
+        Backtest.Result bestTrain = null;
+        for (Map<String, String> params : grid) {
+            Backtest.Result r = backtest.run(train, params);
+            if (bestTrain == null || r.getProfit() > bestTrain.getProfit()) {
+                best = params;
+                bestTrain = r;
+            }
+        }
+        return new Fold(number, train.get(0).getDate(), train.get(train.size() - 1).getDate(),
+                        test.get(0).getDate(), test.get(test.size() - 1).getDate(), best,
+                        bestTrain, backtest.run(test, best), backtest.run(test, null));
+    }
+
+    //the tape's days from the start of cycle from to the end of cycle to - 1
+    private List<QuoteTape.Day> days(int from, int to) {
+        return tape.slice(cycles.get(from)[0], cycles.get(to - 1)[1] + 1);
+    }
+
+
+
+    /**
+     * The out-of-sample totals over all folds.
+     */
+    public String summary(List<Fold> folds) {
+        int n = folds.size();
+        double sum = 0.0, sumSq = 0.0, baseline = 0.0, trainPerCycle = 0.0, maxDD = 0.0;
+        int positive = 0, trades = 0, wins = 0;
+        for (Fold f : folds) {
+            double p = f.test.getProfit();
+            sum += p;
+            sumSq += p * p;
+            baseline += f.baseline.getProfit();
+            trainPerCycle += f.train.getProfit() / trainCycles;
+            maxDD = Math.max(maxDD, f.test.getMaxDrawdown());
+            if (p > 0) positive++;
+            trades += f.test.getNumTrades();
+            wins += f.test.getNumWins();
+        }
+        double mean = n == 0 ? 0.0 : sum / n;
+        double stdev = n < 2 ? 0.0 : Math.sqrt(Math.max(0.0, (sumSq - n * mean * mean) / (n - 1)));
+        double testPerCycle = n == 0 ? 0.0 : sum / n / testCycles;
+        trainPerCycle = n == 0 ? 0.0 : trainPerCycle / n;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("folds\t%d\t(%d train + %d test cycles, %d grid points)%n", n, trainCycles, testCycles, grid.size()));
+        sb.append(String.format("out-of-sample profit\t%.2f\t(config.txt thresholds: %.2f)%n", sum, baseline));
+        sb.append(String.format("per fold\tmean %.2f\tstdev %.2f\tprofitable %d of %d%n", mean, stdev, positive, n));
+        sb.append(String.format("trades\t%d\twins %d\t(%.1f%%)\tworst fold drawdown %.2f%n",
+            trades, wins, trades == 0 ? 0.0 : 100.0 * wins / trades, maxDD));
+        //walk-forward efficiency, out-of-sample over in-sample profit, only means something when in-sample made money
+        sb.append(String.format("per cycle\tin-sample %.2f\tout-of-sample %.2f\tefficiency %s%n", trainPerCycle, testPerCycle,
+            trainPerCycle > 0.0 ? String.format("%.2f", testPerCycle / trainPerCycle) : "n/a"));
+        return sb.toString();
+    }
+
+
+
+    public static void main(String[] args) throws Exception {
+        String symbol = Tools.getConfig("symbol");
+        String startingDate = args.length >= 2 ? args[0] : Tools.getConfig("walkForwardStartDate");
+        String endingDate   = args.length >= 2 ? args[1] : Tools.getConfig("walkForwardEndDate");
+
+        MarketDates md = new MarketDates();
+        if (Tools.getConfig("useCalendarIndex").equalsIgnoreCase("YES")) {
+            try {
+                md.loadFromIndex(new CalendarIndex(Tools.getConfig("calendarIndexFilename")), symbol, startingDate, endingDate);
+            } catch (IOException e) {
+                System.out.println("WalkForward Error 71: calendar index not available, " + e.getMessage());
+                return;
+            }
+        }
+        else md.loadFromFile("../data/marketDates.txt", startingDate, endingDate);
+
+        //every fold reads the same quotes, so they are fetched once
+        long timer = System.nanoTime();
+        QuoteSource source = new MMEngineQuoteSource(Tools.getConfig("quoteAPI"));
+        if (Tools.getConfig("enable_QuoteCache").equalsIgnoreCase("YES")) source = new QuoteCache(source);
+        QuoteTape tape = QuoteTape.load(source, symbol, md);
+        System.out.printf("%s, read in %.1f s%n", tape, (System.nanoTime() - timer) / 1e9);
+
+        List<Map<String, String>> grid = parseGrid(Tools.getConfig("walkForwardGrid"));
+        boolean vectorized = Tools.getConfig("enable_VectorBacktest").trim().equalsIgnoreCase("YES");
+        WalkForward wf = new WalkForward(tape, new Backtest(symbol, 1000, vectorized), grid,
+            Integer.parseInt(Tools.getConfig("walkForwardTrainCycles")), Integer.parseInt(Tools.getConfig("walkForwardTestCycles")));
+        int numThreads = Tools.getConfigInt("walkForwardThreads", 0);
+        if (numThreads <= 0) numThreads = Runtime.getRuntime().availableProcessors();
+
+        timer = System.nanoTime();
+        List<Fold> folds = wf.run(numThreads);
+        String summary = wf.summary(folds);
+        System.out.printf("%d cycles, %d folds on %d thread(s) in %.1f s%n", wf.getNumCycles(), folds.size(), numThreads,
+            (System.nanoTime() - timer) / 1e9);
+
+        System.out.println(HEADER);
+        for (Fold f : folds) System.out.println(f);
+        System.out.print(summary);
+
+        String filename = Tools.getConfig("logsDirectory") + "\\walkforward.txt";
+        try (PrintWriter out = new PrintWriter(new FileWriter(filename))) {
+            out.println(HEADER);
+            for (Fold f : folds) out.println(f);
+            out.println();
+            out.print(summary);
+        } catch (IOException e) {
+            System.out.println("WalkForward Error 72: unable to write " + filename);
+        }
+    }
+}
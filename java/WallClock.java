@@ -0,0 +1,27 @@
+import java.time.LocalDateTime;
+
+/**
+ * WallClock is the real time of day, used in real mode.
+ *
+ * @version v1
+ */
+public class WallClock implements TradingClock
+{
+    private final long epochAnchorNs = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    public long nanoTime() {
+        return epochAnchorNs + System.nanoTime();
+    }
+
+    public LocalDateTime now() {
+        return LocalDateTime.now();
+    }
+
+    public void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+}